@@ -0,0 +1,113 @@
+package com.example.android.news;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the section windows of {@link NewsStore#queryPage} on the device's SQLite, that they
+ * are read from the section index, and that the store drops its oldest news beyond the cap.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class NewsStorePagingTest {
+
+    private static final String DATABASE_NAME = "paging-test.db";
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private static final int MAX_ROWS = 10;
+
+    private Context mContext;
+    private NewsDbHelper mDbHelper;
+    private NewsStore mStore;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mDbHelper = new NewsDbHelper(mContext, DATABASE_NAME);
+        mStore = new NewsStore(mDbHelper, MAX_ROWS);
+    }
+
+    @After
+    public void tearDown() {
+        mDbHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    private static TechNews news(String sectionId, int hour) {
+        String id = sectionId + "/2018/jul/" + hour;
+        return new TechNews(id, sectionId, "Headline " + hour, hour * HOUR, null, "Author",
+                "https://www.theguardian.com/" + id, null, sectionId);
+    }
+
+    private static List<String> ids(List<TechNews> news) {
+        List<String> ids = new ArrayList<>();
+        for (TechNews item : news) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void sectionWindows_followEachOther() {
+        mStore.save(Arrays.asList(news("technology", 1), news("science", 2), news("technology", 3),
+                news("business", 4), news("technology", 5)));
+
+        List<TechNews> first = mStore.queryPage(Collections.singleton("technology"), true, null, 2);
+        assertEquals(Arrays.asList("technology/2018/jul/5", "technology/2018/jul/3"), ids(first));
+        List<TechNews> second = mStore.queryPage(Collections.singleton("technology"), true, first.get(1), 2);
+        assertEquals(Collections.singletonList("technology/2018/jul/1"), ids(second));
+
+        List<TechNews> both = mStore.queryPage(Arrays.asList("science", "business"), false, null, 10);
+        assertEquals(Arrays.asList("science/2018/jul/2", "business/2018/jul/4"), ids(both));
+        assertEquals("technology", first.get(0).getSectionId());
+    }
+
+    @Test
+    public void sectionWindow_usesTheSectionIndex() {
+        Cursor cursor = mDbHelper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN SELECT * FROM news"
+                + " WHERE section_id = ? AND date <= ? AND (date < ? OR article_id < ?)"
+                + " ORDER BY date DESC, article_id DESC LIMIT 20", new String[]{"technology", "5", "5", "x"});
+        StringBuilder plan = new StringBuilder();
+        try {
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnCount() - 1)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        assertTrue(plan.toString(), plan.indexOf("news_section_index") >= 0);
+        assertTrue(plan.toString(), plan.indexOf("TEMP B-TREE") < 0);
+    }
+
+    @Test
+    public void save_dropsTheOldestNewsBeyondTheCap() {
+        List<TechNews> batch = new ArrayList<>();
+        for (int hour = 1; hour <= MAX_ROWS + 5; hour++) {
+            batch.add(news("technology", hour));
+        }
+        mStore.save(batch);
+
+        List<TechNews> stored = mStore.queryPage(null, false, null, 100);
+        assertEquals(MAX_ROWS, stored.size());
+        assertEquals("technology/2018/jul/6", stored.get(0).getId());
+        // Their search words went with them
+        assertEquals(MAX_ROWS, mStore.search("headline", 100).size());
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.android.news;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the matching rules of {@link NewsStore#search(String, int)} on the full-text index of
+ * the device's SQLite, and measures its query latency at 10k and 100k stored news. The median
+ * and worst latency of every query are logged; the test fails if a median is slower than a
+ * search while typing allows.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class NewsStoreSearchTest {
+
+    private static final String LOG_TAG = NewsStoreSearchTest.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "search-test.db";
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private static final String[] WORDS = {"technology", "regulation", "privacy", "data", "apple", "google",
+            "facebook", "startup", "robots", "artificial", "intelligence", "brexit", "bitcoin", "energy",
+            "climate", "games", "music", "streaming", "security", "hackers", "elections", "phones",
+            "cars", "electric", "space", "science", "health", "market", "shares", "banks"};
+    private static final String[] SECTIONS = {"Technology", "Business", "Science", "Media", "World news"};
+    private static final String[] AUTHORS = {"Alex Hern", "Samuel Gibbs", "Rob Davies", "Julia Kollewe",
+            "Hannah Devlin", "Author: unknown"};
+
+    /**
+     * From a single rare word to short prefixes matching most of the news
+     */
+    private static final String[] QUERIES = {"tech", "regulation privacy", "word123", "alex", "sci ener",
+            "b", "electric cars space"};
+
+    private static final int RUNS = 21;
+
+    private static final long MAX_MEDIAN_NANOS = 50 * 1000 * 1000L;
+
+    private Context mContext;
+    private NewsStore mStore;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        // Keeps every news stored for the latency at 100k
+        mStore = new NewsStore(new NewsDbHelper(mContext, DATABASE_NAME), 100000);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    private static TechNews news(String id, String title, String section, String author, long publishedAt) {
+        return new TechNews(id, section, title, publishedAt, null, author, "https://www.theguardian.com/" + id);
+    }
+
+    private static List<String> ids(List<TechNews> news) {
+        List<String> ids = new ArrayList<>();
+        for (TechNews item : news) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void prefixTerms_matchTitleSectionAndAuthor() {
+        mStore.save(Arrays.asList(
+                news("a", "Tech giants face new regulation", "Technology", "Alex Hern", 3 * HOUR),
+                news("b", "Banks and the blockchain", "Business", "Rob Davies", 2 * HOUR),
+                news("c", "Regulators fine Facebook", "Technology", "Alex Hern", HOUR)));
+
+        assertEquals(Arrays.asList("a", "c"), ids(mStore.search("regul", 10)));
+        assertEquals(Arrays.asList("b"), ids(mStore.search("business", 10)));
+        assertEquals(Arrays.asList("a", "c"), ids(mStore.search("HERN", 10)));
+        assertEquals(Arrays.asList("c"), ids(mStore.search("hern fine", 10)));
+        assertEquals(Collections.<String>emptyList(), ids(mStore.search("davies regul", 10)));
+        assertEquals(Collections.<String>emptyList(), ids(mStore.search("\"or\" *", 10)));
+        assertEquals(Arrays.asList("a", "b", "c"), ids(mStore.search("a", 10)));
+        assertEquals(Arrays.asList("a"), ids(mStore.search("a", 1)));
+    }
+
+    @Test
+    public void updatedNews_replacesItsWords() {
+        mStore.save(Collections.singletonList(news("a", "Old headline", "Technology", "Author", HOUR)));
+        mStore.save(Collections.singletonList(news("a", "Corrected headline", "Technology", "Author", HOUR)));
+
+        assertTrue(mStore.search("old", 10).isEmpty());
+        List<TechNews> found = mStore.search("headline", 10);
+        assertEquals(1, found.size());
+        assertEquals("Corrected headline", found.get(0).getTitle());
+    }
+
+    @Test
+    public void queryLatency_at10kAnd100kNews() {
+        Random random = new Random(42);
+        int stored = 0;
+        for (int count : new int[]{10000, 100000}) {
+            List<TechNews> batch = new ArrayList<>();
+            for (; stored < count; stored++) {
+                StringBuilder title = new StringBuilder();
+                for (int w = 0; w < 8; w++) {
+                    title.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+                title.append("word").append(stored);
+                batch.add(news("article-" + stored, title.toString(), SECTIONS[random.nextInt(SECTIONS.length)],
+                        AUTHORS[random.nextInt(AUTHORS.length)], stored * HOUR));
+                if (batch.size() == 1000) {
+                    mStore.save(batch);
+                    batch.clear();
+                }
+            }
+            mStore.save(batch);
+
+            for (String query : QUERIES) {
+                long[] nanos = new long[RUNS];
+                int matches = 0;
+                for (int run = 0; run < RUNS; run++) {
+                    long start = System.nanoTime();
+                    matches = mStore.search(query, 100).size();
+                    nanos[run] = System.nanoTime() - start;
+                }
+                Arrays.sort(nanos);
+                long median = nanos[RUNS / 2];
+                Log.i(LOG_TAG, count + " news, \"" + query + "\": " + matches + " results, median "
+                        + median / 1000 + " µs, worst " + nanos[RUNS - 1] / 1000 + " µs");
+                assertTrue(query + " took " + median / 1000 + " µs at " + count + " news",
+                        median < MAX_MEDIAN_NANOS);
+            }
+        }
+        assertEquals(Arrays.asList("article-123"), ids(mStore.search("word123", 100)));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.android.news;
+
+import android.os.Debug;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Load test of {@link QueryUtils#fetchNewsData(String, int, CancellationToken)} against a
+ * {@link SyntheticGuardianServer} on the device, so it runs offline. The loads go through the
+ * whole request path of the app: the request governor, the shared in-flight requests, the
+ * HTTP client with its retries and the streaming parser. Throughput, latency percentiles and
+ * the bytes allocated per load are logged.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class QueryUtilsLoadTest {
+
+    private static final String LOG_TAG = QueryUtilsLoadTest.class.getSimpleName();
+
+    private static final String[] SECTIONS = {"technology", "science", "business"};
+    private static final int PAGES = 10;
+    private static final int PAGE_SIZE = 20;
+
+    /**
+     * Allocations of the loading threads, counted by the runtime while enabled
+     */
+    @SuppressWarnings("deprecation")
+    private static final LoadTest.AllocationMeter THREAD_ALLOCATIONS = new LoadTest.AllocationMeter() {
+        @Override
+        public long threadAllocatedBytes() {
+            return Debug.getThreadAllocSize();
+        }
+    };
+
+    /**
+     * Goes through the same path as the loaders
+     */
+    private static final ParallelNewsFetcher.Fetcher FETCHER = new ParallelNewsFetcher.Fetcher() {
+        @Override
+        public List<TechNews> fetch(String url, CancellationToken token) {
+            return QueryUtils.fetchNewsData(url, RequestGovernor.PRIORITY_USER, token);
+        }
+    };
+
+    private SyntheticGuardianServer mServer;
+
+    @Before
+    @SuppressWarnings("deprecation")
+    public void setUp() throws IOException {
+        mServer = new SyntheticGuardianServer();
+        Debug.startAllocCounting();
+    }
+
+    @After
+    @SuppressWarnings("deprecation")
+    public void tearDown() throws IOException {
+        Debug.stopAllocCounting();
+        mServer.shutdown();
+    }
+
+    /**
+     * Distinct pages of the sections, so every load makes its own request
+     */
+    private List<String> urls() {
+        List<String> urls = new ArrayList<>();
+        for (int page = 2; page <= PAGES + 1; page++) {
+            for (String section : SECTIONS) {
+                urls.add(mServer.getSearchUrl() + "?section=" + section + "&page-size=" + PAGE_SIZE
+                        + "&page=" + page + "&api-key=test");
+            }
+        }
+        return urls;
+    }
+
+    private LoadTest.Result run(String name, int loads, int concurrency) throws InterruptedException {
+        LoadTest.Result result = new LoadTest(FETCHER, THREAD_ALLOCATIONS).run(urls(), loads, concurrency);
+        Log.i(LOG_TAG, name + ": " + result + "; server: " + mServer.getRequestCount() + " requests, "
+                + mServer.getErrorCount() + " errors, " + mServer.getThrottledCount() + " throttled");
+        return result;
+    }
+
+    @Test
+    public void steadyLoad_allSucceed() throws InterruptedException {
+        mServer.setLatency(50, 50);
+        mServer.setPaddingBytes(500);
+
+        LoadTest.Result result = run("steady", urls().size(), 4);
+
+        assertEquals(0, result.failedLoads);
+        assertEquals((long) PAGE_SIZE * result.loads, result.news);
+    }
+
+    @Test
+    public void failingServer_isRetriedWithinTheQuota() throws InterruptedException {
+        mServer.setLatency(20, 20);
+        mServer.setErrorRate(0.05);
+        // A little above the quota the governor keeps to
+        mServer.setRequestsPerSecond(15);
+        // Use up the burst the shared governor may have saved, whichever test ran before,
+        // so the requests come at the steady rate of the quota
+        for (int i = 0; i < QueryUtils.REQUESTS_PER_SECOND; i++) {
+            QueryUtils.getGovernor().acquire(RequestGovernor.PRIORITY_USER, null);
+        }
+
+        LoadTest.Result result = run("failing", urls().size(), 8);
+
+        // Retries get every load through, and the governor spaces the requests, retries
+        // included, enough that the server hardly ever throttles
+        assertEquals(0, result.failedLoads);
+        int throttled = mServer.getThrottledCount();
+        assertTrue(throttled + " of " + mServer.getRequestCount() + " requests throttled",
+                throttled <= mServer.getRequestCount() / 20);
+    }
+}
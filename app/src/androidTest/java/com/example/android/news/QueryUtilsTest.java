@@ -0,0 +1,113 @@
+package com.example.android.news;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented test comparing the streaming parser in {@link QueryUtils} with the
+ * previous JSONObject based parser on recorded guardianapis responses.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryUtilsTest {
+
+    @Test
+    public void streamingParser_matchesTreeParser() throws Exception {
+        List<TechNews> expected = extractFeatureFromJson(readFromStream(openFixture("guardian_search.json")));
+        List<TechNews> actual = QueryUtils.extractFeatureFromStream(openFixture("guardian_search.json"));
+
+        assertEquals(4, expected.size());
+        assertNewsEquals(expected, actual);
+    }
+
+    @Test
+    public void streamingParser_usesFirstContributorOrUnknown() throws Exception {
+        List<TechNews> news = QueryUtils.extractFeatureFromStream(openFixture("guardian_search.json"));
+
+        assertEquals("Alex Hern", news.get(0).getAuthor());
+        assertEquals("Rob Davies", news.get(1).getAuthor());
+        assertEquals("Author: unknown", news.get(2).getAuthor());
+    }
+
+    @Test
+    public void streamingParser_emptyResults() throws Exception {
+        List<TechNews> news = QueryUtils.extractFeatureFromStream(openFixture("guardian_search_empty.json"));
+
+        assertNotNull(news);
+        assertTrue(news.isEmpty());
+    }
+
+    private static InputStream openFixture(String name) throws IOException {
+        return InstrumentationRegistry.getContext().getAssets().open(name);
+    }
+
+    private static void assertNewsEquals(List<TechNews> expected, List<TechNews> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getSection(), actual.get(i).getSection());
+            assertEquals(expected.get(i).getTitle(), actual.get(i).getTitle());
+            assertEquals(expected.get(i).getPublishedAt(), actual.get(i).getPublishedAt());
+            assertEquals(expected.get(i).getDisplayDate(), actual.get(i).getDisplayDate());
+            assertEquals(expected.get(i).getAuthor(), actual.get(i).getAuthor());
+            assertEquals(expected.get(i).getUrl(), actual.get(i).getUrl());
+        }
+    }
+
+    /**
+     * Previous implementation: read the whole response into a String.
+     */
+    private static String readFromStream(InputStream inputStream) throws IOException {
+        StringBuilder output = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        String line = reader.readLine();
+        while (line != null) {
+            output.append(line);
+            line = reader.readLine();
+        }
+        reader.close();
+        return output.toString();
+    }
+
+    /**
+     * Previous implementation: build the JSONObject tree and pull out the fields.
+     */
+    private static List<TechNews> extractFeatureFromJson(String technologyNewsJSON) throws JSONException {
+        List<TechNews> newsList = new ArrayList<>();
+        JSONArray resultsArray = new JSONObject(technologyNewsJSON).getJSONObject("response").getJSONArray("results");
+        for (int i = 0; i < resultsArray.length(); i++) {
+            JSONObject currentResults = resultsArray.getJSONObject(i);
+            JSONArray tagsAuthor = currentResults.getJSONArray("tags");
+            String author;
+            if (tagsAuthor.length() != 0) {
+                author = tagsAuthor.getJSONObject(0).getString("webTitle");
+            } else {
+                author = "Author: unknown";
+            }
+            long publishedAt = NewsDates.parseIso8601(currentResults.getString("webPublicationDate"));
+            newsList.add(new TechNews(currentResults.getString("id"),
+                    currentResults.getString("sectionName"),
+                    currentResults.getString("webTitle"),
+                    publishedAt,
+                    NewsDates.formatForDisplay(publishedAt),
+                    author,
+                    currentResults.getString("webUrl")));
+        }
+        return newsList;
+    }
+}
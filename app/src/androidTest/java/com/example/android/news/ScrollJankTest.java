@@ -0,0 +1,140 @@
+package com.example.android.news;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scroll harness for the news list. Shows a synthetic list of 1,000 news in the list of
+ * {@link MainActivity}, scrolls it from top to bottom by a fixed distance every frame and
+ * fails if too many frames dropped or a bind was too slow, so jank regressions of
+ * {@link TechNewsAdapter} show up in test runs. The {@link FrameMonitor} summary is logged.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ScrollJankTest {
+
+    private static final String LOG_TAG = ScrollJankTest.class.getSimpleName();
+
+    private static final int NEWS_COUNT = 1000;
+
+    /**
+     * Scrolled distance per frame in rows, a fast fling
+     */
+    private static final float ROWS_PER_FRAME = 0.5f;
+
+    /**
+     * Largest part of the frames allowed to drop frames
+     */
+    private static final double MAX_JANK_RATIO = 0.1;
+
+    private static final long MAX_BIND_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private Instrumentation mInstrumentation;
+    private Activity mActivity;
+    private RecyclerView mList;
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        Intent intent = new Intent(mInstrumentation.getTargetContext(), MainActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        mActivity = mInstrumentation.startActivitySync(intent);
+        mList = mActivity.findViewById(R.id.listNews);
+    }
+
+    @After
+    public void tearDown() {
+        mActivity.finish();
+    }
+
+    private static List<TechNews> syntheticNews() {
+        String[] sections = {"Technology", "Science", "Business", "Games"};
+        String[] authors = {"Alex Hern", "Rob Davies", "Samuel Gibbs", "Author: unknown"};
+        List<TechNews> news = new ArrayList<>(NEWS_COUNT);
+        long publishedAt = NewsDates.parseIso8601("2018-07-18T12:00:00Z");
+        for (int i = 0; i < NEWS_COUNT; i++) {
+            long time = publishedAt - i * 60 * 60 * 1000L;
+            news.add(new TechNews("technology/2018/jul/" + i, sections[i % sections.length],
+                    "Synthetic headline number " + i + " about phones, chips, networks and the companies behind them",
+                    time, NewsDates.formatForDisplay(time), authors[i % authors.length], "https://example.com/" + i, null));
+        }
+        return news;
+    }
+
+    @Test
+    public void scrollThroughThousandNews_staysSmooth() throws InterruptedException {
+        final List<TechNews> news = syntheticNews();
+        // Measured off the main thread, like the loaders do
+        RowTextPrecomputer.getInstance().precompute(news);
+
+        final FrameMonitor monitor = new FrameMonitor(mActivity);
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // A separate adapter, so loads of the activity don't replace the list
+                TechNewsAdapter adapter = new TechNewsAdapter(new TechNewsAdapter.OnItemClickListener() {
+                    @Override
+                    public void onItemClick(TechNews techNews) {
+                    }
+                }, ThumbnailLoader.getInstance(mActivity));
+                adapter.setFrameMonitor(monitor);
+                adapter.submitList(news);
+                mList.setAdapter(adapter);
+            }
+        });
+        mInstrumentation.waitForIdleSync();
+
+        final CountDownLatch done = new CountDownLatch(1);
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final int step = Math.max(1, (int) (mList.getChildAt(0).getHeight() * ROWS_PER_FRAME));
+                // Bind times of the first screen aren't part of the scroll
+                monitor.getStats().reset();
+                monitor.start();
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        if (!mList.canScrollVertically(1)) {
+                            monitor.stop();
+                            done.countDown();
+                            return;
+                        }
+                        mList.scrollBy(0, step);
+                        Choreographer.getInstance().postFrameCallback(this);
+                    }
+                });
+            }
+        });
+        assertTrue("Scroll didn't finish", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        FrameStats stats = monitor.getStats();
+        Log.i(LOG_TAG, "Scrolled " + NEWS_COUNT + " news:\n" + stats.summary());
+        assertTrue("No frames recorded", stats.getFrames() > 0);
+        assertTrue(String.format(Locale.US, "%.1f%% janky frames:%n%s", stats.getJankRatio() * 100, stats.summary()),
+                stats.getJankRatio() <= MAX_JANK_RATIO);
+        assertTrue("Slowest bind:\n" + stats.summary(), stats.getSlowestBindNanos() <= MAX_BIND_NANOS);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.android.news;
+
+import android.app.LoaderManager;
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.content.Intent;
+import android.content.Loader;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.text.TextUtils;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.webkit.WebView;
+
+/**
+ * Shows the body of a prefetched article from the {@link ArticleStore}, without a request.
+ * Articles that aren't stored are opened in the browser instead.
+ */
+public class ArticleActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<String> {
+
+    private static final String EXTRA_ID = "id";
+    private static final String EXTRA_TITLE = "title";
+    private static final String EXTRA_URL = "url";
+
+    private static final int BODY_LOADER_ID = 1;
+
+    /**
+     * Scales the page to the screen and keeps images within it
+     */
+    private static final String HEAD = "<head><meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">"
+            + "<style>body{font-family:sans-serif;line-height:1.5;margin:16px}"
+            + "img,figure,iframe{max-width:100%;height:auto;margin:0}</style></head>";
+
+    private String mUrl;
+    private WebView mWebView;
+
+    /**
+     * Returns the intent opening the news, in this activity if its body is stored and in the
+     * browser otherwise. Which bodies are stored is known in memory, so the disk isn't read.
+     */
+    public static Intent newIntent(Context context, TechNews news) {
+        if (news.getId() == null || !ArticlePrefetcher.getInstance(context).getStore().contains(news.getId())) {
+            return new Intent(Intent.ACTION_VIEW, Uri.parse(news.getUrl()));
+        }
+        return new Intent(context, ArticleActivity.class)
+                .putExtra(EXTRA_ID, news.getId())
+                .putExtra(EXTRA_TITLE, news.getTitle())
+                .putExtra(EXTRA_URL, news.getUrl());
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mUrl = getIntent().getStringExtra(EXTRA_URL);
+
+        setContentView(R.layout.activity_article);
+        setTitle(getIntent().getStringExtra(EXTRA_TITLE));
+        // Shown once the body was read and unpacked in the background
+        mWebView = findViewById(R.id.article_body);
+        mWebView.setVisibility(View.INVISIBLE);
+        getLoaderManager().initLoader(BODY_LOADER_ID, null, this);
+    }
+
+    @Override
+    public Loader<String> onCreateLoader(int id, Bundle args) {
+        return new BodyLoader(this, getIntent().getStringExtra(EXTRA_ID), getIntent().getStringExtra(EXTRA_TITLE));
+    }
+
+    @Override
+    public void onLoadFinished(Loader<String> loader, String html) {
+        if (html == null) {
+            // Evicted since the list was shown
+            openInBrowser();
+            finish();
+            return;
+        }
+        // Relative links resolve against the article, tapped links open in the browser
+        mWebView.loadDataWithBaseURL(mUrl, html, "text/html", "UTF-8", null);
+        mWebView.setVisibility(View.VISIBLE);
+    }
+
+    @Override
+    public void onLoaderReset(Loader<String> loader) {
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.article, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_open_in_browser) {
+            openInBrowser();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void openInBrowser() {
+        startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(mUrl)));
+    }
+
+    /**
+     * Reads the stored body of the article and returns the page showing it, or null if it
+     * isn't stored anymore.
+     */
+    private static class BodyLoader extends AsyncTaskLoader<String> {
+        private final String mId;
+        private final String mTitle;
+        private String mHtml;
+
+        BodyLoader(Context context, String id, String title) {
+            super(context);
+            mId = id;
+            mTitle = title;
+        }
+
+        @Override
+        protected void onStartLoading() {
+            // Kept over configuration changes, the body is only read once
+            if (mHtml != null) {
+                deliverResult(mHtml);
+            } else {
+                forceLoad();
+            }
+        }
+
+        @Override
+        public String loadInBackground() {
+            String body = ArticlePrefetcher.getInstance(getContext()).getStore().get(mId);
+            if (body == null) {
+                return null;
+            }
+            return "<html>" + HEAD + "<body><h2>" + TextUtils.htmlEncode(mTitle != null ? mTitle : "")
+                    + "</h2>" + body + "</body></html>";
+        }
+
+        @Override
+        public void deliverResult(String html) {
+            mHtml = html;
+            super.deliverResult(html);
+        }
+    }
+}
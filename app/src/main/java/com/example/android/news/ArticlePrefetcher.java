@@ -0,0 +1,147 @@
+package com.example.android.news;
+
+import android.content.Context;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads the bodies of the top news of the list in the background, so they open in
+ * {@link ArticleActivity} right away, also offline. Prefetching is opt-in in the settings and
+ * only runs on unmetered networks. Two downloads run at a time and share a capped bandwidth,
+ * so they don't slow down the feed requests.
+ */
+public class ArticlePrefetcher {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = ArticlePrefetcher.class.getSimpleName();
+
+    /**
+     * Number of news from the top of the list whose bodies are prefetched
+     */
+    private static final int PREFETCH_COUNT = 10;
+
+    private static final int THREAD_COUNT = 2;
+    private static final long BYTES_PER_SECOND = 128 * 1024;
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 15000;
+    private static final long STORE_BYTES = 10 * 1024 * 1024;
+
+    private static ArticlePrefetcher sInstance;
+
+    private final Context mContext;
+    private final ArticleStore mStore;
+    private final NewsHttpClient mHttpClient = new NewsHttpClient(null, CONNECT_TIMEOUT, READ_TIMEOUT);
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * Ids of the articles queued or downloading, guarded by itself
+     */
+    private final Set<String> mPending = new HashSet<>();
+
+    /**
+     * Returns the prefetcher shared by the whole app.
+     */
+    public static synchronized ArticlePrefetcher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArticlePrefetcher(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ArticlePrefetcher(Context context) {
+        mContext = context;
+        mStore = new ArticleStore(new File(context.getFilesDir(), "articles"), STORE_BYTES);
+        mExecutor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        mExecutor.allowCoreThreadTimeOut(true);
+        // Same host as the feeds, so the article requests reuse their connections
+        mHttpClient.setConnectionPool(QueryUtils.getConnectionPool());
+        // Shared by the downloads, capping the bytes they receive over the network
+        mHttpClient.setBandwidthLimiter(new BandwidthLimiter(BYTES_PER_SECOND));
+        // Which articles are stored is then answered from memory on the main thread
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mStore.loadIndex();
+            }
+        });
+    }
+
+    public ArticleStore getStore() {
+        return mStore;
+    }
+
+    /**
+     * Queue the bodies of the first news that aren't stored yet, if the settings and the
+     * network allow it.
+     */
+    public void prefetch(List<TechNews> news) {
+        if (!isEnabled() || !NewsSync.getConditions(mContext).isUnmetered()) {
+            return;
+        }
+        for (int i = 0; i < Math.min(PREFETCH_COUNT, news.size()); i++) {
+            final String id = news.get(i).getId();
+            if (id == null || mStore.contains(id)) {
+                continue;
+            }
+            synchronized (mPending) {
+                if (!mPending.add(id)) {
+                    continue;
+                }
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        download(id);
+                    } catch (IOException e) {
+                        Log.w(LOG_TAG, "Problem prefetching article " + id, e);
+                    } finally {
+                        synchronized (mPending) {
+                            mPending.remove(id);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private boolean isEnabled() {
+        return PreferenceManager.getDefaultSharedPreferences(mContext).getBoolean(
+                mContext.getString(R.string.settings_prefetch_key),
+                mContext.getResources().getBoolean(R.bool.settings_prefetch_default));
+    }
+
+    private void download(String id) throws IOException {
+        // Queued before the stored articles were known
+        mStore.loadIndex();
+        if (mStore.contains(id)) {
+            return;
+        }
+        // Uses the API quota last, after everything the user waits for
+        QueryUtils.getGovernor().acquire(RequestGovernor.PRIORITY_PREFETCH, null);
+        String body;
+        InputStream in = mHttpClient.openStream(new URL(NewsQuery.articleUrl(id)), null);
+        try {
+            body = NewsParser.parseBody(in);
+        } finally {
+            in.close();
+        }
+        if (body != null) {
+            mStore.put(id, body);
+        }
+    }
+}
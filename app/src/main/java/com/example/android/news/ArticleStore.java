@@ -0,0 +1,79 @@
+package com.example.android.news;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Article bodies saved for offline reading, keyed by their content id. The HTML is stored
+ * gzip compressed, which makes it about a third of its size, in a {@link DiskLruCache}.
+ */
+public class ArticleStore {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final DiskLruCache mCache;
+
+    public ArticleStore(File directory, long maxBytes) {
+        mCache = new DiskLruCache(directory, maxBytes);
+    }
+
+    /**
+     * Returns the stored HTML body of the article, or null if it isn't stored.
+     */
+    public String get(String id) {
+        byte[] compressed = mCache.get(id);
+        if (compressed == null) {
+            return null;
+        }
+        InputStream in = null;
+        try {
+            in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+            return new String(DiskLruCache.readFully(in), UTF_8);
+        } catch (IOException e) {
+            // A damaged entry is as good as none
+            return null;
+        } finally {
+            NewsResponseCache.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Returns true if the body of the article is stored, without reading the disk. False
+     * until {@link #loadIndex()} ran.
+     */
+    public boolean contains(String id) {
+        return mCache.contains(id);
+    }
+
+    /**
+     * Read which articles are stored, on a background thread.
+     */
+    public void loadIndex() {
+        mCache.loadIndex();
+    }
+
+    public void put(String id, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 3);
+        GZIPOutputStream out = new GZIPOutputStream(compressed);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        mCache.put(id, compressed.toByteArray());
+    }
+
+    /**
+     * Returns the compressed size of the stored articles in bytes.
+     */
+    public long size() {
+        return mCache.size();
+    }
+}
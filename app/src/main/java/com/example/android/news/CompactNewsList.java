@@ -0,0 +1,173 @@
+package com.example.android.news;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory compact list of news. Instead of one {@link TechNews} object per news the fields
+ * are kept in parallel arrays, and the highly repetitive section, author and display date
+ * are dictionary encoded, so every distinct value is held once and each news only stores
+ * small int codes for them.
+ */
+public class CompactNewsList {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final StringDictionary mSections = new StringDictionary();
+    private final StringDictionary mAuthors = new StringDictionary();
+    private final StringDictionary mDisplayDates = new StringDictionary();
+
+    private int mSize;
+    private String[] mIds = new String[INITIAL_CAPACITY];
+    private String[] mTitles = new String[INITIAL_CAPACITY];
+    private String[] mUrls = new String[INITIAL_CAPACITY];
+    private String[] mThumbnailUrls = new String[INITIAL_CAPACITY];
+    private long[] mPublishedAt = new long[INITIAL_CAPACITY];
+    private int[] mSectionCodes = new int[INITIAL_CAPACITY];
+    private int[] mAuthorCodes = new int[INITIAL_CAPACITY];
+    private int[] mDisplayDateCodes = new int[INITIAL_CAPACITY];
+
+    /**
+     * Returns a compact copy of the given news.
+     */
+    public static CompactNewsList of(List<TechNews> news) {
+        CompactNewsList list = new CompactNewsList();
+        list.addAll(news);
+        return list;
+    }
+
+    public void add(TechNews news) {
+        ensureCapacity(mSize + 1);
+        mIds[mSize] = news.getId();
+        mTitles[mSize] = news.getTitle();
+        mUrls[mSize] = news.getUrl();
+        mThumbnailUrls[mSize] = news.getThumbnailUrl();
+        mPublishedAt[mSize] = news.getPublishedAt();
+        mSectionCodes[mSize] = mSections.encode(news.getSection());
+        mAuthorCodes[mSize] = mAuthors.encode(news.getAuthor());
+        mDisplayDateCodes[mSize] = mDisplayDates.encode(news.getDisplayDate());
+        mSize++;
+    }
+
+    /**
+     * Returns a copy of this list, which changes independently of it.
+     */
+    public CompactNewsList copy() {
+        CompactNewsList copy = new CompactNewsList();
+        copy.ensureCapacity(mSize);
+        for (int i = 0; i < mSize; i++) {
+            copy.mIds[i] = mIds[i];
+            copy.mTitles[i] = mTitles[i];
+            copy.mUrls[i] = mUrls[i];
+            copy.mThumbnailUrls[i] = mThumbnailUrls[i];
+            copy.mPublishedAt[i] = mPublishedAt[i];
+            copy.mSectionCodes[i] = copy.mSections.encode(getSection(i));
+            copy.mAuthorCodes[i] = copy.mAuthors.encode(getAuthor(i));
+            copy.mDisplayDateCodes[i] = copy.mDisplayDates.encode(getDisplayDate(i));
+        }
+        copy.mSize = mSize;
+        return copy;
+    }
+
+    public void addAll(List<TechNews> news) {
+        ensureCapacity(mSize + news.size());
+        for (int i = 0; i < news.size(); i++) {
+            add(news.get(i));
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Getters for the fields of the news at the given position
+     */
+    public String getId(int position) {
+        return mIds[checkPosition(position)];
+    }
+    public String getSection(int position) {
+        return mSections.decode(mSectionCodes[checkPosition(position)]);
+    }
+    public String getTitle(int position) {
+        return mTitles[checkPosition(position)];
+    }
+    public long getPublishedAt(int position) {
+        return mPublishedAt[checkPosition(position)];
+    }
+    public String getDisplayDate(int position) {
+        return mDisplayDates.decode(mDisplayDateCodes[checkPosition(position)]);
+    }
+    public String getAuthor(int position) {
+        return mAuthors.decode(mAuthorCodes[checkPosition(position)]);
+    }
+    public String getUrl(int position) {
+        return mUrls[checkPosition(position)];
+    }
+    public String getThumbnailUrl(int position) {
+        return mThumbnailUrls[checkPosition(position)];
+    }
+
+    /**
+     * Returns the news at the given position as a {@link TechNews} object.
+     */
+    public TechNews get(int position) {
+        return new TechNews(getId(position), getSection(position), getTitle(position),
+                getPublishedAt(position), getDisplayDate(position), getAuthor(position), getUrl(position),
+                getThumbnailUrl(position));
+    }
+
+    private int checkPosition(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + mSize);
+        }
+        return position;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, mIds.length + (mIds.length >> 1));
+        mIds = Arrays.copyOf(mIds, newCapacity);
+        mTitles = Arrays.copyOf(mTitles, newCapacity);
+        mUrls = Arrays.copyOf(mUrls, newCapacity);
+        mThumbnailUrls = Arrays.copyOf(mThumbnailUrls, newCapacity);
+        mPublishedAt = Arrays.copyOf(mPublishedAt, newCapacity);
+        mSectionCodes = Arrays.copyOf(mSectionCodes, newCapacity);
+        mAuthorCodes = Arrays.copyOf(mAuthorCodes, newCapacity);
+        mDisplayDateCodes = Arrays.copyOf(mDisplayDateCodes, newCapacity);
+    }
+
+    /**
+     * Maps every distinct string to a small int code. Null is code -1.
+     */
+    private static class StringDictionary {
+        private final Map<String, Integer> mCodes = new HashMap<>();
+        private final List<String> mValues = new ArrayList<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer code = mCodes.get(value);
+            if (code == null) {
+                code = mValues.size();
+                mCodes.put(value, code);
+                mValues.add(value);
+            }
+            return code;
+        }
+
+        String decode(int code) {
+            return code == -1 ? null : mValues.get(code);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.android.news;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Size bounded disk cache of byte arrays, like encoded thumbnails or compressed article
+ * bodies, keyed by a string like their URL. Reading an entry touches its file, and once the
+ * cache grows past its size the least recently used files are deleted. Entries are
+ * immutable, so there is no revalidation.
+ * <p>
+ * The names of the cached files are kept in memory once the directory was scanned, so
+ * checking for an entry doesn't touch the disk.
+ */
+public class DiskLruCache {
+
+    private static final String SUFFIX = ".entry";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    /**
+     * Total size of the cached files, or -1 until the directory was scanned
+     */
+    private long mSize = -1;
+
+    /**
+     * Names of the cached files, null until the directory was scanned. Changed with the
+     * lock held but read without it, so a check never waits for a scan or a put.
+     */
+    private volatile Set<String> mNames;
+
+    public DiskLruCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached bytes for the key, or null if there are none.
+     */
+    public byte[] get(String key) {
+        File file = fileFor(key);
+        if (!file.isFile()) {
+            Set<String> names = mNames;
+            if (names != null) {
+                // Deleted behind the cache's back
+                names.remove(file.getName());
+            }
+            return null;
+        }
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            byte[] bytes = readFully(in);
+            // Last modified time is the LRU order
+            file.setLastModified(System.currentTimeMillis());
+            return bytes;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            NewsResponseCache.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Returns true if there are cached bytes for the key, from the names in memory without
+     * touching the disk. Always false until the names were loaded, by {@link #loadIndex()}
+     * or the first put.
+     */
+    public boolean contains(String key) {
+        Set<String> names = mNames;
+        return names != null && names.contains(NewsResponseCache.keyFor(key) + SUFFIX);
+    }
+
+    /**
+     * Scan the directory for the names and size of the cached files, if it wasn't yet.
+     * Reads the disk, so it is called on a background thread.
+     */
+    public synchronized void loadIndex() {
+        if (mNames == null) {
+            scan();
+        }
+    }
+
+    /**
+     * Store the bytes for the key, evicting the least recently used entries if the cache
+     * gets too big.
+     */
+    public void put(String key, byte[] bytes) throws IOException {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            throw new IOException("Cannot create cache directory " + mDirectory);
+        }
+        String name = NewsResponseCache.keyFor(key);
+        // The temporary name is unique per thread, two threads may store the same entry
+        File tmpFile = new File(mDirectory, name + "-" + Thread.currentThread().getId() + TMP_SUFFIX);
+        FileOutputStream out = new FileOutputStream(tmpFile);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        File file = new File(mDirectory, name + SUFFIX);
+        synchronized (this) {
+            long replaced = file.length();
+            if (!tmpFile.renameTo(file)) {
+                tmpFile.delete();
+                throw new IOException("Cannot rename " + tmpFile + " to " + file);
+            }
+            if (mSize >= 0) {
+                mSize += bytes.length - replaced;
+                mNames.add(file.getName());
+            }
+            trim();
+        }
+    }
+
+    /**
+     * Returns the total size of the cached entries in bytes.
+     */
+    public synchronized long size() {
+        if (mSize < 0) {
+            scan();
+        }
+        return mSize;
+    }
+
+    private void scan() {
+        Set<String> names = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        long size = 0;
+        for (File file : listEntries()) {
+            size += file.length();
+            names.add(file.getName());
+        }
+        mSize = size;
+        mNames = names;
+    }
+
+    private void trim() {
+        if (size() <= mMaxBytes) {
+            return;
+        }
+        File[] files = listEntries();
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            // Read once, the times must not change while sorting
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long difference = lastModified[a] - lastModified[b];
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        // Trim below the limit, so not every put has to list the directory again
+        long target = mMaxBytes - mMaxBytes / 4;
+        for (int i = 0; i < order.length && mSize > target; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) {
+                mSize -= length;
+                mNames.remove(file.getName());
+            }
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(mDirectory, NewsResponseCache.keyFor(key) + SUFFIX);
+    }
+
+    private File[] listEntries() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.android.news;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.preference.PreferenceManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.WindowManager;
+
+/**
+ * Records the frames drawn while the news list scrolls and the time the adapter spends
+ * binding rows into {@link FrameStats}. Every frame the {@link Choreographer} reports while
+ * the list is dragged or flung is timed against the previous one. The summary is logged at
+ * the end of every session in the foreground.
+ * <p>
+ * The monitor is opt-in in the settings and needs the Choreographer of Android 4.1.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class FrameMonitor extends RecyclerView.OnScrollListener implements Choreographer.FrameCallback {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = FrameMonitor.class.getSimpleName();
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final FrameStats mStats;
+
+    /**
+     * True while frames are recorded
+     */
+    private boolean mRunning;
+
+    /**
+     * Time of the previous frame, 0 before the first frame of a scroll
+     */
+    private long mLastFrameNanos;
+
+    /**
+     * Returns a monitor for the list if it is enabled in the settings, null otherwise.
+     * Only to be called from Android 4.1 on, the class can't be loaded before.
+     */
+    public static FrameMonitor createIfEnabled(Context context) {
+        if (!PreferenceManager.getDefaultSharedPreferences(context).getBoolean(
+                context.getString(R.string.settings_frame_monitor_key),
+                context.getResources().getBoolean(R.bool.settings_frame_monitor_default))) {
+            return null;
+        }
+        return new FrameMonitor(context);
+    }
+
+    /**
+     * Creates a monitor timing frames against the refresh rate of the default display.
+     */
+    public FrameMonitor(Context context) {
+        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        Display display = windowManager != null ? windowManager.getDefaultDisplay() : null;
+        float refreshRate = display != null && display.getRefreshRate() > 0 ? display.getRefreshRate() : 60;
+        mStats = new FrameStats((long) (NANOS_PER_SECOND / refreshRate));
+    }
+
+    public FrameStats getStats() {
+        return mStats;
+    }
+
+    /**
+     * Record the frames while the list is dragged or settling after a fling.
+     */
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            stop();
+        } else {
+            start();
+        }
+    }
+
+    /**
+     * Start recording frames, for scrolls that don't change the scroll state.
+     */
+    public void start() {
+        if (!mRunning) {
+            mRunning = true;
+            mLastFrameNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    public void stop() {
+        if (mRunning) {
+            mRunning = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) {
+            return;
+        }
+        if (mLastFrameNanos != 0) {
+            mStats.recordFrame(frameTimeNanos - mLastFrameNanos);
+        }
+        mLastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Record the time the adapter took to bind the row at the given position.
+     */
+    public void recordBind(int position, long durationNanos) {
+        mStats.recordBind(position, durationNanos);
+    }
+
+    /**
+     * Log the summary of the session and start a new one.
+     */
+    public void dumpSession() {
+        if (mStats.getFrames() > 0 || mStats.getBinds() > 0) {
+            Log.i(LOG_TAG, "Scroll session:\n" + mStats.summary());
+        }
+        mStats.reset();
+    }
+}
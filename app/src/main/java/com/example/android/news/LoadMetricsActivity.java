@@ -0,0 +1,114 @@
+package com.example.android.news;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.view.View;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Debug screen with the percentiles of the recorded load stages. The raw records can be
+ * exported as a CSV file to the app's external files directory.
+ */
+public class LoadMetricsActivity extends AppCompatActivity {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = LoadMetricsActivity.class.getSimpleName();
+
+    private static final String EXPORT_FILE_NAME = "load_metrics.csv";
+
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    private TextView mReportView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_load_metrics);
+
+        mReportView = findViewById(R.id.load_metrics_report);
+        findViewById(R.id.load_metrics_export).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                export();
+            }
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mReportView.setText(createReport(LoadMetrics.getInstance()));
+    }
+
+    /**
+     * Returns a table with the percentiles of every stage in milliseconds.
+     */
+    private String createReport(LoadMetrics metrics) {
+        if (metrics.size() == 0) {
+            return getString(R.string.load_metrics_empty);
+        }
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "%-11s", "stage ms"));
+        for (double percentile : PERCENTILES) {
+            report.append(String.format(Locale.US, "%9s", "p" + (int) percentile));
+        }
+        report.append('\n');
+        for (int stage = 0; stage < LoadMetrics.STAGE_COUNT; stage++) {
+            report.append(String.format(Locale.US, "%-11s", LoadMetrics.STAGE_NAMES[stage]));
+            for (double percentile : PERCENTILES) {
+                long nanos = metrics.percentile(stage, percentile);
+                report.append(nanos < 0 ? String.format(Locale.US, "%9s", "-")
+                        : String.format(Locale.US, "%9.1f", nanos / 1e6));
+            }
+            report.append('\n');
+        }
+
+        report.append('\n').append("loads       ").append(metrics.size()).append('\n');
+        for (int cache = LoadMetrics.CACHE_NONE; cache <= LoadMetrics.CACHE_MISS; cache++) {
+            report.append(String.format(Locale.US, "cache %-12s%d%n",
+                    LoadMetrics.CACHE_NAMES[cache], metrics.countCache(cache)));
+        }
+        report.append("bytes       ").append(metrics.totalBytes()).append('\n');
+
+        ConnectionPool pool = QueryUtils.getConnectionPool();
+        report.append('\n').append("connections reused ").append(pool.getHits())
+                .append(", new ").append(pool.getMisses())
+                .append(", about ").append(pool.getIdleCount()).append(" idle").append('\n');
+        return report.toString();
+    }
+
+    private void export() {
+        File directory = getExternalFilesDir(null);
+        if (directory == null) {
+            // External storage isn't available, keep the file in internal storage
+            directory = getFilesDir();
+        }
+        File file = new File(directory, EXPORT_FILE_NAME);
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+            LoadMetrics.getInstance().writeCsv(writer);
+            writer.close();
+            writer = null;
+            Toast.makeText(this, getString(R.string.load_metrics_exported, file.getAbsolutePath()),
+                    Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem exporting the load metrics.", e);
+            Toast.makeText(this, R.string.load_metrics_export_failed, Toast.LENGTH_SHORT).show();
+        } finally {
+            NewsResponseCache.closeQuietly(writer);
+        }
+    }
+}
@@ -7,76 +7,225 @@ import android.content.Loader;
 import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.TextView;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<TechNews>>,
-        SharedPreferences.OnSharedPreferenceChangeListener {
+        SharedPreferences.OnSharedPreferenceChangeListener, NewsPager.Listener {
 
     /**
-     * URL for technology news data from the guardianapis dataset
+     * Tag for the log messages
      */
-    private static String QUARDIAN_REQUEST_URL =
-            "https://content.guardianapis.com/search?show-tags=contributor&q=technology%20article&api-key=02a961e9-80f2-47b8-a87c-eb679abe85b4";
+    private static final String LOG_TAG = MainActivity.class.getSimpleName();
 
     private static final int NEWS_LOADER_ID = 1;
 
+    /**
+     * Loader argument asking to answer from the store if it can
+     */
+    private static final String ARG_LOCAL_FIRST = "local_first";
+
+    /**
+     * Time to wait after a settings change for further changes before reloading
+     */
+    private static final long RELOAD_DELAY_MILLIS = 300;
+
+    /**
+     * Size of the cached feed responses, enough for the first pages of all sections
+     */
+    private static final long HTTP_CACHE_BYTES = 5 * 1024 * 1024;
+
+    /**
+     * Maximum number of search results shown
+     */
+    private static final int SEARCH_LIMIT = 100;
+
     /**
      * Adapter for the list of technology news
      */
-    private TechNewsArrayAdapter mAdapter;
+    private TechNewsAdapter mAdapter;
 
     /**
      * TextView that is displayed when the list is empty
      */
     private TextView mEmptyStateTextView;
 
+    /**
+     * Loads the following pages while the list is scrolled
+     */
+    private NewsPager mPager;
+
+    /**
+     * Records the frames while the list scrolls, null unless enabled in the settings
+     */
+    private FrameMonitor mFrameMonitor;
+
+    /**
+     * Time onCreate started, used to measure the time to first content
+     */
+    private long mCreateTime;
+
+    /**
+     * True once any news have been shown
+     */
+    private boolean mHasShownContent;
+
+    /**
+     * News of the feed while search results are shown instead, null when not searching
+     */
+    private CompactNewsList mFeedNews;
+
+    /**
+     * Runs the searches off the main thread, one at a time
+     */
+    private final ExecutorService mSearchExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Incremented with every query, so the results of an earlier one are dropped
+     */
+    private volatile int mSearchGeneration;
+
+    /**
+     * Runs the reload after settings changes settled
+     */
+    private final Handler mHandler = new Handler();
+
+    private final Runnable mReloadNews = new Runnable() {
+        @Override
+        public void run() {
+            reloadNews();
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        mCreateTime = SystemClock.elapsedRealtime();
+        // Connect to the guardianapis while the layout is inflated, for the first request of the process
+        QueryUtils.prewarm();
+        // Reads which articles are stored in the background, before a news can be tapped
+        ArticlePrefetcher.getInstance(this);
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        // Find a reference to the {@link ListView} in the layout
-        ListView techNewsListView = findViewById(R.id.listNews);
+        // Keep responses on disk so reloads of an unchanged feed are answered by a 304
+        QueryUtils.setResponseCache(new NewsResponseCache(new File(getCacheDir(), "http"), HTTP_CACHE_BYTES));
+        // Count the requests against the daily quota left by earlier runs
+        QueryUtils.restoreQuota(this);
+
+        // Find a reference to the {@link RecyclerView} in the layout
+        RecyclerView techNewsListView = findViewById(R.id.listNews);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        techNewsListView.setLayoutManager(layoutManager);
+        techNewsListView.setHasFixedSize(true);
 
-        // Adding empty view to listView
+        // The loaders measure the texts of the rows with the metrics of a row like the list's
+        RowTextPrecomputer.getInstance().configure(
+                getLayoutInflater().inflate(R.layout.list_item, techNewsListView, false));
+
+        // Empty view is only visible when the list has no items
         mEmptyStateTextView = findViewById(R.id.empty_view);
-        techNewsListView.setEmptyView(mEmptyStateTextView);
 
-        // Create a new adapter that takes an empty list of tech news as input
-        mAdapter = new TechNewsArrayAdapter(this, new ArrayList<TechNews>());
+        // Create a new adapter that opens a clicked tech news, from the saved articles
+        // if it was prefetched and on its website otherwise
+        mAdapter = new TechNewsAdapter(new TechNewsAdapter.OnItemClickListener() {
+            @Override
+            public void onItemClick(TechNews currentNews) {
+                startActivity(ArticleActivity.newIntent(MainActivity.this, currentNews));
+            }
+        }, ThumbnailLoader.getInstance(this));
+        mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+        });
+        updateEmptyView();
 
-        // Set the adapter on the {@link ListView}
+        // Set the adapter on the {@link RecyclerView}
         // so the list can be populated in the user interface
         techNewsListView.setAdapter(mAdapter);
 
-        // Adding onItemClickListener to techNewsListView - opening website of clicked tech news
-        techNewsListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Time the frames and binds while the list scrolls, if enabled
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameMonitor = FrameMonitor.createIfEnabled(this);
+            if (mFrameMonitor != null) {
+                techNewsListView.addOnScrollListener(mFrameMonitor);
+                mAdapter.setFrameMonitor(mFrameMonitor);
+            }
+        }
+
+        // Load the next page in the background once the user nears the end of the list
+        mPager = new NewsPager(this, this);
+        techNewsListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long id) {
-                // Find the current tech news that was clicked on
-                TechNews currentNews = mAdapter.getItem(position);
-                assert currentNews != null;
-                // Convert the String URL into a URI object (to pass into the Intent constructor)
-                Uri newsUri = Uri.parse(currentNews.getUrl());
-                // Create a new intent to view the tech news URI
-                Intent webLink = new Intent(Intent.ACTION_VIEW, newsUri);
-                // Send the intent to launch a new activity
-                startActivity(webLink);
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (mFeedNews != null) {
+                    // Search results aren't paged
+                    return;
+                }
+                mPager.onScrolled(layoutManager.findLastVisibleItemPosition() + 1, mAdapter.getItemCount());
             }
         });
 
+        // Show the news of the last session in the first frame,
+        // the loader refreshes them in the background
+        List<TechNews> snapshot = NewsSnapshot.read(new File(getFilesDir(), NewsSnapshot.FILE_NAME));
+        if (snapshot != null && !snapshot.isEmpty()) {
+            mAdapter.submitList(snapshot);
+            findViewById(R.id.loader).setVisibility(View.GONE);
+            logFirstContent("snapshot");
+        }
+
+        // Get a reference to the LoaderManager, in order to interact with loaders.
+        LoaderManager loaderManager = getLoaderManager();
+
+        // Initialize the loader. Stored news are shown even without a network connection,
+        // the loader only refreshes the store when it can reach the server.
+        loaderManager.initLoader(NEWS_LOADER_ID, null, this);
+
+        // Reload when the settings change
+        PreferenceManager.getDefaultSharedPreferences(this).registerOnSharedPreferenceChangeListener(this);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Keep the background sync in line with the settings, also after returning from them
+        NewsSync.schedule(this);
+    }
+
+    /**
+     * Returns true if there is a network connection to fetch data with.
+     */
+    private boolean isConnected() {
         // Get a reference to the ConnectivityManager to check state of network connectivity
         ConnectivityManager connMgr = (ConnectivityManager)
                 getSystemService(Context.CONNECTIVITY_SERVICE);
@@ -84,55 +233,14 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         // Get details on the currently active default data network
         assert connMgr != null;
         NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
-
-        // If there is a network connection, fetch data
-        if (networkInfo != null && networkInfo.isConnected()) {
-            // Get a reference to the LoaderManager, in order to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
-
-            // Initialize the loader. Pass in the int ID constant defined above and pass in null for
-            // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
-            // because this activity implements the LoaderCallbacks interface).
-            loaderManager.initLoader(0, null, this);
-        } else {
-            // Otherwise, display error
-            // First, hide loading indicator so error message will be visible
-            View loadingIndicator = findViewById(R.id.loader);
-            assert loadingIndicator != null;
-            loadingIndicator.setVisibility(View.GONE);
-
-            // Update empty state with no connection error message
-            mEmptyStateTextView.setText(R.string.no_internet_connection);
-        }
+        return networkInfo != null && networkInfo.isConnected();
     }
 
     @Override
     public Loader<List<TechNews>> onCreateLoader(int id, Bundle args) {
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
-
-        // getString retrieves a String value from the preferences.
-        // The second parameter is the default value for this preference.
-        String newsOnPage = sharedPrefs.getString(
-                getString(R.string.settings_newsOnPage_key),
-                getString(R.string.settings_newsOnPage_default));
-
-        String orderBy = sharedPrefs.getString(
-                getString(R.string.settings_order_by_key),
-                getString(R.string.settings_order_by_default)
-        );
-
-        // parse breaks apart the URI string that's passed into its parameter
-        Uri baseUri = Uri.parse(QUARDIAN_REQUEST_URL);
-
-        // buildUpon prepares the baseUri that we just parsed so we can add query parameters to it
-        Uri.Builder uriBuilder = baseUri.buildUpon();
-
-        // Append query parameter and its value
-        uriBuilder.appendQueryParameter("page-size", newsOnPage);
-        uriBuilder.appendQueryParameter("orderby", orderBy);
-
-        // Return the completed uri
-        return new TechNewsLoader(this, uriBuilder.toString());
+        // Build the request from the current settings
+        NewsQuery query = NewsQuery.fromPreferences(this);
+        return new TechNewsLoader(this, query, args != null && args.getBoolean(ARG_LOCAL_FIRST));
     }
 
     //After loading, display result
@@ -143,31 +251,181 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         assert loadingIndicator != null;
         loadingIndicator.setVisibility(View.GONE);
 
-        // Set empty state text to display "No earthquakes found."
-        mEmptyStateTextView.setText(R.string.no_news);
+        // Set empty state text to display "No news found." or the connection error,
+        // unless it currently explains empty search results
+        if (mFeedNews == null) {
+            if (isConnected()) {
+                mEmptyStateTextView.setText(R.string.no_news);
+            } else {
+                mEmptyStateTextView.setText(R.string.no_internet_connection);
+            }
+        }
+
+        // While searching, the loaded news are only shown once the search is closed
+        if (mFeedNews != null) {
+            mFeedNews = CompactNewsList.of(techNews != null ? techNews : new ArrayList<TechNews>());
+        } else if (techNews != null && !techNews.isEmpty()) {
+            // Update the adapter to the loaded list of {@link TechNews}. Only rows that changed
+            // since the previous data are updated, so the scroll position is kept.
+            final long loadId = ((TechNewsLoader) loader).getLoadId();
+            final long bindStart = System.nanoTime();
+            mAdapter.submitList(techNews, new Runnable() {
+                @Override
+                public void run() {
+                    LoadMetrics.getInstance().recordStage(loadId, LoadMetrics.STAGE_BIND,
+                            System.nanoTime() - bindStart);
+                }
+            });
+            logFirstContent("loader");
+            // Save the top news for offline reading, if enabled
+            ArticlePrefetcher.getInstance(this).prefetch(techNews);
+        } else {
+            mAdapter.clear();
+        }
+
+        // Following pages continue after this first page
+        mPager.reset(((TechNewsLoader) loader).getQuery(),
+                techNews != null ? techNews : new ArrayList<TechNews>());
+    }
+
+    @Override
+    public void onPageLoaded(int page, List<TechNews> techNews) {
+        // Append the page, the news already in the list stay as they are
+        if (mFeedNews != null) {
+            mFeedNews.addAll(techNews);
+        } else {
+            mAdapter.append(techNews);
+        }
+    }
 
-        // Clear the adapter of previous earthquake data
-        mAdapter.clear();
+    /**
+     * Show the empty view only while the list has no items.
+     */
+    private void updateEmptyView() {
+        mEmptyStateTextView.setVisibility(mAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+    }
 
-        // If there is a valid list of {@link Earthquake}s, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (techNews != null && !techNews.isEmpty()) {
-            mAdapter.addAll(techNews);
+    @Override
+    protected void onStop() {
+        // Every time in the foreground is a session of the frame monitor
+        if (mFrameMonitor != null) {
+            mFrameMonitor.stop();
+            mFrameMonitor.dumpSession();
+        }
+        super.onStop();
+    }
+
+    @Override
+    protected void onDestroy() {
+        PreferenceManager.getDefaultSharedPreferences(this).unregisterOnSharedPreferenceChangeListener(this);
+        mHandler.removeCallbacks(mReloadNews);
+        mPager.shutdown();
+        mSearchExecutor.shutdownNow();
+        super.onDestroy();
+    }
+
+    /**
+     * Log the time from onCreate until news were first visible.
+     */
+    private void logFirstContent(String source) {
+        if (!mHasShownContent) {
+            mHasShownContent = true;
+            Log.d(LOG_TAG, "Time to first content from " + source + ": "
+                    + (SystemClock.elapsedRealtime() - mCreateTime) + " ms");
         }
     }
 
     @Override
     public void onLoaderReset(Loader<List<TechNews>> loader) {
         // TechNewsLoader reset, so we can clear out our existing data.
-        mAdapter.clear();
+        if (mFeedNews != null) {
+            mFeedNews = new CompactNewsList();
+        } else {
+            mAdapter.clear();
+        }
     }
 
     // This method initialize the contents of the Activity's options menu
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main, menu);
+
+        // The load metrics screen is only reachable in debug builds
+        menu.findItem(R.id.action_load_metrics).setVisible(BuildConfig.DEBUG);
+
+        // Search the stored news, without a request
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                showSearchResults(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                showSearchResults(newText);
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                // Keep the feed aside while search results are shown, as compact as it is shown
+                mFeedNews = mAdapter.copyList();
+                mEmptyStateTextView.setText(R.string.no_search_results);
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                CompactNewsList feedNews = mFeedNews;
+                mFeedNews = null;
+                mSearchGeneration++;
+                mEmptyStateTextView.setText(isConnected() ? R.string.no_news : R.string.no_internet_connection);
+                mAdapter.submitList(feedNews);
+                return true;
+            }
+        });
         return true;
     }
 
+    /**
+     * Show the news matching the query, or the whole feed for an empty query. The store is
+     * searched in the background; results of a query typed over meanwhile are dropped.
+     */
+    private void showSearchResults(final String query) {
+        if (mFeedNews == null) {
+            return;
+        }
+        final int generation = ++mSearchGeneration;
+        if (query.trim().isEmpty()) {
+            // A copy, pages loaded meanwhile are added to the feed aside
+            mAdapter.submitList(mFeedNews.copy());
+            return;
+        }
+        final NewsStore store = NewsStore.getInstance(this);
+        mSearchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mSearchGeneration) {
+                    // Typed over before it started
+                    return;
+                }
+                final List<TechNews> results = store.search(query, SEARCH_LIMIT);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mSearchGeneration && mFeedNews != null) {
+                            mAdapter.submitList(results);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
     @Override
     // This method is called whenever an item in the options menu is selected.
     public boolean onOptionsItemSelected(MenuItem item) {
@@ -177,19 +435,39 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
             startActivity(settingsIntent);
             return true;
         }
+        if (id == R.id.action_load_metrics) {
+            startActivity(new Intent(this, LoadMetricsActivity.class));
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-        if (key.equals(getString(R.string.settings_section_key))){
-            mAdapter.clear();
-            mEmptyStateTextView.setVisibility(View.GONE);
-
-            View loadingIndicator = findViewById(R.id.loader);
-            loadingIndicator.setVisibility(View.VISIBLE);
+        if (key.equals(getString(R.string.settings_newsOnPage_key))
+                || key.equals(getString(R.string.settings_order_by_key))
+                || key.equals(getString(R.string.settings_sections_key))) {
+            // Several quick changes lead to a single reload with the last settings
+            mHandler.removeCallbacks(mReloadNews);
+            mHandler.postDelayed(mReloadNews, RELOAD_DELAY_MILLIS);
+        }
+    }
 
-            getLoaderManager().restartLoader(NEWS_LOADER_ID, null, this);
+    /**
+     * Restart the loader with the current settings. The running load is canceled, which
+     * aborts its request, so a stale result can't replace the new one. Stored news answer
+     * the new settings if they can, re-sorted and sliced without a request, so the list
+     * stays until they are shown.
+     */
+    private void reloadNews() {
+        Loader<List<TechNews>> loader = getLoaderManager().getLoader(NEWS_LOADER_ID);
+        if (loader instanceof TechNewsLoader
+                && NewsQuery.fromPreferences(this).getUrls().equals(((TechNewsLoader) loader).getQuery().getUrls())) {
+            // The settings were changed back, the loaded news still match them
+            return;
         }
+        Bundle args = new Bundle();
+        args.putBoolean(ARG_LOCAL_FIRST, true);
+        getLoaderManager().restartLoader(NEWS_LOADER_ID, args, this);
     }
-}
\ No newline at end of file
+}
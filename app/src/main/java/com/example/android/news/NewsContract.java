@@ -0,0 +1,115 @@
+package com.example.android.news;
+
+import android.provider.BaseColumns;
+
+/**
+ * API Contract for the local technology news store.
+ */
+public final class NewsContract {
+
+    /**
+     * Create a private constructor because no one should ever create a {@link NewsContract} object.
+     */
+    private NewsContract() {
+    }
+
+    /**
+     * Inner class that defines constant values for the news database table.
+     * Each entry in the table represents a single {@link TechNews}.
+     */
+    public static final class NewsEntry implements BaseColumns {
+
+        /**
+         * Name of database table for news
+         */
+        public static final String TABLE_NAME = "news";
+
+        /**
+         * Guardian content id of the news, unique in the table. Type: TEXT
+         */
+        public static final String COLUMN_ARTICLE_ID = "article_id";
+
+        /**
+         * Section of the news. Type: TEXT
+         */
+        public static final String COLUMN_SECTION = "section";
+
+        /**
+         * Guardian id of the section of the news, like technology. Type: TEXT
+         */
+        public static final String COLUMN_SECTION_ID = "section_id";
+
+        /**
+         * Title of the news. Type: TEXT
+         */
+        public static final String COLUMN_TITLE = "title";
+
+        /**
+         * Publication time of the news in milliseconds since the epoch. Type: INTEGER
+         */
+        public static final String COLUMN_DATE = "date";
+
+        /**
+         * Author of the news. Type: TEXT
+         */
+        public static final String COLUMN_AUTHOR = "author";
+
+        /**
+         * Website URL of the news. Type: TEXT
+         */
+        public static final String COLUMN_URL = "url";
+
+        /**
+         * URL of the thumbnail image of the news, null if it has none. Type: TEXT
+         */
+        public static final String COLUMN_THUMBNAIL_URL = "thumbnail_url";
+    }
+
+    /**
+     * Inner class that defines constant values for the full-text search table over the news.
+     * Each entry holds the words of the news table row whose _ID is its docid, and is kept in
+     * step with that row by triggers.
+     */
+    public static final class NewsSearchEntry {
+
+        /**
+         * Name of the FTS4 table
+         */
+        public static final String TABLE_NAME = "news_search";
+
+        /**
+         * The _ID of the news the words belong to. Type: INTEGER
+         */
+        public static final String COLUMN_DOCID = "docid";
+
+        /**
+         * Columns copied from the news table and searched, all of type TEXT
+         */
+        public static final String COLUMN_TITLE = "title";
+        public static final String COLUMN_SECTION = "section";
+        public static final String COLUMN_AUTHOR = "author";
+    }
+
+    /**
+     * Inner class that defines constant values for the sync state table.
+     * Each entry in the table represents a feed URL that was fetched before.
+     */
+    public static final class SyncStateEntry implements BaseColumns {
+
+        /**
+         * Name of database table for the sync state
+         */
+        public static final String TABLE_NAME = "sync_state";
+
+        /**
+         * URL of the feed, unique in the table. Type: TEXT
+         */
+        public static final String COLUMN_FEED_URL = "feed_url";
+
+        /**
+         * Publication time of the newest news fetched from the feed, in milliseconds since
+         * the epoch. Type: INTEGER
+         */
+        public static final String COLUMN_NEWEST_DATE = "newest_date";
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.android.news;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.android.news.NewsContract.NewsEntry;
+import com.example.android.news.NewsContract.NewsSearchEntry;
+import com.example.android.news.NewsContract.SyncStateEntry;
+
+/**
+ * Database helper for the technology news store. Manages database creation and version management.
+ */
+public class NewsDbHelper extends SQLiteOpenHelper {
+
+    /**
+     * Name of the database file
+     */
+    private static final String DATABASE_NAME = "news.db";
+
+    /**
+     * Database version. If you change the database schema, you must increment the database version.
+     */
+    private static final int DATABASE_VERSION = 6;
+
+    /**
+     * Constructs a new instance of {@link NewsDbHelper}.
+     *
+     * @param context of the app
+     */
+    public NewsDbHelper(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Constructs a helper of a database in another file, for tests.
+     */
+    NewsDbHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    /**
+     * This is called when the database is created for the first time.
+     */
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + NewsEntry.TABLE_NAME + " ("
+                + NewsEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + NewsEntry.COLUMN_ARTICLE_ID + " TEXT NOT NULL UNIQUE, "
+                + NewsEntry.COLUMN_SECTION + " TEXT, "
+                + NewsEntry.COLUMN_SECTION_ID + " TEXT, "
+                + NewsEntry.COLUMN_TITLE + " TEXT, "
+                + NewsEntry.COLUMN_DATE + " INTEGER NOT NULL, "
+                + NewsEntry.COLUMN_AUTHOR + " TEXT, "
+                + NewsEntry.COLUMN_URL + " TEXT, "
+                + NewsEntry.COLUMN_THUMBNAIL_URL + " TEXT);");
+
+        // Paging walks the table in date order, optionally restricted to one section
+        db.execSQL("CREATE INDEX news_date_index ON " + NewsEntry.TABLE_NAME
+                + " (" + NewsEntry.COLUMN_DATE + ", " + NewsEntry.COLUMN_ARTICLE_ID + ");");
+        db.execSQL("CREATE INDEX news_section_index ON " + NewsEntry.TABLE_NAME
+                + " (" + NewsEntry.COLUMN_SECTION_ID + ", " + NewsEntry.COLUMN_DATE + ", "
+                + NewsEntry.COLUMN_ARTICLE_ID + ");");
+
+        // Searched words of the news. FTS4 without external content, which needs a newer SQLite
+        // than API 15 has, so the triggers copy the words of every row
+        db.execSQL("CREATE VIRTUAL TABLE " + NewsSearchEntry.TABLE_NAME + " USING fts4("
+                + NewsSearchEntry.COLUMN_TITLE + ", "
+                + NewsSearchEntry.COLUMN_SECTION + ", "
+                + NewsSearchEntry.COLUMN_AUTHOR + ");");
+        db.execSQL("CREATE TRIGGER news_search_insert AFTER INSERT ON " + NewsEntry.TABLE_NAME + " BEGIN "
+                + "INSERT INTO " + NewsSearchEntry.TABLE_NAME + " (" + NewsSearchEntry.COLUMN_DOCID + ", "
+                + NewsSearchEntry.COLUMN_TITLE + ", " + NewsSearchEntry.COLUMN_SECTION + ", "
+                + NewsSearchEntry.COLUMN_AUTHOR + ") VALUES (new." + NewsEntry._ID + ", new."
+                + NewsEntry.COLUMN_TITLE + ", new." + NewsEntry.COLUMN_SECTION + ", new."
+                + NewsEntry.COLUMN_AUTHOR + "); END;");
+        db.execSQL("CREATE TRIGGER news_search_update AFTER UPDATE OF " + NewsEntry.COLUMN_TITLE + ", "
+                + NewsEntry.COLUMN_SECTION + ", " + NewsEntry.COLUMN_AUTHOR + " ON " + NewsEntry.TABLE_NAME
+                + " BEGIN UPDATE " + NewsSearchEntry.TABLE_NAME + " SET "
+                + NewsSearchEntry.COLUMN_TITLE + " = new." + NewsEntry.COLUMN_TITLE + ", "
+                + NewsSearchEntry.COLUMN_SECTION + " = new." + NewsEntry.COLUMN_SECTION + ", "
+                + NewsSearchEntry.COLUMN_AUTHOR + " = new." + NewsEntry.COLUMN_AUTHOR
+                + " WHERE " + NewsSearchEntry.COLUMN_DOCID + " = old." + NewsEntry._ID + "; END;");
+        db.execSQL("CREATE TRIGGER news_search_delete AFTER DELETE ON " + NewsEntry.TABLE_NAME + " BEGIN "
+                + "DELETE FROM " + NewsSearchEntry.TABLE_NAME + " WHERE " + NewsSearchEntry.COLUMN_DOCID
+                + " = old." + NewsEntry._ID + "; END;");
+
+        // Lives in the same database, so it is dropped together with the news it describes
+        db.execSQL("CREATE TABLE " + SyncStateEntry.TABLE_NAME + " ("
+                + SyncStateEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + SyncStateEntry.COLUMN_FEED_URL + " TEXT NOT NULL UNIQUE, "
+                + SyncStateEntry.COLUMN_NEWEST_DATE + " INTEGER NOT NULL);");
+    }
+
+    /**
+     * This is called when the database needs to be upgraded.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The store only caches data from the network, so it can simply be rebuilt
+        db.execSQL("DROP TABLE IF EXISTS " + NewsEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + NewsSearchEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + SyncStateEntry.TABLE_NAME);
+        onCreate(db);
+    }
+}
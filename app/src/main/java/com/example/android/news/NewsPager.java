@@ -0,0 +1,209 @@
+package com.example.android.news;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the pages after the first one in the background while the user scrolls.
+ * The next page is requested once the user comes within a page of the end of the list,
+ * so it has usually arrived before it is needed. Every page is only requested once, unless
+ * its request failed. Then it is requested again when the list scrolls after a delay, which
+ * doubles with every failure in a row, so scrolling offline doesn't keep making requests.
+ */
+public class NewsPager {
+
+    /**
+     * Delay before a failed page is requested again, doubled up to the maximum
+     */
+    private static final long MIN_RETRY_DELAY_MILLIS = 2000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60 * 1000;
+
+    /**
+     * Receives every loaded page on the main thread.
+     */
+    public interface Listener {
+        void onPageLoaded(int page, List<TechNews> techNews);
+    }
+
+    private final NewsStore mStore;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Pages that were requested, whether they are still in flight or already loaded
+     */
+    private final Set<Integer> mRequestedPages = new HashSet<>();
+
+    private Listener mListener;
+
+    /**
+     * Request URLs without the page parameter
+     */
+    private List<String> mBaseUrls;
+
+    /**
+     * Sections the pages are read from the store for, empty for all
+     */
+    private Set<String> mSections;
+    private int mPageSize;
+    private boolean mNewestFirst;
+
+    /**
+     * Last page that was appended to the list
+     */
+    private int mLastPage;
+
+    /**
+     * News at the end of the list, the next page continues after it
+     */
+    private TechNews mLastNews;
+
+    /**
+     * True once neither the network nor the store have more news
+     */
+    private boolean mExhausted;
+
+    /**
+     * Time before which a failed page isn't requested again, and the delay after the next failure
+     */
+    private long mRetryTime;
+    private long mRetryDelayMillis = MIN_RETRY_DELAY_MILLIS;
+
+    /**
+     * Incremented on every reset, so pages requested for an earlier list can be told apart
+     */
+    private int mGeneration;
+
+    /**
+     * Canceled on every reset, aborting the requests of pages nobody will see
+     */
+    private CancellationToken mToken = new CancellationToken();
+
+    public NewsPager(Context context, Listener listener) {
+        mStore = NewsStore.getInstance(context);
+        mListener = listener;
+    }
+
+    /**
+     * Start paging after a freshly loaded first page. Requests still in flight for an earlier
+     * list are aborted, and pages that arrive anyway are ignored.
+     */
+    public void reset(NewsQuery query, List<TechNews> firstPage) {
+        mGeneration++;
+        mToken.cancel();
+        mToken = new CancellationToken();
+        mBaseUrls = query.getUrls();
+        mSections = query.getSections();
+        mPageSize = query.getPageSize();
+        mNewestFirst = query.isNewestFirst();
+        mRequestedPages.clear();
+        mRequestedPages.add(1);
+        mLastPage = 1;
+        mLastNews = firstPage.isEmpty() ? null : firstPage.get(firstPage.size() - 1);
+        mExhausted = firstPage.isEmpty();
+        mRetryTime = 0;
+        mRetryDelayMillis = MIN_RETRY_DELAY_MILLIS;
+    }
+
+    /**
+     * Called whenever the list scrolls.
+     *
+     * @param lastVisible position after the last visible item
+     * @param total       number of items in the list
+     */
+    public void onScrolled(int lastVisible, int total) {
+        if (mBaseUrls == null || mExhausted || total - lastVisible > mPageSize
+                || SystemClock.elapsedRealtime() < mRetryTime) {
+            return;
+        }
+        final int page = mLastPage + 1;
+        if (!mRequestedPages.add(page)) {
+            // This page is already in flight
+            return;
+        }
+
+        final int generation = mGeneration;
+        final List<String> urls = new ArrayList<>(mBaseUrls.size());
+        for (String baseUrl : mBaseUrls) {
+            urls.add(Uri.parse(baseUrl).buildUpon()
+                    .appendQueryParameter("page", String.valueOf(page))
+                    .toString());
+        }
+        final TechNews after = mLastNews;
+        final Set<String> sections = mSections;
+        final int pageSize = mPageSize;
+        final boolean newestFirst = mNewestFirst;
+        final CancellationToken token = mToken;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // The network feeds the store, the page itself is read from the store
+                // so it continues exactly after the news already in the list
+                if (token.isCanceled()) {
+                    return;
+                }
+                List<TechNews> techNews = NewsSync.fetchAll(urls, newestFirst, token, null);
+                final List<TechNews> window;
+                if (techNews != null) {
+                    mStore.save(techNews);
+                    window = mStore.queryPage(sections, newestFirst, after, pageSize);
+                    RowTextPrecomputer.getInstance().precompute(window);
+                } else {
+                    window = null;
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(generation, page, window);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @param window the stored news continuing the list after the page was fetched, or null
+     *               if its request failed
+     */
+    private void deliver(int generation, int page, List<TechNews> window) {
+        if (mListener == null || generation != mGeneration) {
+            return;
+        }
+        if (window == null) {
+            // Request the page again after the delay. The stored news aren't appended: the
+            // list would continue after them, past news the retry may still bring in before
+            mRequestedPages.remove(page);
+            mRetryTime = SystemClock.elapsedRealtime() + mRetryDelayMillis;
+            mRetryDelayMillis = Math.min(mRetryDelayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+            return;
+        }
+        mRetryTime = 0;
+        mRetryDelayMillis = MIN_RETRY_DELAY_MILLIS;
+        mLastPage = page;
+        if (window.isEmpty()) {
+            mExhausted = true;
+            return;
+        }
+        mLastNews = window.get(window.size() - 1);
+        mListener.onPageLoaded(page, window);
+    }
+
+    /**
+     * Stop delivering pages and release the background thread.
+     */
+    public void shutdown() {
+        mListener = null;
+        mToken.cancel();
+        mExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.android.news;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The guardianapis searches built from the user's settings, one for every followed section,
+ * shared by the foreground loader and the background sync so both request exactly the same URLs.
+ */
+public class NewsQuery {
+
+    private static final String API_KEY = "02a961e9-80f2-47b8-a87c-eb679abe85b4";
+
+    /**
+     * URL for technology news data from the guardianapis dataset
+     */
+    private static final String QUARDIAN_REQUEST_URL =
+            "https://content.guardianapis.com/search?show-tags=contributor&show-fields=thumbnail&q=technology%20article&api-key=" + API_KEY;
+
+    /**
+     * URL of a single article with its HTML body, the content id follows the slash
+     */
+    private static final String ARTICLE_REQUEST_URL = "https://content.guardianapis.com/";
+
+    /**
+     * Returns the root URL of the guardianapis, the host all requests go to.
+     */
+    public static String apiRootUrl() {
+        return ARTICLE_REQUEST_URL;
+    }
+
+    private final List<String> mUrls;
+    private final Set<String> mSections;
+    private final int mPageSize;
+    private final boolean mNewestFirst;
+
+    private NewsQuery(List<String> urls, Set<String> sections, int pageSize, boolean newestFirst) {
+        mUrls = urls;
+        mSections = sections;
+        mPageSize = pageSize;
+        mNewestFirst = newestFirst;
+    }
+
+    /**
+     * Build the query from the current settings.
+     */
+    public static NewsQuery fromPreferences(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+
+        // getString retrieves a String value from the preferences.
+        // The second parameter is the default value for this preference.
+        String newsOnPage = sharedPrefs.getString(
+                context.getString(R.string.settings_newsOnPage_key),
+                context.getString(R.string.settings_newsOnPage_default));
+
+        String orderBy = sharedPrefs.getString(
+                context.getString(R.string.settings_order_by_key),
+                context.getString(R.string.settings_order_by_default)
+        );
+
+        // parse breaks apart the URI string that's passed into its parameter
+        Uri baseUri = Uri.parse(QUARDIAN_REQUEST_URL);
+
+        // buildUpon prepares the baseUri that we just parsed so we can add query parameters to it
+        Uri.Builder uriBuilder = baseUri.buildUpon();
+
+        // Append query parameter and its value
+        uriBuilder.appendQueryParameter("page-size", newsOnPage);
+        uriBuilder.appendQueryParameter("orderby", orderBy);
+
+        // One search per followed section, or a single one across all sections
+        Set<String> sections = sharedPrefs.getStringSet(
+                context.getString(R.string.settings_sections_key), null);
+        List<String> urls = new ArrayList<>();
+        Set<String> sortedSections = new TreeSet<>();
+        if (sections == null || sections.isEmpty()) {
+            urls.add(uriBuilder.toString());
+        } else {
+            // Sorted, so the same selection always gives the same URLs
+            sortedSections.addAll(sections);
+            for (String section : sortedSections) {
+                urls.add(uriBuilder.build().buildUpon()
+                        .appendQueryParameter("section", section)
+                        .toString());
+            }
+        }
+
+        return new NewsQuery(Collections.unmodifiableList(urls), Collections.unmodifiableSet(sortedSections),
+                Integer.parseInt(newsOnPage),
+                orderBy.equals(context.getString(R.string.settings_order_by_newest_value)));
+    }
+
+    /**
+     * Returns the URL of the article with the given content id, including its body.
+     */
+    public static String articleUrl(String id) {
+        return Uri.parse(ARTICLE_REQUEST_URL + id).buildUpon()
+                .appendQueryParameter("show-fields", "body")
+                .appendQueryParameter("api-key", API_KEY)
+                .toString();
+    }
+
+    /**
+     * Getters
+     */
+    public List<String> getUrls() {
+        return mUrls;
+    }
+    /**
+     * Ids of the followed sections, empty for all sections
+     */
+    public Set<String> getSections() {
+        return mSections;
+    }
+    public int getPageSize() {
+        return mPageSize;
+    }
+    public boolean isNewestFirst() {
+        return mNewestFirst;
+    }
+}
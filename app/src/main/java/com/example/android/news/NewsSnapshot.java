@@ -0,0 +1,177 @@
+package com.example.android.news;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary snapshot of the last loaded list of {@link TechNews}, used to show the
+ * list on a cold start before the network refresh has finished.
+ * <p>
+ * Layout: magic, version, news count, then for every news its publication time and its
+ * text fields as length prefixed UTF-8 (length -1 for null), followed by a CRC32 of
+ * everything before it. The display date is stored too, so reading does no formatting.
+ */
+public final class NewsSnapshot {
+
+    /**
+     * Name of the snapshot file in the app's files directory
+     */
+    public static final String FILE_NAME = "news.snapshot";
+
+    private static final int MAGIC = 0x4e575331; // "NWS1"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 12;
+    private static final int CHECKSUM_SIZE = 8;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Create a private constructor because no one should ever create a {@link NewsSnapshot} object.
+     */
+    private NewsSnapshot() {
+    }
+
+    /**
+     * Write the news to the given file. The snapshot is written to a temporary file first
+     * and renamed into place, so a crash never leaves a half written snapshot behind.
+     */
+    public static void write(File file, List<TechNews> news) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmpFile);
+        CRC32 crc = new CRC32();
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(fileOut, crc)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(news.size());
+            for (TechNews techNews : news) {
+                out.writeLong(techNews.getPublishedAt());
+                writeString(out, techNews.getId());
+                writeString(out, techNews.getSection());
+                writeString(out, techNews.getTitle());
+                writeString(out, techNews.getDisplayDate());
+                writeString(out, techNews.getAuthor());
+                writeString(out, techNews.getUrl());
+                writeString(out, techNews.getThumbnailUrl());
+            }
+            out.flush();
+            // The checksum itself is not part of the checked data
+            new DataOutputStream(fileOut).writeLong(crc.getValue());
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            throw new IOException("Cannot rename " + tmpFile + " to " + file);
+        }
+    }
+
+    /**
+     * Read the news from the given file with memory mapped I/O.
+     *
+     * @return the news in the snapshot, or null if the file is missing, truncated or corrupt
+     */
+    public static List<TechNews> read(File file) {
+        if (!file.isFile() || file.length() < HEADER_SIZE + CHECKSUM_SIZE) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            NewsResponseCache.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * Decode a whole snapshot, checking its checksum before trusting any of it.
+     */
+    static List<TechNews> decode(ByteBuffer buffer) {
+        int dataSize = buffer.limit() - CHECKSUM_SIZE;
+        if (dataSize < HEADER_SIZE) {
+            return null;
+        }
+
+        byte[] scratch = new byte[256];
+        CRC32 crc = new CRC32();
+        ByteBuffer data = buffer.duplicate();
+        data.limit(dataSize);
+        while (data.hasRemaining()) {
+            int count = Math.min(scratch.length, data.remaining());
+            data.get(scratch, 0, count);
+            crc.update(scratch, 0, count);
+        }
+        if (buffer.getLong(dataSize) != crc.getValue()) {
+            return null;
+        }
+
+        data.rewind();
+        try {
+            if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                return null;
+            }
+            int count = data.getInt();
+            if (count < 0) {
+                return null;
+            }
+            // Every news needs at least a time and seven length prefixes, so a bogus count fails here
+            List<TechNews> news = new ArrayList<>(Math.min(count, data.remaining() / 36));
+            for (int i = 0; i < count; i++) {
+                long publishedAt = data.getLong();
+                String id = readString(data, scratch);
+                String section = readString(data, scratch);
+                String title = readString(data, scratch);
+                String displayDate = readString(data, scratch);
+                String author = readString(data, scratch);
+                String url = readString(data, scratch);
+                String thumbnailUrl = readString(data, scratch);
+                news.add(new TechNews(id, section, title, publishedAt, displayDate, author, url, thumbnailUrl));
+            }
+            return data.hasRemaining() ? null : news;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer data, byte[] scratch) {
+        int length = data.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > data.remaining()) {
+            throw new IllegalArgumentException("Bad string length " + length);
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        data.get(bytes, 0, length);
+        return new String(bytes, 0, length, UTF_8);
+    }
+}
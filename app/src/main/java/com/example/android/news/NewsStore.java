@@ -0,0 +1,277 @@
+package com.example.android.news;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.news.NewsContract.NewsEntry;
+import com.example.android.news.NewsContract.NewsSearchEntry;
+import com.example.android.news.NewsContract.SyncStateEntry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent store of {@link TechNews}, keyed by the Guardian article id.
+ * The network only feeds the store; the list is read from it one window at a time.
+ * The store keeps the newest {@link #MAX_ROWS} news and drops the older ones on save.
+ * The title, section and author of the stored news are searchable through a full-text
+ * index the database keeps in step with the news.
+ */
+public class NewsStore {
+
+    private static final String[] PROJECTION = {
+            NewsEntry.COLUMN_ARTICLE_ID,
+            NewsEntry.COLUMN_SECTION,
+            NewsEntry.COLUMN_TITLE,
+            NewsEntry.COLUMN_DATE,
+            NewsEntry.COLUMN_AUTHOR,
+            NewsEntry.COLUMN_URL,
+            NewsEntry.COLUMN_THUMBNAIL_URL,
+            NewsEntry.COLUMN_SECTION_ID};
+
+    /**
+     * Most news kept, a few hundred pages of the list
+     */
+    static final int MAX_ROWS = 5000;
+
+    private static NewsStore sInstance;
+
+    private final NewsDbHelper mDbHelper;
+    private final int mMaxRows;
+
+    private NewsStore(Context context) {
+        this(new NewsDbHelper(context.getApplicationContext()), MAX_ROWS);
+    }
+
+    /**
+     * Constructs a store of its own database keeping up to maxRows news, for tests.
+     */
+    NewsStore(NewsDbHelper dbHelper, int maxRows) {
+        mDbHelper = dbHelper;
+        mMaxRows = maxRows;
+    }
+
+    /**
+     * Returns the store shared by the whole app, so there is a single database connection.
+     */
+    public static synchronized NewsStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NewsStore(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Insert the given news, replacing stored news with the same article id.
+     */
+    public void save(List<TechNews> news) {
+        save(news, Collections.<String, Long>emptyMap());
+    }
+
+    /**
+     * Insert the given news and remember the newest publication time fetched of each feed,
+     * in one transaction, so the feeds are never marked as synced past news that weren't saved.
+     * Stored news with the same article id are updated in place, so their row and search
+     * words are replaced rather than left behind. The oldest news beyond the row cap are
+     * deleted in the same transaction.
+     *
+     * @param newestDates publication time of the newest news, by feed URL
+     */
+    public void save(List<TechNews> news, Map<String, Long> newestDates) {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (TechNews techNews : news) {
+                if (techNews.getId() == null) {
+                    continue;
+                }
+                values.clear();
+                values.put(NewsEntry.COLUMN_ARTICLE_ID, techNews.getId());
+                values.put(NewsEntry.COLUMN_SECTION, techNews.getSection());
+                values.put(NewsEntry.COLUMN_SECTION_ID, techNews.getSectionId());
+                values.put(NewsEntry.COLUMN_TITLE, techNews.getTitle());
+                values.put(NewsEntry.COLUMN_DATE, techNews.getPublishedAt());
+                values.put(NewsEntry.COLUMN_AUTHOR, techNews.getAuthor());
+                values.put(NewsEntry.COLUMN_URL, techNews.getUrl());
+                values.put(NewsEntry.COLUMN_THUMBNAIL_URL, techNews.getThumbnailUrl());
+                // A replacing insert deletes the row without running the delete trigger
+                if (db.update(NewsEntry.TABLE_NAME, values, NewsEntry.COLUMN_ARTICLE_ID + " = ?",
+                        new String[]{techNews.getId()}) == 0) {
+                    db.insert(NewsEntry.TABLE_NAME, null, values);
+                }
+            }
+            evictOldest(db);
+            for (Map.Entry<String, Long> entry : newestDates.entrySet()) {
+                values.clear();
+                values.put(SyncStateEntry.COLUMN_FEED_URL, entry.getKey());
+                values.put(SyncStateEntry.COLUMN_NEWEST_DATE, entry.getValue());
+                db.insertWithOnConflict(SyncStateEntry.TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Delete the oldest news beyond the row cap, walking the (date, article_id) index. The
+     * delete trigger drops their search words too.
+     */
+    private void evictOldest(SQLiteDatabase db) {
+        long excess = DatabaseUtils.queryNumEntries(db, NewsEntry.TABLE_NAME) - mMaxRows;
+        if (excess <= 0) {
+            return;
+        }
+        db.execSQL("DELETE FROM " + NewsEntry.TABLE_NAME + " WHERE " + NewsEntry._ID + " IN (SELECT "
+                + NewsEntry._ID + " FROM " + NewsEntry.TABLE_NAME + " ORDER BY " + NewsEntry.COLUMN_DATE
+                + " ASC, " + NewsEntry.COLUMN_ARTICLE_ID + " ASC LIMIT " + excess + ")");
+    }
+
+    /**
+     * Returns the publication time of the newest news fetched of every feed, by feed URL.
+     */
+    public Map<String, Long> getNewestDates() {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.query(SyncStateEntry.TABLE_NAME,
+                new String[]{SyncStateEntry.COLUMN_FEED_URL, SyncStateEntry.COLUMN_NEWEST_DATE},
+                null, null, null, null, null);
+        Map<String, Long> newestDates = new HashMap<>();
+        try {
+            while (cursor.moveToNext()) {
+                newestDates.put(cursor.getString(0), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return newestDates;
+    }
+
+    /**
+     * Returns one window of stored news in publication order.
+     *
+     * @param sections    only return news of these section ids, like technology, or all news
+     *                    if null or empty
+     * @param newestFirst true to order by newest first, false for oldest first
+     * @param after       last news of the previous window, or null for the first window
+     * @param limit       maximum number of news in the window
+     */
+    public List<TechNews> queryPage(Collection<String> sections, boolean newestFirst, TechNews after, int limit) {
+        StringBuilder selection = new StringBuilder();
+        List<String> selectionArgs = new ArrayList<>();
+
+        // One section is a range of the (section_id, date, article_id) index, several are
+        // looked up there one after the other
+        if (sections != null && !sections.isEmpty()) {
+            selection.append(NewsEntry.COLUMN_SECTION_ID);
+            if (sections.size() == 1) {
+                selection.append(" = ?");
+            } else {
+                selection.append(" IN (");
+                for (int i = 0; i < sections.size(); i++) {
+                    selection.append(i > 0 ? ", ?" : "?");
+                }
+                selection.append(")");
+            }
+            selectionArgs.addAll(sections);
+        }
+
+        // Seek past the previous window on the index instead of using OFFSET, so every window
+        // costs the same no matter how deep into the store it is. The date bound alone is the
+        // range searched on the index, the article id only breaks ties of the same date.
+        if (after != null) {
+            String compare = newestFirst ? " < ?" : " > ?";
+            String bound = newestFirst ? " <= ?" : " >= ?";
+            if (selection.length() > 0) {
+                selection.append(" AND ");
+            }
+            selection.append(NewsEntry.COLUMN_DATE).append(bound)
+                    .append(" AND (").append(NewsEntry.COLUMN_DATE).append(compare)
+                    .append(" OR ").append(NewsEntry.COLUMN_ARTICLE_ID).append(compare).append(")");
+            selectionArgs.add(String.valueOf(after.getPublishedAt()));
+            selectionArgs.add(String.valueOf(after.getPublishedAt()));
+            selectionArgs.add(after.getId());
+        }
+
+        String direction = newestFirst ? " DESC" : " ASC";
+        String orderBy = NewsEntry.COLUMN_DATE + direction + ", " + NewsEntry.COLUMN_ARTICLE_ID + direction;
+
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.query(NewsEntry.TABLE_NAME, PROJECTION,
+                selection.length() > 0 ? selection.toString() : null,
+                selectionArgs.toArray(new String[selectionArgs.size()]),
+                null, null, orderBy, String.valueOf(limit));
+
+        return readNews(cursor);
+    }
+
+    /**
+     * Returns up to limit stored news whose title, section or author have words starting with
+     * every term of the query, newest first. So "tech reg" finds "Technology regulation".
+     */
+    public List<TechNews> search(String query, int limit) {
+        String match = matchExpression(query);
+        if (match == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.query(NewsEntry.TABLE_NAME, PROJECTION,
+                NewsEntry._ID + " IN (SELECT " + NewsSearchEntry.COLUMN_DOCID + " FROM "
+                        + NewsSearchEntry.TABLE_NAME + " WHERE " + NewsSearchEntry.TABLE_NAME + " MATCH ?)",
+                new String[]{match}, null, null,
+                NewsEntry.COLUMN_DATE + " DESC, " + NewsEntry.COLUMN_ARTICLE_ID + " DESC",
+                String.valueOf(limit));
+        return readNews(cursor);
+    }
+
+    /**
+     * Returns the FTS match expression of a query typed by the user, a prefix term for every
+     * word, or null if it has no words. Words are split and lower cased like the simple
+     * tokenizer of the index does: ASCII letters and digits and every non-ASCII character
+     * make up words, so the query can't contain any operator or quote.
+     */
+    static String matchExpression(String query) {
+        StringBuilder match = new StringBuilder();
+        int start = -1;
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : ' ';
+            boolean wordChar = c > 127 || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                for (int j = start; j < i; j++) {
+                    char w = query.charAt(j);
+                    match.append(w >= 'A' && w <= 'Z' ? (char) (w + ('a' - 'A')) : w);
+                }
+                match.append('*');
+                start = -1;
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    private static List<TechNews> readNews(Cursor cursor) {
+        List<TechNews> newsList = new ArrayList<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                long publishedAt = cursor.getLong(3);
+                newsList.add(new TechNews(cursor.getString(0), cursor.getString(1), cursor.getString(2),
+                        publishedAt, NewsDates.formatForDisplay(publishedAt),
+                        cursor.getString(4), cursor.getString(5), cursor.getString(6), cursor.getString(7)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return newsList;
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.android.news;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Uri;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.preference.PreferenceManager;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Refreshes the local store from the network. Used by the foreground loader and by the
+ * periodic background sync, so both go through the same fetch path and leave the store
+ * and the cold start snapshot in the same state.
+ */
+public final class NewsSync {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = NewsSync.class.getSimpleName();
+
+    /**
+     * Minimum time between two background syncs
+     */
+    static final long SYNC_INTERVAL_MILLIS = 60 * 60 * 1000L;
+
+    /**
+     * Maximum number of feed requests running at the same time
+     */
+    private static final int MAX_PARALLEL_REQUESTS = 4;
+
+    /**
+     * Pages of new news requested at most per feed and refresh
+     */
+    private static final int MAX_DELTA_PAGES = 5;
+
+    private static final ParallelNewsFetcher sFetcher = new ParallelNewsFetcher(MAX_PARALLEL_REQUESTS);
+
+    private static final ParallelNewsFetcher.Fetcher FETCHER = new ParallelNewsFetcher.Fetcher() {
+        @Override
+        public List<TechNews> fetch(String url, CancellationToken token) {
+            return QueryUtils.fetchNewsData(url, token);
+        }
+    };
+
+    /**
+     * Returns the fetcher of the pages of a delta sync. The pages are requested with the
+     * token of their feed, so they are recorded against its load.
+     *
+     * @param priority one of the RequestGovernor priorities
+     */
+    private static DeltaFetcher.PageFetcher pageFetcher(final int priority) {
+        return new DeltaFetcher.PageFetcher() {
+            @Override
+            public List<TechNews> fetch(String feedUrl, String pageUrl, CancellationToken token) {
+                return QueryUtils.fetchNewsData(pageUrl, priority, token);
+            }
+        };
+    }
+
+    private static final String PREF_LAST_SYNC_TIME = "last_sync_time";
+    private static final String PREF_SCHEDULED_CONFIG = "scheduled_sync_config";
+
+    /**
+     * Create a private constructor because no one should ever create a {@link NewsSync} object.
+     */
+    private NewsSync() {
+    }
+
+    /**
+     * Fetch the feeds of the query into the store and return the first window of stored news.
+     * Feeds fetched before only request the news published since, which are merged into the
+     * stored ones. After a successful fetch the window is also written as the cold start
+     * snapshot.
+     *
+     * @param priority one of the RequestGovernor priorities, for the user or in the background
+     * @param token    aborts the requests when the result is no longer needed, or null
+     * @param listener receives the news of the feeds that already arrived merged by date, and
+     *                 into the stored ones when only new news were requested, or null
+     */
+    public static List<TechNews> refresh(Context context, NewsQuery query, int priority,
+                                         CancellationToken token, ParallelNewsFetcher.Listener listener) {
+        NewsStore store = NewsStore.getInstance(context);
+
+        //Pull the new news into the store; without network the stored news are still returned
+        Map<String, Long> newestDates = store.getNewestDates();
+        DeltaFetcher fetcher = new DeltaFetcher(pageFetcher(priority), newestDates, query.getPageSize(), MAX_DELTA_PAGES);
+        if (listener != null && !Collections.disjoint(newestDates.keySet(), query.getUrls())) {
+            // Feeds fetched before only bring their new news, shown merged into the stored ones
+            List<TechNews> stored = store.queryPage(query.getSections(), query.isNewestFirst(), null,
+                    query.getPageSize());
+            listener = mergingListener(stored, query, listener);
+        }
+        List<TechNews> techNews = sFetcher.fetchAll(query.getUrls(), query.isNewestFirst(), fetcher, token, listener);
+        if (techNews != null) {
+            store.save(techNews, fetcher.getFetchedNewest());
+        }
+
+        //Read the first window of stored news, at least as long as the partial results shown
+        int limit = Math.max(query.getPageSize(), techNews != null ? techNews.size() : 0);
+        List<TechNews> window = store.queryPage(query.getSections(), query.isNewestFirst(), null, limit);
+
+        //Remember a successfully refreshed list for the next cold start
+        if (techNews != null) {
+            try {
+                NewsSnapshot.write(new File(context.getFilesDir(), NewsSnapshot.FILE_NAME), window);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem writing the news snapshot.", e);
+            }
+            recordSync(context);
+        }
+        return window;
+    }
+
+    /**
+     * Returns a listener handing the news that already arrived to the given one merged into
+     * the first window of stored news, as far as the window read after saving them will be.
+     * An arrived news replaces the stored one with the same id.
+     */
+    private static ParallelNewsFetcher.Listener mergingListener(final List<TechNews> stored,
+                                                                final NewsQuery query,
+                                                                final ParallelNewsFetcher.Listener listener) {
+        return new ParallelNewsFetcher.Listener() {
+            @Override
+            public void onPartialResult(List<TechNews> merged, int done, int total) {
+                Comparator<TechNews> order = ParallelNewsFetcher.order(query.isNewestFirst());
+                Set<String> seenIds = new HashSet<>();
+                List<TechNews> shown = ParallelNewsFetcher.merge(null, merged, order, seenIds);
+                shown = ParallelNewsFetcher.merge(shown, stored, order, seenIds);
+                int limit = Math.max(query.getPageSize(), merged.size());
+                if (shown.size() > limit) {
+                    shown = new ArrayList<>(shown.subList(0, limit));
+                }
+                listener.onPartialResult(Collections.unmodifiableList(shown), done, total);
+            }
+        };
+    }
+
+    /**
+     * Returns the first window of stored news for the query without a request, or null if
+     * the store can't answer it: a feed of the query was never fetched, or there are fewer
+     * stored news than fill the window. Queries differing only in order or page size from
+     * fetched ones are answered by sorting and slicing the store.
+     */
+    public static List<TechNews> queryLocal(Context context, NewsQuery query) {
+        NewsStore store = NewsStore.getInstance(context);
+        Set<String> fetchedFeeds = new HashSet<>();
+        for (String url : store.getNewestDates().keySet()) {
+            fetchedFeeds.add(feedKey(url));
+        }
+        for (String url : query.getUrls()) {
+            if (!fetchedFeeds.contains(feedKey(url))) {
+                return null;
+            }
+        }
+        List<TechNews> window = store.queryPage(query.getSections(), query.isNewestFirst(), null,
+                query.getPageSize());
+        return window.size() >= query.getPageSize() ? window : null;
+    }
+
+    /**
+     * Returns the URL without the parameters that only change the order and slicing of
+     * its news, so URLs of the same feed give the same key.
+     */
+    static String feedKey(String url) {
+        Uri uri = Uri.parse(url);
+        Uri.Builder key = uri.buildUpon().clearQuery();
+        for (String name : new TreeSet<>(uri.getQueryParameterNames())) {
+            if (!name.equals("page-size") && !name.equals("orderby") && !name.equals("order-by")
+                    && !name.equals("page")) {
+                key.appendQueryParameter(name, uri.getQueryParameter(name));
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Fetch the URLs in parallel and return their news merged by date, or null if every
+     * request failed.
+     */
+    static List<TechNews> fetchAll(List<String> urls, boolean newestFirst, CancellationToken token,
+                                   ParallelNewsFetcher.Listener listener) {
+        return sFetcher.fetchAll(urls, newestFirst, FETCHER, token, listener);
+    }
+
+    /**
+     * Refresh the followed sections in one go, so one wake-up does all the work.
+     *
+     * @param token stops the sync when the system no longer lets it run, or null
+     * @return true if the sync should be retried later
+     */
+    public static boolean syncAll(Context context, CancellationToken token) {
+        SyncPolicy policy = getPolicy(context);
+        if (!policy.shouldSync(getLastSyncTime(context), getConditions(context))) {
+            return false;
+        }
+        long startTime = getLastSyncTime(context);
+        refresh(context, NewsQuery.fromPreferences(context), RequestGovernor.PRIORITY_BACKGROUND, token, null);
+        return getLastSyncTime(context) == startTime;
+    }
+
+    /**
+     * Schedule the periodic background sync with the constraints from the settings.
+     * The job is only rescheduled when the configuration changed, so its period isn't
+     * restarted every time the app is opened.
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            // No JobScheduler, the news are refreshed when the app is opened
+            return;
+        }
+        SyncPolicy policy = getPolicy(context);
+        String config = policy.getIntervalMillis() + "/" + policy.getFlexMillis() + "/"
+                + policy.isUnmeteredOnly() + "/" + policy.isChargingOnly();
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        if (config.equals(preferences.getString(PREF_SCHEDULED_CONFIG, null))) {
+            return;
+        }
+        NewsSyncJobService.schedule(context, policy);
+        preferences.edit().putString(PREF_SCHEDULED_CONFIG, config).apply();
+    }
+
+    /**
+     * Returns the sync rules configured in the settings.
+     */
+    static SyncPolicy getPolicy(Context context) {
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        boolean unmeteredOnly = preferences.getBoolean(
+                context.getString(R.string.settings_sync_unmetered_key),
+                context.getResources().getBoolean(R.bool.settings_sync_unmetered_default));
+        boolean chargingOnly = preferences.getBoolean(
+                context.getString(R.string.settings_sync_charging_key),
+                context.getResources().getBoolean(R.bool.settings_sync_charging_default));
+        return new SyncPolicy(SyncPolicy.SYSTEM_CLOCK, SYNC_INTERVAL_MILLIS, unmeteredOnly, chargingOnly);
+    }
+
+    static long getLastSyncTime(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context).getLong(PREF_LAST_SYNC_TIME, 0);
+    }
+
+    private static void recordSync(Context context) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putLong(PREF_LAST_SYNC_TIME, System.currentTimeMillis())
+                .apply();
+    }
+
+    /**
+     * Returns the current network and battery state of the device.
+     */
+    static SyncPolicy.Conditions getConditions(Context context) {
+        final ConnectivityManager connMgr = (ConnectivityManager)
+                context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        final Intent batteryStatus = context.getApplicationContext().registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return new SyncPolicy.Conditions() {
+            @Override
+            public boolean isUnmetered() {
+                // ConnectivityManager only tells metered networks apart from API 16 on, the
+                // compat version treats mobile networks as metered before
+                return connMgr != null && !ConnectivityManagerCompat.isActiveNetworkMetered(connMgr);
+            }
+
+            @Override
+            public boolean isCharging() {
+                return batteryStatus != null
+                        && batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+            }
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.android.news;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Periodic background sync. The system batches the wake-ups with other jobs and only
+ * starts it when the configured network and charging constraints hold.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class NewsSyncJobService extends JobService {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = NewsSyncJobService.class.getSimpleName();
+
+    private static final int SYNC_JOB_ID = 1;
+
+    private AsyncTask<Void, Void, Boolean> mSyncTask;
+
+    private CancellationToken mToken;
+
+    /**
+     * Replace the scheduled sync job with one following the given policy.
+     */
+    static void schedule(Context context, SyncPolicy policy) {
+        JobInfo.Builder builder = new JobInfo.Builder(SYNC_JOB_ID, new ComponentName(context, NewsSyncJobService.class));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            // Runs anywhere in the flex window at the end of the period, which the policy
+            // still counts as due
+            builder.setPeriodic(policy.getIntervalMillis(), policy.getFlexMillis());
+        } else {
+            builder.setPeriodic(policy.getIntervalMillis());
+        }
+        JobInfo job = builder
+                .setRequiredNetworkType(policy.isUnmeteredOnly()
+                        ? JobInfo.NETWORK_TYPE_UNMETERED : JobInfo.NETWORK_TYPE_ANY)
+                .setRequiresCharging(policy.isChargingOnly())
+                .setPersisted(true)
+                .build();
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null || scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.e(LOG_TAG, "Problem scheduling the news sync.");
+        }
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        // The job runs on the main thread, so the network work is moved off it
+        final CancellationToken token = new CancellationToken();
+        mToken = token;
+        mSyncTask = new AsyncTask<Void, Void, Boolean>() {
+            @Override
+            protected Boolean doInBackground(Void... voids) {
+                // The job may have started the process, the quota continues from earlier runs
+                QueryUtils.restoreQuota(getApplicationContext());
+                return NewsSync.syncAll(getApplicationContext(), token);
+            }
+
+            @Override
+            protected void onPostExecute(Boolean needsReschedule) {
+                jobFinished(params, needsReschedule);
+            }
+        };
+        mSyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Constraints no longer hold, let the next period pick the work up
+        if (mToken != null) {
+            mToken.cancel();
+        }
+        if (mSyncTask != null) {
+            mSyncTask.cancel(false);
+        }
+        return false;
+    }
+}
@@ -1,22 +1,17 @@
 package com.example.android.news;
 
-import android.text.TextUtils;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 /**
  * Utility class with methods to help perform the HTTP request and
@@ -30,7 +25,91 @@ public class QueryUtils {
     public static final String LOG_TAG = QueryUtils.class.getSimpleName();
 
     static final int ReadTimeout = 10000;
-    static final int ConnectTimeout = 15000;
+    static final int ConnectTimeout = 8000;
+
+    /**
+     * Attempts per request, waits between them and the failures that open the circuit
+     */
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BASE_DELAY_MILLIS = 500;
+    private static final long RETRY_MAX_DELAY_MILLIS = 8000;
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+    private static final long CIRCUIT_OPEN_MILLIS = 30000;
+
+    /**
+     * Idle connections kept alive, enough for the feeds of all sections loaded in parallel
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * Quotas of the API key, the limits of a guardianapis developer key
+     */
+    static final int REQUESTS_PER_SECOND = 12;
+    private static final int REQUESTS_PER_DAY = 5000;
+    private static final double USER_RESERVE = 0.1;
+
+    /**
+     * Every request with the API key waits for its turn here. The daily bucket continues where
+     * the last process left it once {@link #restoreQuota(Context)} was called.
+     */
+    private static final RequestGovernor sGovernor = new RequestGovernor(SyncPolicy.SYSTEM_CLOCK,
+            REQUESTS_PER_SECOND, REQUESTS_PER_DAY, USER_RESERVE, new SectionBatcher());
+
+    private static final String PREF_QUOTA_TOKENS = "quota_day_tokens";
+    private static final String PREF_QUOTA_TIME = "quota_day_time";
+
+    private static boolean sQuotaRestored;
+
+    private static boolean sPrewarmed;
+
+    /**
+     * Shared by the clients created over time, they all talk to the same upstream
+     */
+    private static final CircuitBreaker sCircuitBreaker =
+            new CircuitBreaker(SyncPolicy.SYSTEM_CLOCK, CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_MILLIS);
+
+    /**
+     * Counts the requests to the guardianapis reusing a kept-alive connection, shared by the
+     * clients created over time like the circuit breaker
+     */
+    private static final ConnectionPool sConnectionPool = createConnectionPool();
+
+    /**
+     * Records the request stages of the load on the token of each request
+     */
+    private static final NewsHttpClient.EventListener METRICS_LISTENER = new NewsHttpClient.EventListener() {
+        @Override
+        public void onConnected(URL url, CancellationToken token, long connectNanos) {
+            LoadMetrics.getInstance().recordStage(CancellationToken.loadIdOf(token), LoadMetrics.STAGE_CONNECT,
+                    connectNanos);
+        }
+
+        @Override
+        public void onResponse(URL url, CancellationToken token, long firstByteNanos, int cacheResult) {
+            LoadMetrics metrics = LoadMetrics.getInstance();
+            long load = CancellationToken.loadIdOf(token);
+            metrics.recordStage(load, LoadMetrics.STAGE_FIRST_BYTE, firstByteNanos);
+            metrics.recordCache(load, cacheResult);
+        }
+
+        @Override
+        public void onBodyClosed(URL url, CancellationToken token, long bytes) {
+            LoadMetrics.getInstance().recordPayload(CancellationToken.loadIdOf(token), bytes, 0);
+        }
+    };
+
+    /**
+     * Client used for all requests, replaced once a response cache is available
+     */
+    private static volatile NewsHttpClient sHttpClient = createHttpClient(null);
+
+    /**
+     * Requests currently running, shared by callers asking for the same URL. The caller that
+     * makes a request passes the fetcher for its priority.
+     */
+    private static final InFlightRequests<List<TechNews>> sRequests =
+            new InFlightRequests<>(feedFetcher(RequestGovernor.PRIORITY_USER));
 
     /**
      * Create a private constructor because no one should ever create a {@link QueryUtils} object.
@@ -40,25 +119,180 @@ public class QueryUtils {
     private QueryUtils() {
     }
 
+    /**
+     * Continue the daily API quota from the tokens the last process left, and keep it in the
+     * preferences from now on, so process restarts and the sync job don't refill it. Only the
+     * first call of a process has an effect; called before the first request by the main
+     * activity and the sync job.
+     */
+    public static synchronized void restoreQuota(Context context) {
+        if (sQuotaRestored) {
+            return;
+        }
+        sQuotaRestored = true;
+        final SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        sGovernor.restoreDayQuota(preferences.getFloat(PREF_QUOTA_TOKENS, REQUESTS_PER_DAY),
+                preferences.getLong(PREF_QUOTA_TIME, 0), new RequestGovernor.QuotaStore() {
+                    @Override
+                    public void save(double tokens, long time) {
+                        preferences.edit()
+                                .putFloat(PREF_QUOTA_TOKENS, (float) tokens)
+                                .putLong(PREF_QUOTA_TIME, time)
+                                .apply();
+                    }
+                });
+    }
+
+    /**
+     * Store responses in the given cache and revalidate them on later requests.
+     */
+    public static void setResponseCache(NewsResponseCache cache) {
+        sHttpClient = createHttpClient(cache);
+    }
+
+    private static ConnectionPool createConnectionPool() {
+        ConnectionPool pool = new ConnectionPool(SyncPolicy.SYSTEM_CLOCK, MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MILLIS);
+        // Before the first connection, this class is loaded ahead of any request
+        pool.applyToPlatform();
+        return pool;
+    }
+
+    /**
+     * Returns the pool counting the connections to the guardianapis reused and opened.
+     */
+    public static ConnectionPool getConnectionPool() {
+        return sConnectionPool;
+    }
+
+    /**
+     * Connect to the guardianapis on a background thread, so the first feed request of the
+     * process finds a connection with DNS, TCP and TLS done. Called while the main activity
+     * inflates its layout; only the first call of a process has an effect, not those of
+     * activities recreated on rotation.
+     */
+    public static synchronized void prewarm() {
+        if (sPrewarmed) {
+            return;
+        }
+        sPrewarmed = true;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    createHttpClient(null).prewarm(new URL(NewsQuery.apiRootUrl()));
+                } catch (IOException e) {
+                    // Offline, the first request connects itself
+                    Log.d(LOG_TAG, "Pre-warming the connection failed: " + e);
+                }
+            }
+        }, "prewarm").start();
+    }
+
+    private static NewsHttpClient createHttpClient(NewsResponseCache cache) {
+        NewsHttpClient client = new NewsHttpClient(cache, ConnectTimeout, ReadTimeout);
+        client.setConnectionPool(sConnectionPool);
+        client.setEventListener(METRICS_LISTENER);
+        client.setRetryPolicy(new RetryPolicy(MAX_ATTEMPTS, RETRY_BASE_DELAY_MILLIS, RETRY_MAX_DELAY_MILLIS,
+                new Random()));
+        client.setCircuitBreaker(sCircuitBreaker);
+        return client;
+    }
+
     /**
      * Query the guardianapis dataset and return a list of {@link TechNews} objects.
      */
     public static List<TechNews> fetchNewsData(String quardianRequestUrl) {
-        // Create URL object
-        URL url = createUrl(quardianRequestUrl);
+        return fetchNewsData(quardianRequestUrl, null);
+    }
+
+    /**
+     * Query the guardianapis dataset for a list the user waits for.
+     *
+     * @param token cancels this caller's request, or null
+     */
+    public static List<TechNews> fetchNewsData(String quardianRequestUrl, CancellationToken token) {
+        return fetchNewsData(quardianRequestUrl, RequestGovernor.PRIORITY_USER, token);
+    }
 
-        // Perform HTTP request to the URL and receive a JSON response back
-        String jsonResponse = null;
+    /**
+     * Query the guardianapis dataset and return a list of {@link TechNews} objects, or null
+     * if the request failed or was canceled. Callers asking for the same URL at the same time
+     * share one request. A fresh cached response answers right away; otherwise the request
+     * waits for its turn within the API quotas, where it may be combined with other waiting
+     * requests.
+     *
+     * @param priority one of the RequestGovernor priorities
+     * @param token    cancels this caller's request, or null
+     */
+    public static List<TechNews> fetchNewsData(String quardianRequestUrl, int priority, CancellationToken token) {
+        // If the URL is null, then return early.
+        if (createUrl(quardianRequestUrl) == null) {
+            return null;
+        }
+        // Perform HTTP request to the URL and parse the JSON response while it is being received
+        List<TechNews> newsList = null;
         try {
-            jsonResponse = makeHttpRequest(url);
+            newsList = sRequests.get(quardianRequestUrl, token, feedFetcher(priority));
         } catch (IOException e) {
-            Log.e(LOG_TAG, "Error closing input stream", e);
+            logFailure(quardianRequestUrl, token, e);
         }
 
-        // Extract relevant fields from the JSON response and create a list of {@link TechNews}
+        // Return the list of {@link TechNews}
+        return newsList;
+    }
+
+    /**
+     * Returns the governor every request with the API key has to go through.
+     */
+    static RequestGovernor getGovernor() {
+        return sGovernor;
+    }
+
+    /**
+     * Returns the fetcher making the request for a feed at the given priority.
+     */
+    private static InFlightRequests.Fetcher<List<TechNews>> feedFetcher(final int priority) {
+        return new InFlightRequests.Fetcher<List<TechNews>>() {
+            @Override
+            public List<TechNews> fetch(final String feedUrl, CancellationToken token) throws IOException {
+                // A fresh cached response takes no turn and no token of the quotas
+                URL url = new URL(feedUrl);
+                InputStream fresh = sHttpClient.openFresh(url, token);
+                if (fresh != null) {
+                    return readNews(url, fresh, token);
+                }
+                // A combined request is made with the token, and recorded against the load,
+                // of the feed whose turn it is
+                return sGovernor.fetch(feedUrl, priority, token, new ParallelNewsFetcher.Fetcher() {
+                    @Override
+                    public List<TechNews> fetch(String requestUrl, CancellationToken token) {
+                        return request(requestUrl, priority, token);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Request the URL over the network after its turn in the governor, whose retries wait
+     * for turns of their own.
+     */
+    private static List<TechNews> request(String quardianRequestUrl, int priority, CancellationToken token) {
+        try {
+            URL url = new URL(quardianRequestUrl);
+            return readNews(url, sHttpClient.openStream(url, token, sGovernor.retryGate(priority)), token);
+        } catch (IOException e) {
+            logFailure(quardianRequestUrl, token, e);
+            return null;
+        }
+    }
 
-        // Return the {@link Event}
-        return extractFeatureFromJson(jsonResponse);
+    private static void logFailure(String quardianRequestUrl, CancellationToken token, IOException e) {
+        if (token != null && token.isCanceled()) {
+            Log.d(LOG_TAG, "Request canceled: " + quardianRequestUrl);
+        } else {
+            Log.e(LOG_TAG, "Problem retrieving the technology news JSON results.", e);
+        }
     }
 
     /**
@@ -75,117 +309,80 @@ public class QueryUtils {
     }
 
     /**
-     * Make an HTTP request to the given URL and return a String as the response.
+     * Return the list of {@link TechNews} parsed straight from the response body of the URL,
+     * as it is read from the cache or the network, and close it.
+     *
+     * @param token the request was made with, carrying its load, or null
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
-
-        // If the URL is null, then return early.
-        if (url == null) {
-            return jsonResponse;
-        }
-
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
+    private static List<TechNews> readNews(URL url, InputStream body, CancellationToken token) throws IOException {
+        TimedInputStream inputStream = new TimedInputStream(body);
         try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(ReadTimeout /* milliseconds */);
-            urlConnection.setConnectTimeout(ConnectTimeout /* milliseconds */);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // If the request was successful (response code 200),
-            // then read the input stream and parse the response.
-            if (urlConnection.getResponseCode() == 200) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
-            } else {
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
-            }
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the earthquake JSON results.", e);
+            long parseStart = System.nanoTime();
+            List<TechNews> newsList = extractFeatureFromStream(inputStream);
+
+            // Reading and parsing are interleaved, the parse time is what's left
+            // after the time spent waiting for the body
+            LoadMetrics metrics = LoadMetrics.getInstance();
+            long load = CancellationToken.loadIdOf(token);
+            long downloadNanos = inputStream.getReadNanos();
+            metrics.recordStage(load, LoadMetrics.STAGE_DOWNLOAD, downloadNanos);
+            metrics.recordStage(load, LoadMetrics.STAGE_PARSE, System.nanoTime() - parseStart - downloadNanos);
+            metrics.recordPayload(load, 0, newsList != null ? newsList.size() : 0);
+            return newsList;
         } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (inputStream != null) {
-                inputStream.close();
-            }
+            inputStream.close();
         }
-        return jsonResponse;
     }
 
     /**
-     * Convert the {@link InputStream} into a String which contains the
-     * whole JSON response from the server.
+     * Return the list of {@link TechNews} objects parsed from the JSON response. On malformed
+     * JSON the news parsed before the error are returned.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
-        StringBuilder output = new StringBuilder();
-        if (inputStream != null) {
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-            BufferedReader reader = new BufferedReader(inputStreamReader);
-            String line = reader.readLine();
-            while (line != null) {
-                output.append(line);
-                line = reader.readLine();
-            }
+    static List<TechNews> extractFeatureFromStream(InputStream inputStream) throws IOException {
+        // If there is no stream, then return early.
+        if (inputStream == null) {
+            return null;
         }
-        return output.toString();
+
+        NewsPage page = NewsParser.parse(inputStream);
+        if (!page.isComplete()) {
+            Log.e(LOG_TAG, "Problem parsing the technology news JSON results.");
+        }
+        return page.getNews();
     }
 
     /**
-     * Return a list of {@link TechNews} objects that has been built up from
-     * parsing the given JSON response.
+     * Measures the time spent waiting in read calls
      */
-    private static List<TechNews> extractFeatureFromJson(String technologyNewsJSON) {
-        // If the JSON string is empty or null, then return early.
-        if (TextUtils.isEmpty(technologyNewsJSON)) {
-            return null;
+    private static class TimedInputStream extends FilterInputStream {
+        private long mReadNanos;
+
+        TimedInputStream(InputStream in) {
+            super(in);
         }
 
-        // Create an empty ArrayList that we can start adding news to
-        List<TechNews> newsList = new ArrayList<>();
+        long getReadNanos() {
+            return mReadNanos;
+        }
 
-        // TTry to parse the JSON response string. If there's a problem with the way the JSON
-        // is formatted, a JSONException exception object will be thrown.
-        // Catch the exception so the app doesn't crash, and print the error message to the logs.
-        try {
-            // Create a JSONObject from the JSON response string
-            JSONObject baseJsonResponse = new JSONObject(technologyNewsJSON);
-            JSONObject response = baseJsonResponse.getJSONObject("response");
-            //Create JSON Array
-            JSONArray resultsArray = response.getJSONArray("results");
-
-            //For each news create JSON Object
-            for (int i = 0; i < resultsArray.length(); i++) {
-                JSONObject currentResults = resultsArray.getJSONObject(i);
-
-                //Create String for section, title, date and url of news
-                // Extract the value for the key called "sectionName"
-                String section = currentResults.getString("sectionName");
-                // Extract the value for the key called "webTitle"
-                String title = currentResults.getString("webTitle");
-                // Extract the value for the key called "webPublicationDate"
-                String date = currentResults.getString("webPublicationDate");
-                // Extract the author value
-                JSONArray tagsAuthor = currentResults.getJSONArray("tags");
-                String author="";
-                if (tagsAuthor.length()!= 0) {
-                    JSONObject currentTagsAuthor = tagsAuthor.getJSONObject(0);
-                    author = currentTagsAuthor.getString("webTitle");
-                }else{
-                    author = "Author: unknown";
-                }
-                // Extract the value for the key called "webUrl"
-                String url = currentResults.getString("webUrl");
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                mReadNanos += System.nanoTime() - start;
+            }
+        }
 
-                //Create new news and add it to arrayList
-                TechNews news = new TechNews(section, title, date, author, url);
-                newsList.add(news);
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(buffer, offset, count);
+            } finally {
+                mReadNanos += System.nanoTime() - start;
             }
-        } catch (JSONException e) {
-            e.printStackTrace();
         }
-        return newsList;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package com.example.android.news;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.text.PrecomputedText;
+import android.util.LruCache;
+import android.view.View;
+import android.widget.TextView;
+
+import java.util.List;
+
+/**
+ * Measures the date, section, title and author of the list rows on the loading threads, so
+ * binding a row only attaches text that is already measured instead of measuring glyphs on
+ * the main thread while the user scrolls.
+ * <p>
+ * The texts are {@link PrecomputedText} with the text metrics of the row's {@link TextView}s,
+ * which only exists from Android 9 on. Earlier versions can't hand a TextView a text measured
+ * elsewhere, there nothing is precomputed and the rows measure their texts when bound.
+ * Texts are cached by their content, so the few distinct sections, authors and dates are
+ * measured once.
+ */
+public class RowTextPrecomputer {
+
+    public static final int FIELD_DATE = 0;
+    public static final int FIELD_SECTION = 1;
+    public static final int FIELD_TITLE = 2;
+    public static final int FIELD_AUTHOR = 3;
+    private static final int FIELD_COUNT = 4;
+
+    /**
+     * Texts kept per field, a few pages of titles
+     */
+    private static final int CACHE_SIZE = 200;
+
+    private static RowTextPrecomputer sInstance;
+
+    /**
+     * How the texts of each field are measured, null until {@link #configure(View)}
+     */
+    private volatile Measurer[] mMeasurers;
+
+    /**
+     * Measured texts per field, keyed by the text
+     */
+    private final LruCache<String, CharSequence>[] mCaches;
+
+    public static synchronized RowTextPrecomputer getInstance() {
+        if (sInstance == null) {
+            sInstance = new RowTextPrecomputer();
+        }
+        return sInstance;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RowTextPrecomputer() {
+        mCaches = new LruCache[FIELD_COUNT];
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            mCaches[i] = new LruCache<>(CACHE_SIZE);
+        }
+    }
+
+    /**
+     * Take the text metrics of the given list row, inflated like the rows of the list.
+     * Must be called on the main thread, texts are only precomputed once it was called,
+     * and only on Android 9 and later.
+     */
+    public void configure(View row) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+            return;
+        }
+        int[] ids = {R.id.date, R.id.section, R.id.title, R.id.author};
+        Measurer[] measurers = new Measurer[FIELD_COUNT];
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            TextView view = row.findViewById(ids[i]);
+            measurers[i] = new PrecomputedMeasurer(view);
+        }
+        if (!sameMeasurers(mMeasurers, measurers)) {
+            for (LruCache<String, CharSequence> cache : mCaches) {
+                cache.evictAll();
+            }
+            mMeasurers = measurers;
+        }
+    }
+
+    /**
+     * Measure the shown texts of the given news that aren't measured yet. Called on a
+     * background thread right after the news were loaded.
+     */
+    public void precompute(List<TechNews> news) {
+        Measurer[] measurers = mMeasurers;
+        if (measurers == null || news == null) {
+            return;
+        }
+        for (int i = 0; i < news.size(); i++) {
+            TechNews item = news.get(i);
+            precompute(measurers, FIELD_DATE, item.getDisplayDate());
+            precompute(measurers, FIELD_SECTION, item.getSection());
+            precompute(measurers, FIELD_TITLE, item.getTitle());
+            precompute(measurers, FIELD_AUTHOR, item.getAuthor());
+        }
+    }
+
+    private void precompute(Measurer[] measurers, int field, String text) {
+        if (text == null || text.isEmpty() || mCaches[field].get(text) != null) {
+            return;
+        }
+        mCaches[field].put(text, measurers[field].measure(text));
+    }
+
+    /**
+     * Show the text in the view, measured already if it was precomputed for the view's
+     * text metrics. Called on the main thread when a row is bound.
+     */
+    public void setText(TextView view, int field, String text) {
+        CharSequence measured = text != null ? mCaches[field].get(text) : null;
+        if (measured == null || !fits(measured, view)) {
+            view.setText(text);
+            return;
+        }
+        view.setText(measured);
+    }
+
+    /**
+     * Returns false for a {@link PrecomputedText} made for other text metrics than the
+     * view's, which the view would refuse.
+     */
+    private static boolean fits(CharSequence measured, TextView view) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P || !(measured instanceof PrecomputedText)) {
+            return true;
+        }
+        return ((PrecomputedText) measured).getParams().equals(view.getTextMetricsParams());
+    }
+
+    private static boolean sameMeasurers(Measurer[] old, Measurer[] measurers) {
+        if (old == null) {
+            return false;
+        }
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            if (!old[i].equals(measurers[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Measures the texts of one field
+     */
+    private interface Measurer {
+        /**
+         * Returns the text to show for the given text, measured.
+         */
+        CharSequence measure(String text);
+    }
+
+    @TargetApi(Build.VERSION_CODES.P)
+    private static class PrecomputedMeasurer implements Measurer {
+        private final PrecomputedText.Params mParams;
+
+        PrecomputedMeasurer(TextView view) {
+            mParams = view.getTextMetricsParams();
+        }
+
+        @Override
+        public CharSequence measure(String text) {
+            return PrecomputedText.create(text, mParams);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof PrecomputedMeasurer && mParams.equals(((PrecomputedMeasurer) other).mParams);
+        }
+
+        @Override
+        public int hashCode() {
+            return mParams.hashCode();
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.android.news;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+public class TechNewsAdapter extends RecyclerView.Adapter<TechNewsAdapter.ViewHolder> {
+
+    /**
+     * Receives clicks on list items
+     */
+    public interface OnItemClickListener {
+        void onItemClick(TechNews techNews);
+    }
+
+    /**
+     * Thread computing the differences between the shown and a newly submitted list
+     */
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final OnItemClickListener mListener;
+
+    private final ThumbnailLoader mThumbnailLoader;
+
+    private final RowTextPrecomputer mRowText = RowTextPrecomputer.getInstance();
+
+    /**
+     * Times the binds of the rows, null unless the frame monitor is enabled
+     */
+    private FrameMonitor mFrameMonitor;
+
+    /**
+     * News shown in the list, kept in compact form and read by the rows directly
+     */
+    private CompactNewsList mNews = new CompactNewsList();
+
+    /**
+     * Incremented on every list change, so a diff computed for an outdated list is dropped
+     */
+    private int mGeneration;
+
+    /**
+     * Pages appended while a diff was being computed, applied after it
+     */
+    private List<TechNews> mPendingAppends;
+
+    /**
+     * Constructs a new {@link TechNewsAdapter}.
+     *
+     * @param listener        is notified when a technology news is clicked
+     * @param thumbnailLoader loads the thumbnails of the rows
+     */
+    public TechNewsAdapter(OnItemClickListener listener, ThumbnailLoader thumbnailLoader) {
+        mListener = listener;
+        mThumbnailLoader = thumbnailLoader;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Replace the shown news with the given list. The differences are computed on a
+     * background thread and only inserted, removed, moved and changed rows are updated,
+     * so the scroll position is kept.
+     */
+    public void submitList(List<TechNews> newList) {
+        submitList(newList, null);
+    }
+
+    /**
+     * Like {@link #submitList(List)}, running onApplied on the main thread once the list
+     * is shown. It doesn't run if another list is submitted before.
+     */
+    public void submitList(List<TechNews> newList, Runnable onApplied) {
+        submit(newList, null, onApplied);
+    }
+
+    /**
+     * Like {@link #submitList(List)} with a list the adapter takes over; it is changed by
+     * later appends.
+     */
+    public void submitList(CompactNewsList newList) {
+        submit(null, newList, null);
+    }
+
+    /**
+     * Returns a copy of the shown news, which doesn't change with the list.
+     */
+    public CompactNewsList copyList() {
+        return mNews.copy();
+    }
+
+    /**
+     * Replace the shown news with the given ones, either the news to make a compact list of
+     * or a compact list.
+     */
+    private void submit(final List<TechNews> newList, final CompactNewsList newCompactList,
+                        final Runnable onApplied) {
+        final int generation = ++mGeneration;
+        mPendingAppends = null;
+
+        // Nothing to compare against, so there is no need for a diff
+        boolean newEmpty = newList != null ? newList.isEmpty() : newCompactList.isEmpty();
+        if (mNews.isEmpty() || newEmpty) {
+            int oldSize = mNews.size();
+            mNews = newList != null ? CompactNewsList.of(newList) : newCompactList;
+            if (oldSize > 0) {
+                notifyItemRangeRemoved(0, oldSize);
+            }
+            notifyItemRangeInserted(0, mNews.size());
+            if (onApplied != null) {
+                onApplied.run();
+            }
+            return;
+        }
+
+        final CompactNewsList oldList = mNews;
+        mPendingAppends = new ArrayList<>();
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                // The compact copy is built here too, the submitted objects can then be collected
+                final CompactNewsList compactList = newList != null ? CompactNewsList.of(newList) : newCompactList;
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new NewsDiffCallback(oldList, compactList));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        List<TechNews> appends = mPendingAppends;
+                        mPendingAppends = null;
+                        mNews = compactList;
+                        result.dispatchUpdatesTo(TechNewsAdapter.this);
+                        append(appends);
+                        if (onApplied != null) {
+                            onApplied.run();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Add the given news at the end of the list without touching the other rows.
+     */
+    public void append(List<TechNews> news) {
+        if (mPendingAppends != null) {
+            mPendingAppends.addAll(news);
+            return;
+        }
+        int start = mNews.size();
+        mNews.addAll(news);
+        notifyItemRangeInserted(start, news.size());
+    }
+
+    /**
+     * Remove all news from the list.
+     */
+    public void clear() {
+        submitList(new ArrayList<TechNews>());
+    }
+
+    /**
+     * Report the time every row takes to bind to the monitor, or stop with null.
+     */
+    public void setFrameMonitor(FrameMonitor frameMonitor) {
+        mFrameMonitor = frameMonitor;
+    }
+
+    @Override
+    public int getItemCount() {
+        return mNews.size();
+    }
+
+    /**
+     * Stable id derived from the Guardian article id
+     */
+    @Override
+    public long getItemId(int position) {
+        return stableId(mNews.getId(position));
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the article id.
+     */
+    static long stableId(String articleId) {
+        if (articleId == null) {
+            return RecyclerView.NO_ID;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < articleId.length(); i++) {
+            hash ^= articleId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View listItemView = LayoutInflater.from(parent.getContext()).inflate(
+                R.layout.list_item, parent, false);
+        return new ViewHolder(listItemView);
+    }
+
+    /**
+     * Displays information about the technology news in the given row
+     */
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        long bindStart = mFrameMonitor != null ? System.nanoTime() : 0;
+
+        // Putting the date of tech news, formatted when the news was loaded, to textView.
+        // The texts were measured by the loader, binding only attaches them
+        mRowText.setText(holder.dateView, RowTextPrecomputer.FIELD_DATE, mNews.getDisplayDate(position));
+
+        // Putting section, title and author of tech news to textViews
+        mRowText.setText(holder.sectionView, RowTextPrecomputer.FIELD_SECTION, mNews.getSection(position));
+        mRowText.setText(holder.titleView, RowTextPrecomputer.FIELD_TITLE, mNews.getTitle(position));
+        mRowText.setText(holder.authorView, RowTextPrecomputer.FIELD_AUTHOR, mNews.getAuthor(position));
+
+        // Replaces the request of the news the row showed before
+        mThumbnailLoader.load(mNews.getThumbnailUrl(position), holder.thumbnailView);
+
+        if (mFrameMonitor != null) {
+            mFrameMonitor.recordBind(position, System.nanoTime() - bindStart);
+        }
+    }
+
+    /**
+     * Stops loading the thumbnail of a row that scrolled away
+     */
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        mThumbnailLoader.cancel(holder.thumbnailView);
+    }
+
+    /**
+     * Holds the views of a row, so they are only looked up once per row
+     */
+    class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+        final TextView dateView;
+        final TextView sectionView;
+        final TextView titleView;
+        final TextView authorView;
+        final ImageView thumbnailView;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            dateView = itemView.findViewById(R.id.date);
+            sectionView = itemView.findViewById(R.id.section);
+            titleView = itemView.findViewById(R.id.title);
+            authorView = itemView.findViewById(R.id.author);
+            thumbnailView = itemView.findViewById(R.id.thumbnail);
+            itemView.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View view) {
+            int position = getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                mListener.onItemClick(mNews.get(position));
+            }
+        }
+    }
+
+    /**
+     * Compares news by article id and by the shown fields
+     */
+    private static class NewsDiffCallback extends DiffUtil.Callback {
+        private final CompactNewsList mOldList;
+        private final CompactNewsList mNewList;
+
+        NewsDiffCallback(CompactNewsList oldList, CompactNewsList newList) {
+            mOldList = oldList;
+            mNewList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return TextUtils.equals(mOldList.getId(oldItemPosition), mNewList.getId(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return TextUtils.equals(mOldList.getTitle(oldItemPosition), mNewList.getTitle(newItemPosition))
+                    && TextUtils.equals(mOldList.getSection(oldItemPosition), mNewList.getSection(newItemPosition))
+                    && TextUtils.equals(mOldList.getAuthor(oldItemPosition), mNewList.getAuthor(newItemPosition))
+                    && mOldList.getPublishedAt(oldItemPosition) == mNewList.getPublishedAt(newItemPosition)
+                    && TextUtils.equals(mOldList.getUrl(oldItemPosition), mNewList.getUrl(newItemPosition))
+                    && TextUtils.equals(mOldList.getThumbnailUrl(oldItemPosition),
+                    mNewList.getThumbnailUrl(newItemPosition));
+        }
+    }
+}
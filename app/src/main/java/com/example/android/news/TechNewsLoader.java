@@ -2,6 +2,8 @@ package com.example.android.news;
 
 import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.Nullable;
 
 import java.util.List;
@@ -9,14 +11,54 @@ import java.util.List;
 public class TechNewsLoader extends AsyncTaskLoader<List<TechNews>> {
 
     /**
-     * Query URL
+     * Feeds to load, with the size and order of the window read from the store
      */
-    private String mUrl;
+    private NewsQuery mQuery;
+
+    /**
+     * True to answer the first load from the store if it can, without a request.
+     * Later loads, like when the activity is started again, refresh from the network.
+     */
+    private volatile boolean mLocalFirst;
+
+    /**
+     * Cancels the request of the running load
+     */
+    private volatile CancellationToken mToken;
+
+    /**
+     * Id of the latest load in {@link LoadMetrics}
+     */
+    private volatile long mLoadId = LoadMetrics.NO_LOAD;
+
+    /**
+     * Delivers partial results on the main thread, ahead of the final result
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
     //Constructor
-    public TechNewsLoader(Context context, String url) {
+    public TechNewsLoader(Context context, NewsQuery query) {
+        this(context, query, false);
+    }
+
+    /**
+     * @param localFirst true to only refresh from the network if the store can't answer the
+     *                   query, for instance after the order was changed in the settings
+     */
+    public TechNewsLoader(Context context, NewsQuery query, boolean localFirst) {
         super(context);
-        mUrl = url;
+        mQuery = query;
+        mLocalFirst = localFirst;
+    }
+
+    /**
+     * Getters
+     */
+    public NewsQuery getQuery() {
+        return mQuery;
+    }
+    public long getLoadId() {
+        return mLoadId;
     }
 
     @Override
@@ -28,10 +70,65 @@ public class TechNewsLoader extends AsyncTaskLoader<List<TechNews>> {
     @Nullable
     @Override
     public List<TechNews> loadInBackground() {
-        if (mUrl == null) {
+        List<TechNews> techNews = load();
+        // Measure the texts of the rows here, not while they are bound
+        RowTextPrecomputer.getInstance().precompute(techNews);
+        return techNews;
+    }
+
+    private List<TechNews> load() {
+        if (mQuery == null || mQuery.getUrls().isEmpty()) {
             return null;
         }
-        //Pull news data and return it
-        return QueryUtils.fetchNewsData(mUrl);
+        if (mLocalFirst) {
+            mLocalFirst = false;
+            List<TechNews> window = NewsSync.queryLocal(getContext(), mQuery);
+            if (window != null) {
+                return window;
+            }
+        }
+        //Record the stages of the requests made for this load, which carry its id on the token
+        LoadMetrics metrics = LoadMetrics.getInstance();
+        long load = metrics.begin(System.currentTimeMillis());
+        mLoadId = load;
+        final CancellationToken token = new CancellationToken();
+        token.setLoadId(load);
+        mToken = token;
+
+        long start = System.nanoTime();
+        try {
+            return refresh(token);
+        } finally {
+            metrics.recordStage(load, LoadMetrics.STAGE_TOTAL, System.nanoTime() - start);
+        }
+    }
+
+    private List<TechNews> refresh(final CancellationToken token) {
+        //Refresh the store; without network the stored news are still shown.
+        //With several feeds, the news that already arrived are shown before the slowest one
+        return NewsSync.refresh(getContext(), mQuery, RequestGovernor.PRIORITY_USER, token,
+                new ParallelNewsFetcher.Listener() {
+                    @Override
+                    public void onPartialResult(final List<TechNews> merged, int done, int total) {
+                        RowTextPrecomputer.getInstance().precompute(merged);
+                        mMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (!token.isCanceled() && isStarted() && !isAbandoned()) {
+                                    deliverResult(merged);
+                                }
+                            }
+                        });
+                    }
+                });
+    }
+
+    // Called when the load is superseded, for instance by restartLoader
+    @Override
+    public void cancelLoadInBackground() {
+        CancellationToken token = mToken;
+        if (token != null) {
+            token.cancel();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,423 @@
+package com.example.android.news;
+
+import android.annotation.TargetApi;
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the thumbnails of the list into ImageViews. Decoded bitmaps are kept in a memory LRU
+ * bounded in bytes, the encoded images in a {@link DiskLruCache}. Images are decoded
+ * downsampled to the size of the thumbnail view, into bitmaps evicted from the memory cache
+ * when possible, so scrolling through hundreds of images neither grows the heap nor keeps
+ * the garbage collector busy.
+ * <p>
+ * Requests run on a small pool that takes the newest request first, since those are for the
+ * rows on screen. Binding a view to another image or recycling it cancels its request, also
+ * while it is downloading. Must be called on the main thread.
+ */
+public class ThumbnailLoader implements ComponentCallbacks2 {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = ThumbnailLoader.class.getSimpleName();
+
+    private static final int THREAD_COUNT = 3;
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 10000;
+    private static final long DISK_CACHE_BYTES = 20 * 1024 * 1024;
+
+    /**
+     * Thumbnails have no transparency, so two bytes per pixel are enough
+     */
+    private static final Bitmap.Config CONFIG = Bitmap.Config.RGB_565;
+    private static final int BYTES_PER_PIXEL = 2;
+
+    private static ThumbnailLoader sInstance;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final LruCache<String, Bitmap> mMemoryCache;
+    private final DiskLruCache mDiskCache;
+    private final NewsHttpClient mHttpClient = new NewsHttpClient(null, CONNECT_TIMEOUT, READ_TIMEOUT);
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Number of views showing each bitmap
+     */
+    private final Map<Bitmap, Integer> mShown = new HashMap<>();
+
+    /**
+     * Bitmaps evicted from the memory cache while a view still showed them. They are only
+     * reused once no view shows them anymore.
+     */
+    private final Set<Bitmap> mEvictedShown = new HashSet<>();
+
+    /**
+     * Evicted bitmaps no view shows, decoded into again
+     */
+    private final BitmapPool mPool;
+
+    /**
+     * Returns the loader shared by the whole app.
+     */
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ThumbnailLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ThumbnailLoader(Context context) {
+        mWidth = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_width);
+        mHeight = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_height);
+
+        // An eighth of the app's memory for decoded thumbnails, a thirty-second for reuse
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryBytes = activityManager.getMemoryClass() * 1024 * 1024;
+        mMemoryCache = new LruCache<String, Bitmap>(memoryBytes / 8) {
+            @Override
+            protected int sizeOf(String url, Bitmap bitmap) {
+                return byteCount(bitmap);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String url, Bitmap oldBitmap, Bitmap newBitmap) {
+                if (oldBitmap == newBitmap) {
+                    return;
+                }
+                if (mShown.containsKey(oldBitmap)) {
+                    mEvictedShown.add(oldBitmap);
+                } else {
+                    mPool.put(oldBitmap);
+                }
+            }
+        };
+        mPool = new BitmapPool(memoryBytes / 32);
+        mDiskCache = new DiskLruCache(new File(context.getCacheDir(), "thumbnails"), DISK_CACHE_BYTES);
+
+        mExecutor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 1, TimeUnit.SECONDS, new LifoQueue());
+        mExecutor.allowCoreThreadTimeOut(true);
+        context.registerComponentCallbacks(this);
+    }
+
+    /**
+     * Show the thumbnail at the given URL in the view, replacing what it showed before.
+     *
+     * @param url of the thumbnail, or null to clear the view
+     */
+    public void load(String url, ImageView view) {
+        cancelRequest(view);
+        Bitmap cached = url != null ? mMemoryCache.get(url) : null;
+        show(view, cached);
+        if (url == null || cached != null) {
+            return;
+        }
+        Request request = new Request(url, view);
+        view.setTag(R.id.thumbnail_request, request);
+        mExecutor.execute(request);
+    }
+
+    /**
+     * Cancel the request of the view and clear it, for instance because it was recycled.
+     * Its bitmap can then be reused.
+     */
+    public void cancel(ImageView view) {
+        cancelRequest(view);
+        show(view, null);
+    }
+
+    private void cancelRequest(ImageView view) {
+        Request request = (Request) view.getTag(R.id.thumbnail_request);
+        if (request != null) {
+            view.setTag(R.id.thumbnail_request, null);
+            request.mToken.cancel();
+            mExecutor.remove(request);
+        }
+    }
+
+    /**
+     * Set the bitmap of the view, keeping track of the bitmaps that are on screen.
+     */
+    private void show(ImageView view, Bitmap bitmap) {
+        Bitmap previous = (Bitmap) view.getTag(R.id.thumbnail_bitmap);
+        if (previous == bitmap) {
+            return;
+        }
+        view.setImageBitmap(bitmap);
+        view.setTag(R.id.thumbnail_bitmap, bitmap);
+        if (bitmap != null) {
+            Integer count = mShown.get(bitmap);
+            mShown.put(bitmap, count == null ? 1 : count + 1);
+        }
+        if (previous != null) {
+            int count = mShown.get(previous) - 1;
+            if (count > 0) {
+                mShown.put(previous, count);
+            } else {
+                mShown.remove(previous);
+                if (mEvictedShown.remove(previous)) {
+                    mPool.put(previous);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the memory used by the bitmap, which may be more than its pixels need if it
+     * was decoded into a reused bitmap.
+     */
+    private static int byteCount(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    /**
+     * Returns the largest power of two to divide the image size by, so that the decoded
+     * image still covers the requested size.
+     */
+    static int calculateInSampleSize(int width, int height, int requestedWidth, int requestedHeight) {
+        int sampleSize = 1;
+        if (requestedWidth <= 0 || requestedHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= requestedWidth && height / (sampleSize * 2) >= requestedHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Decode the image downsampled to the thumbnail size, reusing a pooled bitmap if one fits.
+     */
+    private Bitmap decode(byte[] bytes) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not an image");
+        }
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, mWidth, mHeight);
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = CONFIG;
+        options.inMutable = true;
+        options.inBitmap = mPool.take(options);
+
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap didn't fit after all
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("Cannot decode image");
+        }
+        return bitmap;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            mMemoryCache.evictAll();
+            mPool.clear();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            mMemoryCache.trimToSize(mMemoryCache.maxSize() / 2);
+            mPool.clear();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * Loads one thumbnail for one view
+     */
+    private class Request implements Runnable {
+        final String mUrl;
+        final WeakReference<ImageView> mView;
+        final CancellationToken mToken = new CancellationToken();
+
+        Request(String url, ImageView view) {
+            mUrl = url;
+            mView = new WeakReference<>(view);
+        }
+
+        @Override
+        public void run() {
+            if (mToken.isCanceled()) {
+                return;
+            }
+            try {
+                byte[] bytes = mDiskCache.get(mUrl);
+                if (bytes == null) {
+                    bytes = download();
+                }
+                // A finished download stays on disk even if no view waits for it anymore
+                if (mToken.isCanceled()) {
+                    return;
+                }
+                final Bitmap bitmap = decode(bytes);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(bitmap);
+                    }
+                });
+            } catch (IOException e) {
+                if (!mToken.isCanceled()) {
+                    Log.w(LOG_TAG, "Problem loading thumbnail " + mUrl, e);
+                }
+            }
+        }
+
+        private byte[] download() throws IOException {
+            InputStream in = mHttpClient.openStream(new URL(mUrl), mToken);
+            byte[] bytes;
+            try {
+                bytes = DiskLruCache.readFully(in);
+            } finally {
+                in.close();
+            }
+            try {
+                mDiskCache.put(mUrl, bytes);
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Problem caching thumbnail " + mUrl, e);
+            }
+            return bytes;
+        }
+
+        /**
+         * Runs on the main thread
+         */
+        private void deliver(Bitmap bitmap) {
+            Bitmap cached = mMemoryCache.get(mUrl);
+            if (cached == null) {
+                mMemoryCache.put(mUrl, bitmap);
+            } else {
+                // Another view loaded the same image meanwhile
+                mPool.put(bitmap);
+                bitmap = cached;
+            }
+            ImageView view = mView.get();
+            if (view != null && view.getTag(R.id.thumbnail_request) == this) {
+                view.setTag(R.id.thumbnail_request, null);
+                show(view, bitmap);
+            }
+        }
+    }
+
+    /**
+     * Bounded set of bitmaps to decode into, used from the main and the loading threads
+     */
+    private static class BitmapPool {
+        private final int mMaxBytes;
+        private final List<Bitmap> mBitmaps = new ArrayList<>();
+        private int mBytes;
+
+        BitmapPool(int maxBytes) {
+            mMaxBytes = maxBytes;
+        }
+
+        synchronized void put(Bitmap bitmap) {
+            if (!bitmap.isMutable() || bitmap.getConfig() != CONFIG) {
+                return;
+            }
+            int size = byteCount(bitmap);
+            if (size > mMaxBytes) {
+                return;
+            }
+            while (mBytes + size > mMaxBytes) {
+                // Drop the oldest
+                Bitmap dropped = mBitmaps.remove(0);
+                mBytes -= byteCount(dropped);
+            }
+            mBitmaps.add(bitmap);
+            mBytes += size;
+        }
+
+        /**
+         * Remove and return a bitmap the image described by options can be decoded into,
+         * or null if there is none.
+         */
+        synchronized Bitmap take(BitmapFactory.Options options) {
+            Iterator<Bitmap> iterator = mBitmaps.iterator();
+            while (iterator.hasNext()) {
+                Bitmap bitmap = iterator.next();
+                if (canDecodeInto(bitmap, options)) {
+                    iterator.remove();
+                    mBytes -= byteCount(bitmap);
+                    return bitmap;
+                }
+            }
+            return null;
+        }
+
+        synchronized void clear() {
+            mBitmaps.clear();
+            mBytes = 0;
+        }
+
+        private static boolean canDecodeInto(Bitmap bitmap, BitmapFactory.Options options) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                return canDecodeIntoKitKat(bitmap, options);
+            }
+            // Before KitKat only bitmaps of exactly the same size could be reused
+            return options.inSampleSize == 1
+                    && bitmap.getWidth() == options.outWidth && bitmap.getHeight() == options.outHeight;
+        }
+
+        @TargetApi(Build.VERSION_CODES.KITKAT)
+        private static boolean canDecodeIntoKitKat(Bitmap bitmap, BitmapFactory.Options options) {
+            int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+            int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+            return width * height * BYTES_PER_PIXEL <= bitmap.getAllocationByteCount();
+        }
+    }
+
+    /**
+     * Queue handing out the newest task first
+     */
+    private static class LifoQueue extends LinkedBlockingDeque<Runnable> {
+        @Override
+        public boolean offer(Runnable runnable) {
+            return offerFirst(runnable);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.android.news;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link ArticleStore} returns the bodies it compressed.
+ */
+public class ArticleStoreTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void body_isStoredCompressed() throws IOException {
+        ArticleStore store = new ArticleStore(mTemporaryFolder.newFolder("articles"), 1024 * 1024);
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            body.append("<p>Paragraph ").append(i).append(" of the article, with the usual markup.</p>");
+        }
+        String id = "technology/2018/jul/18/google-fined-eu-android-antitrust";
+
+        assertNull(store.get(id));
+        store.put(id, body.toString());
+
+        assertTrue(store.contains(id));
+        assertEquals(body.toString(), store.get(id));
+        assertTrue(store.size() < body.length() / 3);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link CompactNewsList} keeps the news unchanged, keeps a single instance
+ * of every section, author and display date, and retains less heap than an ArrayList of
+ * {@link TechNews}.
+ */
+public class CompactNewsListTest {
+
+    private static final int NEWS_COUNT = 20000;
+    private static final String[] SECTIONS = {"Technology", "Business", "Science", "Media"};
+    private static final String[] AUTHORS = {"Alex Hern", "Samuel Gibbs", "Rob Davies", "Author: unknown"};
+
+    /**
+     * Every news gets its own String instances, as they do when they are parsed from JSON.
+     */
+    private static List<TechNews> createNews(int count) {
+        List<TechNews> news = new ArrayList<>(count);
+        long start = NewsDates.parseIso8601("2018-07-18T15:26:43Z");
+        for (int i = 0; i < count; i++) {
+            long publishedAt = start - i * 20 * 60 * 1000L;
+            news.add(new TechNews(
+                    "technology/2018/jul/18/article-" + i,
+                    new String(SECTIONS[i % SECTIONS.length]),
+                    "Headline number " + i + " about the technology industry and its regulation",
+                    publishedAt,
+                    new String(NewsDates.formatForDisplay(publishedAt)),
+                    new String(AUTHORS[i % AUTHORS.length]),
+                    "https://www.theguardian.com/technology/2018/jul/18/article-" + i));
+        }
+        return news;
+    }
+
+    @Test
+    public void fieldsMatchSource() {
+        List<TechNews> news = createNews(100);
+        CompactNewsList compact = CompactNewsList.of(news);
+
+        assertEquals(news.size(), compact.size());
+        for (int i = 0; i < news.size(); i++) {
+            assertEquals(news.get(i).getId(), compact.getId(i));
+            assertEquals(news.get(i).getSection(), compact.getSection(i));
+            assertEquals(news.get(i).getTitle(), compact.getTitle(i));
+            assertEquals(news.get(i).getPublishedAt(), compact.getPublishedAt(i));
+            assertEquals(news.get(i).getDisplayDate(), compact.getDisplayDate(i));
+            assertEquals(news.get(i).getAuthor(), compact.getAuthor(i));
+            assertEquals(news.get(i).getUrl(), compact.getUrl(i));
+        }
+    }
+
+    @Test
+    public void nullFieldsAreKept() {
+        List<TechNews> news = new ArrayList<>();
+        news.add(new TechNews("id", null, "title", 0, null, null, "url"));
+        CompactNewsList compact = CompactNewsList.of(news);
+
+        assertNull(compact.getSection(0));
+        assertNull(compact.getAuthor(0));
+        assertNull(compact.getDisplayDate(0));
+    }
+
+    @Test
+    public void copy_isIndependentOfTheList() {
+        CompactNewsList list = CompactNewsList.of(createNews(3));
+        CompactNewsList copy = list.copy();
+        list.addAll(createNews(2));
+
+        assertEquals(3, copy.size());
+        assertEquals(list.getTitle(2), copy.getTitle(2));
+        assertEquals(list.getAuthor(1), copy.getAuthor(1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void positionOutOfRange_throws() {
+        CompactNewsList.of(createNews(3)).getTitle(3);
+    }
+
+    @Test
+    public void repeatedValues_shareOneInstance() {
+        // The source holds its own String instance in every news, the compact list one per value
+        List<TechNews> news = createNews(NEWS_COUNT);
+        CompactNewsList compact = CompactNewsList.of(news);
+
+        assertNotSame(news.get(0).getSection(), news.get(SECTIONS.length).getSection());
+        for (int i = SECTIONS.length; i < NEWS_COUNT; i++) {
+            assertSame(compact.getSection(i % SECTIONS.length), compact.getSection(i));
+        }
+        for (int i = AUTHORS.length; i < NEWS_COUNT; i++) {
+            assertSame(compact.getAuthor(i % AUTHORS.length), compact.getAuthor(i));
+        }
+        // News published on the same day show the same date
+        for (int i = 1; i < NEWS_COUNT; i++) {
+            if (compact.getDisplayDate(i).equals(compact.getDisplayDate(i - 1))) {
+                assertSame(compact.getDisplayDate(i - 1), compact.getDisplayDate(i));
+            }
+        }
+    }
+
+    @Test
+    public void retainsLessHeapThanArrayList() {
+        // Retained heap of each container alone, the smallest of a few rounds so allocations
+        // of other threads during one measurement don't count
+        long arrayListSize = Long.MAX_VALUE;
+        long compactSize = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long before = usedHeap();
+            List<TechNews> arrayList = createNews(NEWS_COUNT);
+            arrayListSize = Math.min(arrayListSize, usedHeap() - before);
+            assertEquals(NEWS_COUNT, arrayList.size());
+            arrayList = null;
+
+            before = usedHeap();
+            CompactNewsList compact = CompactNewsList.of(createNews(NEWS_COUNT));
+            compactSize = Math.min(compactSize, usedHeap() - before);
+            assertEquals(NEWS_COUNT, compact.size());
+        }
+
+        assertTrue("CompactNewsList " + compactSize / 1024 + " KB, ArrayList<TechNews> "
+                        + arrayListSize / 1024 + " KB for " + NEWS_COUNT + " news",
+                compactSize < arrayListSize * 0.9);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // Collect until the used heap stops shrinking
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                break;
+            }
+            used = current;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.android.news;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the storage and the LRU trimming of {@link DiskLruCache}.
+ */
+public class DiskLruCacheTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private static final String A = "https://media.guim.co.uk/a.jpg";
+    private static final String B = "https://media.guim.co.uk/b.jpg";
+    private static final String C = "https://media.guim.co.uk/c.jpg";
+
+    @Test
+    public void putAndGet_returnTheStoredBytes() throws IOException {
+        DiskLruCache cache = new DiskLruCache(mTemporaryFolder.newFolder("thumbnails"), 1000);
+
+        assertNull(cache.get(A));
+        assertFalse(cache.contains(A));
+        cache.put(A, new byte[]{1, 2, 3});
+        assertTrue(cache.contains(A));
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get(A));
+        cache.put(A, new byte[]{4});
+        assertArrayEquals(new byte[]{4}, cache.get(A));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void contains_answersFromTheLoadedIndex() throws IOException {
+        File directory = mTemporaryFolder.newFolder("articles");
+        new DiskLruCache(directory, 1000).put(A, new byte[]{1});
+
+        // Another process start, the entries on disk are only known once scanned
+        DiskLruCache cache = new DiskLruCache(directory, 1000);
+        assertFalse(cache.contains(A));
+        cache.loadIndex();
+        assertTrue(cache.contains(A));
+        assertFalse(cache.contains(B));
+
+        new File(directory, NewsResponseCache.keyFor(A) + ".entry").delete();
+        assertNull(cache.get(A));
+        assertFalse(cache.contains(A));
+    }
+
+    @Test
+    public void overSize_evictsLeastRecentlyUsed() throws IOException {
+        File directory = mTemporaryFolder.newFolder("thumbnails");
+        DiskLruCache cache = new DiskLruCache(directory, 1100);
+        cache.put(A, new byte[400]);
+        cache.put(B, new byte[400]);
+        // File times have a coarse resolution, so age them explicitly; A was read after B
+        long now = System.currentTimeMillis();
+        new File(directory, NewsResponseCache.keyFor(A) + ".entry").setLastModified(now - 60 * 60 * 1000);
+        new File(directory, NewsResponseCache.keyFor(B) + ".entry").setLastModified(now - 2 * 60 * 60 * 1000);
+
+        cache.put(C, new byte[400]);
+
+        assertNull(cache.get(B));
+        assertNotNull(cache.get(A));
+        assertNotNull(cache.get(C));
+        assertEquals(800, cache.size());
+    }
+}
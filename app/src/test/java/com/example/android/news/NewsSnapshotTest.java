@@ -0,0 +1,106 @@
+package com.example.android.news;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trip and corruption handling of {@link NewsSnapshot}.
+ */
+public class NewsSnapshotTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private static List<TechNews> sampleNews() {
+        return Arrays.asList(
+                new TechNews("technology/2018/jul/18/google-fined", "Technology",
+                        "Google fined record €4.3bn by EU over Android antitrust breaches",
+                        1531927603000L, "Wed, Jul 18, '18", "Alex Hern",
+                        "https://www.theguardian.com/technology/2018/jul/18/google-fined"),
+                new TechNews("business/2018/jul/16/uk-tech", "Business", "",
+                        1531782060000L, "Mon, Jul 16, '18", "Author: unknown", null));
+    }
+
+    @Test
+    public void roundTrip_isExact() throws IOException {
+        File file = mTemporaryFolder.newFile("feed.snapshot");
+        List<TechNews> news = sampleNews();
+
+        NewsSnapshot.write(file, news);
+        List<TechNews> read = NewsSnapshot.read(file);
+
+        assertNotNull(read);
+        assertEquals(news.size(), read.size());
+        for (int i = 0; i < news.size(); i++) {
+            assertEquals(news.get(i).getId(), read.get(i).getId());
+            assertEquals(news.get(i).getSection(), read.get(i).getSection());
+            assertEquals(news.get(i).getTitle(), read.get(i).getTitle());
+            assertEquals(news.get(i).getPublishedAt(), read.get(i).getPublishedAt());
+            assertEquals(news.get(i).getDisplayDate(), read.get(i).getDisplayDate());
+            assertEquals(news.get(i).getAuthor(), read.get(i).getAuthor());
+            assertEquals(news.get(i).getUrl(), read.get(i).getUrl());
+        }
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void roundTrip_emptyAndLongStrings() throws IOException {
+        File file = mTemporaryFolder.newFile("feed.snapshot");
+        char[] longTitle = new char[10000];
+        Arrays.fill(longTitle, 'x');
+        List<TechNews> news = new ArrayList<>();
+        news.add(new TechNews("id", "s", new String(longTitle), 0, "d", "a", "u"));
+
+        NewsSnapshot.write(file, news);
+        assertEquals(new String(longTitle), NewsSnapshot.read(file).get(0).getTitle());
+
+        NewsSnapshot.write(file, new ArrayList<TechNews>());
+        assertTrue(NewsSnapshot.read(file).isEmpty());
+    }
+
+    @Test
+    public void missingFile_returnsNull() {
+        assertNull(NewsSnapshot.read(new File(mTemporaryFolder.getRoot(), "missing")));
+    }
+
+    @Test
+    public void truncatedFile_returnsNull() throws IOException {
+        File file = mTemporaryFolder.newFile("feed.snapshot");
+        NewsSnapshot.write(file, sampleNews());
+        long length = file.length();
+
+        for (long size = length - 1; size >= 0; size -= 7) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            raf.setLength(size);
+            raf.close();
+            assertNull("size " + size, NewsSnapshot.read(file));
+        }
+    }
+
+    @Test
+    public void corruptFile_returnsNull() throws IOException {
+        File file = mTemporaryFolder.newFile("feed.snapshot");
+        NewsSnapshot.write(file, sampleNews());
+
+        for (long position = 0; position < file.length(); position += 5) {
+            NewsSnapshot.write(file, sampleNews());
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0x40);
+            raf.close();
+            assertNull("position " + position, NewsSnapshot.read(file));
+        }
+    }
+}
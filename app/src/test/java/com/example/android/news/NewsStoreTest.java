@@ -0,0 +1,25 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the full-text queries {@link NewsStore} builds from what the user typed. The search
+ * itself runs on the device's SQLite and is checked by NewsStoreSearchTest.
+ */
+public class NewsStoreTest {
+
+    @Test
+    public void matchExpression_hasAPrefixTermPerWord() {
+        assertEquals("tech* reg*", NewsStore.matchExpression("Tech  REG"));
+        assertEquals("don’t* 5g*", NewsStore.matchExpression("don’t, 5G!"));
+    }
+
+    @Test
+    public void matchExpression_dropsOperatorsAndQuotes() {
+        assertEquals("a* or* b*", NewsStore.matchExpression("\"a\" OR -b*"));
+        assertNull(NewsStore.matchExpression("  "));
+        assertNull(NewsStore.matchExpression("* ( )"));
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the downsampling factor of {@link ThumbnailLoader}.
+ */
+public class ThumbnailLoaderTest {
+
+    @Test
+    public void sampleSize_keepsImageCoveringTheView() {
+        // Guardian thumbnails are 500x300
+        assertEquals(1, ThumbnailLoader.calculateInSampleSize(500, 300, 288, 192));
+        assertEquals(2, ThumbnailLoader.calculateInSampleSize(500, 300, 192, 128));
+        assertEquals(4, ThumbnailLoader.calculateInSampleSize(500, 300, 96, 64));
+        assertEquals(1, ThumbnailLoader.calculateInSampleSize(50, 30, 96, 64));
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.android.news;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the stages between a received guardianapis response and the list shown on screen,
+ * each on its own: decoding the body, parsing it into {@link TechNews}, parsing and formatting
+ * the publication dates, and building the list the adapter binds from.
+ * <p>
+ * The responses of 10, 50 and 200 results are built from the recorded response in
+ * guardian_search.json by repeating its results with distinct ids and dates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FeedPipelineBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Param({"10", "50", "200"})
+    public int resultCount;
+
+    private byte[] mBody;
+    private String[] mDates;
+    private long[] mPublishedAt;
+    private List<TechNews> mNews;
+
+    @Setup
+    public void setUp() throws IOException, JSONException {
+        mBody = createResponse(resultCount).getBytes(UTF_8);
+        mNews = NewsParser.parse(new ByteArrayInputStream(mBody)).getNews();
+        if (mNews == null || mNews.size() != resultCount) {
+            throw new IllegalStateException("Fixture with " + resultCount + " results didn't parse");
+        }
+
+        JSONArray results = new JSONObject(new String(mBody, UTF_8))
+                .getJSONObject("response").getJSONArray("results");
+        mDates = new String[results.length()];
+        mPublishedAt = new long[results.length()];
+        for (int i = 0; i < results.length(); i++) {
+            mDates[i] = results.getJSONObject(i).getString("webPublicationDate");
+            mPublishedAt[i] = NewsDates.parseIso8601(mDates[i]);
+        }
+    }
+
+    /**
+     * Decoding the UTF-8 body, the least any parser has to do with the stream
+     */
+    @Benchmark
+    public int readFromStream() throws IOException {
+        Reader reader = new InputStreamReader(new ByteArrayInputStream(mBody), UTF_8);
+        char[] buffer = new char[8192];
+        int total = 0;
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Streaming the body into {@link TechNews}, including date parsing and formatting
+     */
+    @Benchmark
+    public List<TechNews> extractFeatureFromStream() throws IOException {
+        return NewsParser.parse(new ByteArrayInputStream(mBody)).getNews();
+    }
+
+    @Benchmark
+    public void parseDates(Blackhole blackhole) {
+        for (String date : mDates) {
+            blackhole.consume(NewsDates.parseIso8601(date));
+        }
+    }
+
+    @Benchmark
+    public void formatDates(Blackhole blackhole) {
+        for (long publishedAt : mPublishedAt) {
+            blackhole.consume(NewsDates.formatForDisplay(publishedAt));
+        }
+    }
+
+    /**
+     * Building the list the adapter binds its rows from
+     */
+    @Benchmark
+    public CompactNewsList bindList() {
+        return CompactNewsList.of(mNews);
+    }
+
+    /**
+     * Returns the recorded response with its results repeated up to the given count.
+     */
+    static String createResponse(int resultCount) throws IOException, JSONException {
+        JSONObject recorded = new JSONObject(readResource("guardian_search.json"));
+        JSONObject response = recorded.getJSONObject("response");
+        JSONArray recordedResults = response.getJSONArray("results");
+
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < resultCount; i++) {
+            JSONObject result = new JSONObject(recordedResults.getJSONObject(i % recordedResults.length()).toString());
+            int copy = i / recordedResults.length();
+            if (copy > 0) {
+                // Older copies of the recorded articles, a few hours apart like a real feed
+                long publishedAt = NewsDates.parseIso8601(result.getString("webPublicationDate")) - copy * DAY / 4;
+                result.put("id", result.getString("id") + "-" + copy);
+                result.put("webUrl", result.getString("webUrl") + "-" + copy);
+                result.put("webPublicationDate", iso8601(publishedAt));
+            }
+            results.put(result);
+        }
+        response.put("results", results);
+        response.put("total", resultCount);
+        response.put("pageSize", resultCount);
+        return recorded.toString();
+    }
+
+    private static String iso8601(long time) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(time));
+    }
+
+    private static String readResource(String name) throws IOException {
+        InputStream in = FeedPipelineBenchmark.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+}
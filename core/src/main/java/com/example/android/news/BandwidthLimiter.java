@@ -0,0 +1,93 @@
+package com.example.android.news;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the rate at which the streams it wraps are read, together. Every read books its bytes
+ * on a shared schedule and waits until its turn, so a few parallel background downloads
+ * leave the rest of the bandwidth to what the user is waiting for.
+ */
+public class BandwidthLimiter {
+
+    private final long mNanosPerByte;
+
+    /**
+     * Time the bytes booked so far have been read at the allowed rate, guarded by this
+     */
+    private long mNextFreeNanos = System.nanoTime();
+
+    /**
+     * @param bytesPerSecond rate of all wrapped streams together
+     */
+    public BandwidthLimiter(long bytesPerSecond) {
+        mNanosPerByte = Math.max(1, TimeUnit.SECONDS.toNanos(1) / bytesPerSecond);
+    }
+
+    /**
+     * Returns the stream reading through this limiter.
+     *
+     * @param token aborts the waits, or null
+     */
+    public InputStream limit(InputStream in, CancellationToken token) {
+        return new LimitedInputStream(in, token);
+    }
+
+    /**
+     * Book the bytes that were read and wait until the rate allows them.
+     */
+    void acquire(long bytes, CancellationToken token) throws InterruptedIOException {
+        long now = System.nanoTime();
+        long waitNanos;
+        synchronized (this) {
+            // Wait for the bytes booked before. Time left idle isn't saved up for a later burst.
+            long start = Math.max(mNextFreeNanos, now);
+            mNextFreeNanos = start + bytes * mNanosPerByte;
+            waitNanos = start - now;
+        }
+        long waitMillis = TimeUnit.NANOSECONDS.toMillis(waitNanos);
+        if (waitMillis <= 0) {
+            return;
+        }
+        if (token != null) {
+            token.sleep(waitMillis);
+            return;
+        }
+        try {
+            Thread.sleep(waitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while limiting bandwidth");
+        }
+    }
+
+    private class LimitedInputStream extends FilterInputStream {
+        private final CancellationToken mToken;
+
+        LimitedInputStream(InputStream in, CancellationToken token) {
+            super(in);
+            mToken = token;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                acquire(1, mToken);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                acquire(read, mToken);
+            }
+            return read;
+        }
+    }
+}
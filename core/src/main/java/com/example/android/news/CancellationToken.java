@@ -0,0 +1,118 @@
+package com.example.android.news;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets one thread abort work running on another one. The work registers what has to happen
+ * on cancellation, for instance disconnecting its HttpURLConnection, and blocking I/O then
+ * fails instead of running until its timeout. Every layer the token is handed down to may
+ * register its own action, and removes it once its part of the work is done.
+ * <p>
+ * The token is handed down with the work, so it also carries the id of the
+ * {@link LoadMetrics} load the work is recorded against.
+ */
+public class CancellationToken {
+
+    private boolean mCanceled;
+
+    /**
+     * Actions to run on cancellation, guarded by this
+     */
+    private final List<Runnable> mOnCancel = new ArrayList<>();
+
+    private volatile long mLoadId = LoadMetrics.NO_LOAD;
+
+    /**
+     * Record the work against the load, set before the token is handed to the work.
+     */
+    public void setLoadId(long loadId) {
+        mLoadId = loadId;
+    }
+
+    /**
+     * Returns the load the work of the token is recorded against, or {@link LoadMetrics#NO_LOAD}
+     * if it has none or there is no token.
+     */
+    public static long loadIdOf(CancellationToken token) {
+        return token != null ? token.mLoadId : LoadMetrics.NO_LOAD;
+    }
+
+    /**
+     * Cancel the work. The registered actions run on the calling thread, latest first.
+     */
+    public void cancel() {
+        List<Runnable> onCancel;
+        synchronized (this) {
+            if (mCanceled) {
+                return;
+            }
+            mCanceled = true;
+            onCancel = new ArrayList<>(mOnCancel);
+            mOnCancel.clear();
+            // Wake up the threads waiting in sleep()
+            notifyAll();
+        }
+        for (int i = onCancel.size() - 1; i >= 0; i--) {
+            onCancel.get(i).run();
+        }
+    }
+
+    public synchronized boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * Add an action to run on cancellation, next to those added before. It runs right away
+     * if the token is already canceled.
+     */
+    public void addOnCancelListener(Runnable onCancel) {
+        synchronized (this) {
+            if (!mCanceled) {
+                mOnCancel.add(onCancel);
+                return;
+            }
+        }
+        onCancel.run();
+    }
+
+    /**
+     * Remove an action added before, once the work it aborts is done.
+     */
+    public synchronized void removeOnCancelListener(Runnable onCancel) {
+        mOnCancel.remove(onCancel);
+    }
+
+    /**
+     * @throws InterruptedIOException if the token was canceled
+     */
+    public void throwIfCanceled() throws InterruptedIOException {
+        if (isCanceled()) {
+            throw new InterruptedIOException("Canceled");
+        }
+    }
+
+    /**
+     * Wait for the given time, returning early with an exception if the token gets canceled.
+     *
+     * @throws InterruptedIOException if the token was canceled or the thread interrupted
+     */
+    public synchronized void sleep(long millis) throws InterruptedIOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (!mCanceled) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted");
+            }
+        }
+        throw new InterruptedIOException("Canceled");
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.android.news;
+
+/**
+ * Stops requests to an upstream that keeps failing. After a number of failures in a row the
+ * circuit opens and requests fail right away, without waiting for timeouts. Once the open
+ * time has passed a single trial request is let through: its success closes the circuit,
+ * its failure opens it again.
+ */
+public class CircuitBreaker {
+
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+
+    private final SyncPolicy.Clock mClock;
+    private final int mFailureThreshold;
+    private final long mOpenMillis;
+
+    private int mState = CLOSED;
+    private int mFailures;
+    /**
+     * Time the circuit opened, or the trial request started when half open
+     */
+    private long mSince;
+
+    /**
+     * @param clock            source of the current time
+     * @param failureThreshold failures in a row that open the circuit
+     * @param openMillis       time the circuit stays open before a trial request
+     */
+    public CircuitBreaker(SyncPolicy.Clock clock, int failureThreshold, long openMillis) {
+        mClock = clock;
+        mFailureThreshold = failureThreshold;
+        mOpenMillis = openMillis;
+    }
+
+    /**
+     * Returns true if a request may be made now.
+     */
+    public synchronized boolean allowRequest() {
+        long now = mClock.currentTimeMillis();
+        switch (mState) {
+            case CLOSED:
+                return true;
+            case OPEN:
+            case HALF_OPEN:
+                // When half open, a trial that never reported back, for instance because
+                // it was canceled, is replaced after the same time
+                if (now - mSince >= mOpenMillis) {
+                    mState = HALF_OPEN;
+                    mSince = now;
+                    return true;
+                }
+                return false;
+            default:
+                throw new IllegalStateException("Unknown state " + mState);
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        mState = CLOSED;
+        mFailures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        mFailures++;
+        if (mState == HALF_OPEN || mFailures >= mFailureThreshold) {
+            mState = OPEN;
+            mSince = mClock.currentTimeMillis();
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return mState != CLOSED;
+    }
+}
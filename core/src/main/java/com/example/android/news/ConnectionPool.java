@@ -0,0 +1,269 @@
+package com.example.android.news;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Counts the requests of {@link NewsHttpClient} over TLS that reused a kept-alive connection
+ * (a hit) and those that opened a new one (a miss). HttpURLConnection keeps the sockets itself
+ * and doesn't tell which one a request got, but it creates the socket of every new connection
+ * through the SSLSocketFactory of the request, on the requesting thread. The clients use the
+ * factory of {@link #socketFactory(SSLSocketFactory)}, which notes the sockets it creates, and
+ * a request that created none reused a connection. Requests without TLS aren't counted.
+ * <p>
+ * A connection goes back to the platform's pool when its body was read to the end and closed
+ * without disconnecting, and stays there for the keep-alive duration. The connections handed
+ * back are tracked to estimate whether one is idle, for {@link NewsHttpClient#prewarm}; the
+ * platform may have closed it already. {@link #applyToPlatform()} sizes that pool like this
+ * one.
+ * <p>
+ * May be shared by the clients of the same hosts.
+ */
+public class ConnectionPool {
+
+    /**
+     * True while a request of the thread is observed and once it created a socket, null
+     * while the thread's requests aren't observed
+     */
+    private final ThreadLocal<boolean[]> mSocketCreated = new ThreadLocal<>();
+
+    private final SyncPolicy.Clock mClock;
+    private final int mMaxIdle;
+    private final long mKeepAliveMillis;
+
+    /**
+     * Times the connections estimated idle were released, oldest first, by scheme, host and
+     * port; guarded by this
+     */
+    private final Map<String, ArrayDeque<Long>> mIdle = new HashMap<>();
+    private int mIdleCount;
+
+    private int mHits;
+    private int mMisses;
+
+    /**
+     * Counting factory of every factory the sockets are created with, guarded by this. The
+     * platform only reuses connections made through the same factory, so every client gets
+     * the same one.
+     */
+    private final Map<SSLSocketFactory, SSLSocketFactory> mSocketFactories = new HashMap<>();
+
+    /**
+     * @param maxIdle         idle connections kept over all hosts
+     * @param keepAliveMillis time an idle connection is kept
+     */
+    public ConnectionPool(SyncPolicy.Clock clock, int maxIdle, long keepAliveMillis) {
+        mClock = clock;
+        mMaxIdle = maxIdle;
+        mKeepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * Size the keep-alive pool of HttpURLConnection like this one. Only has an effect
+     * before the first connection of the process is made.
+     */
+    public void applyToPlatform() {
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(mMaxIdle));
+        System.setProperty("http.keepAliveDuration", String.valueOf(mKeepAliveMillis));
+    }
+
+    /**
+     * Returns the factory creating the sockets of the given one and noting them, for the
+     * requests this pool counts and the connections that go back to the pool. Always the same
+     * factory for the same one.
+     */
+    public synchronized SSLSocketFactory socketFactory(SSLSocketFactory delegate) {
+        SSLSocketFactory factory = mSocketFactories.get(delegate);
+        if (factory == null) {
+            factory = new CountingSocketFactory(delegate);
+            mSocketFactories.put(delegate, factory);
+        }
+        return factory;
+    }
+
+    /**
+     * Start observing the sockets the current thread creates, for a request it makes next.
+     */
+    void requestStarted() {
+        mSocketCreated.set(new boolean[1]);
+    }
+
+    /**
+     * Record the request to the URL's host the current thread made since
+     * {@link #requestStarted()} as a hit if it created no socket, or as a miss.
+     *
+     * @return true if it reused an idle connection
+     */
+    boolean requestConnected(URL url) {
+        boolean[] created = mSocketCreated.get();
+        mSocketCreated.remove();
+        return created != null && record(url, !created[0]);
+    }
+
+    private synchronized boolean record(URL url, boolean reused) {
+        evictExpired(mClock.currentTimeMillis());
+        String key = key(url);
+        ArrayDeque<Long> idle = mIdle.get(key);
+        if (reused) {
+            if (idle != null && !idle.isEmpty()) {
+                // The platform hands out the most recently used connection
+                idle.pollLast();
+                mIdleCount--;
+            }
+            mHits++;
+            return true;
+        }
+        if (idle != null) {
+            // The platform had none left to hand out
+            mIdleCount -= idle.size();
+            mIdle.remove(key);
+        }
+        mMisses++;
+        return false;
+    }
+
+    /**
+     * Record a connection to the URL's host that went back to the pool.
+     */
+    public synchronized void release(URL url) {
+        String key = key(url);
+        ArrayDeque<Long> idle = mIdle.get(key);
+        if (idle == null) {
+            idle = new ArrayDeque<>();
+            mIdle.put(key, idle);
+        }
+        idle.addLast(mClock.currentTimeMillis());
+        mIdleCount++;
+        if (mIdleCount > mMaxIdle) {
+            evictOldest();
+        }
+    }
+
+    /**
+     * Returns true if a connection to the URL's host is likely idle in the pool.
+     */
+    public synchronized boolean hasIdle(URL url) {
+        evictExpired(mClock.currentTimeMillis());
+        ArrayDeque<Long> idle = mIdle.get(key(url));
+        return idle != null && !idle.isEmpty();
+    }
+
+    /**
+     * Getters of the requests that reused a connection and those that opened one
+     */
+    public synchronized int getHits() {
+        return mHits;
+    }
+    public synchronized int getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * Returns the number of connections estimated idle over all hosts
+     */
+    public synchronized int getIdleCount() {
+        evictExpired(mClock.currentTimeMillis());
+        return mIdleCount;
+    }
+
+    private void evictExpired(long now) {
+        Iterator<ArrayDeque<Long>> hosts = mIdle.values().iterator();
+        while (hosts.hasNext()) {
+            ArrayDeque<Long> idle = hosts.next();
+            while (!idle.isEmpty() && now - idle.peekFirst() >= mKeepAliveMillis) {
+                idle.pollFirst();
+                mIdleCount--;
+            }
+            if (idle.isEmpty()) {
+                hosts.remove();
+            }
+        }
+    }
+
+    private void evictOldest() {
+        ArrayDeque<Long> oldest = null;
+        for (ArrayDeque<Long> idle : mIdle.values()) {
+            if (!idle.isEmpty() && (oldest == null || idle.peekFirst() < oldest.peekFirst())) {
+                oldest = idle;
+            }
+        }
+        if (oldest != null) {
+            oldest.pollFirst();
+            mIdleCount--;
+        }
+    }
+
+    private static String key(URL url) {
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        return url.getProtocol() + "://" + url.getHost() + ":" + port;
+    }
+
+    /**
+     * Notes every socket created on a thread whose request is observed
+     */
+    private class CountingSocketFactory extends SSLSocketFactory {
+        private final SSLSocketFactory mDelegate;
+
+        CountingSocketFactory(SSLSocketFactory delegate) {
+            mDelegate = delegate;
+        }
+
+        private <T extends Socket> T created(T socket) {
+            boolean[] created = mSocketCreated.get();
+            if (created != null) {
+                created[0] = true;
+            }
+            return socket;
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return mDelegate.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return mDelegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return created(mDelegate.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+            return created(mDelegate.createSocket(socket, host, port, autoClose));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return created(mDelegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return created(mDelegate.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return created(mDelegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+                throws IOException {
+            return created(mDelegate.createSocket(address, port, localAddress, localPort));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.android.news;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fetches only the news published since the newest one seen on an earlier refresh of the same
+ * feed, instead of the whole first page again. The feed is searched from the day of that news,
+ * newest first, and paged forward until a page reaches news that were already seen or the
+ * results run out. A feed without a known newest news is fetched as it is.
+ * <p>
+ * The newest publication time of every feed fetched is kept, so the caller can store it
+ * together with the news once they are saved.
+ */
+public class DeltaFetcher implements ParallelNewsFetcher.Fetcher {
+
+    /**
+     * Performs the request of one page of a feed
+     */
+    public interface PageFetcher {
+        /**
+         * @param feedUrl URL of the feed the page belongs to
+         * @param pageUrl URL of the page to request
+         * @return the news of the page, or null if the request failed
+         */
+        List<TechNews> fetch(String feedUrl, String pageUrl, CancellationToken token);
+    }
+
+    private final PageFetcher mPageFetcher;
+    private final Map<String, Long> mKnownNewest;
+    private final int mPageSize;
+    private final int mMaxPages;
+    private final Map<String, Long> mFetchedNewest = new ConcurrentHashMap<>();
+
+    /**
+     * @param knownNewest publication time of the newest news seen of every feed, by feed URL
+     * @param pageSize    results per page, as requested by the feed URLs
+     * @param maxPages    pages requested at most per feed. More new news than fit on them
+     *                    leave a gap, filled by paging through the older news.
+     */
+    public DeltaFetcher(PageFetcher pageFetcher, Map<String, Long> knownNewest, int pageSize, int maxPages) {
+        mPageFetcher = pageFetcher;
+        mKnownNewest = knownNewest;
+        mPageSize = pageSize;
+        mMaxPages = maxPages;
+    }
+
+    @Override
+    public List<TechNews> fetch(String url, CancellationToken token) {
+        Long known = mKnownNewest.get(url);
+        if (known == null || known == NewsDates.INVALID) {
+            List<TechNews> news = mPageFetcher.fetch(url, url, token);
+            if (news != null) {
+                recordNewest(url, NewsDates.INVALID, news);
+            }
+            return news;
+        }
+
+        List<TechNews> newer = new ArrayList<>();
+        for (int page = 1; page <= mMaxPages; page++) {
+            List<TechNews> news = mPageFetcher.fetch(url, deltaUrl(url, known, page), token);
+            if (news == null) {
+                // The news of the pages before can't be kept without leaving a gap
+                return null;
+            }
+            boolean reachedKnown = false;
+            for (TechNews item : news) {
+                if (item.getPublishedAt() > known) {
+                    newer.add(item);
+                } else {
+                    reachedKnown = true;
+                }
+            }
+            if (reachedKnown || news.size() < mPageSize) {
+                break;
+            }
+        }
+        recordNewest(url, known, newer);
+        return newer;
+    }
+
+    /**
+     * Returns the publication time of the newest news fetched of every feed, by feed URL.
+     * Feeds that failed are left out.
+     */
+    public Map<String, Long> getFetchedNewest() {
+        return Collections.unmodifiableMap(new HashMap<>(mFetchedNewest));
+    }
+
+    private void recordNewest(String url, long known, List<TechNews> news) {
+        long newest = known;
+        for (TechNews item : news) {
+            newest = Math.max(newest, item.getPublishedAt());
+        }
+        if (newest != NewsDates.INVALID) {
+            mFetchedNewest.put(url, newest);
+        }
+    }
+
+    /**
+     * Returns the URL of a page of the feed's news published on or after the day of the given
+     * time, newest first. The guardianapis filters by whole days, so the news of that day that
+     * were already seen come back at the end.
+     */
+    static String deltaUrl(String url, long since, int page) {
+        String deltaUrl = FeedUrls.withParameter(url, "from-date", NewsDates.formatDay(since));
+        deltaUrl = FeedUrls.withParameter(deltaUrl, "order-by", "newest");
+        return FeedUrls.withParameter(deltaUrl, "page", String.valueOf(page));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.android.news;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads and changes the query parameters of guardianapis URLs without android.net.Uri, so
+ * it runs on the JVM as well. Values are handled as they appear in the URL, still encoded.
+ */
+final class FeedUrls {
+
+    /**
+     * Create a private constructor because no one should ever create a {@link FeedUrls} object.
+     */
+    private FeedUrls() {
+    }
+
+    /**
+     * Returns the URL with the query parameter set to the value, replacing an earlier value.
+     */
+    static String withParameter(String url, String name, String value) {
+        int queryStart = url.indexOf('?');
+        if (queryStart < 0) {
+            return url + '?' + name + '=' + value;
+        }
+        StringBuilder result = new StringBuilder(url.length() + name.length() + value.length() + 2);
+        result.append(url, 0, queryStart + 1);
+        for (String parameter : url.substring(queryStart + 1).split("&")) {
+            if (parameter.isEmpty() || parameter.startsWith(name + "=") || parameter.equals(name)) {
+                continue;
+            }
+            result.append(parameter).append('&');
+        }
+        return result.append(name).append('=').append(value).toString();
+    }
+
+    /**
+     * Returns the part of the URL before its query.
+     */
+    static String withoutQuery(String url) {
+        int queryStart = url.indexOf('?');
+        return queryStart < 0 ? url : url.substring(0, queryStart);
+    }
+
+    /**
+     * Returns the query parameters of the URL in their order, the last value of repeated ones.
+     */
+    static Map<String, String> parameters(String url) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        int queryStart = url.indexOf('?');
+        if (queryStart < 0) {
+            return parameters;
+        }
+        for (String parameter : url.substring(queryStart + 1).split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int equals = parameter.indexOf('=');
+            if (equals < 0) {
+                parameters.put(parameter, "");
+            } else {
+                parameters.put(parameter.substring(0, equals), parameter.substring(equals + 1));
+            }
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.android.news;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Frame durations and row bind times of the scrolling news list. Frame durations go into a
+ * histogram of fixed millisecond buckets, frames longer than one display frame count the
+ * frames they dropped, and the slowest binds are kept with their list positions. Recording
+ * doesn't allocate, so it doesn't add jank of its own.
+ * <p>
+ * Not thread safe, frames and binds are recorded on the main thread.
+ */
+public class FrameStats {
+
+    /**
+     * Upper bounds of the histogram buckets in milliseconds, the last bucket has none
+     */
+    static final int[] BUCKET_MILLIS = {8, 16, 24, 33, 50, 100, 250};
+
+    /**
+     * Number of slowest binds kept
+     */
+    static final int SLOWEST_BIND_COUNT = 5;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final long mFrameIntervalNanos;
+
+    private final int[] mBuckets = new int[BUCKET_MILLIS.length + 1];
+    private int mFrames;
+    private int mJankyFrames;
+    private long mDroppedFrames;
+    private long mTotalFrameNanos;
+    private long mLongestFrameNanos;
+
+    private int mBinds;
+    private long mTotalBindNanos;
+    /**
+     * Slowest binds, slowest first, with the positions they bound
+     */
+    private final long[] mSlowestBindNanos = new long[SLOWEST_BIND_COUNT];
+    private final int[] mSlowestBindPositions = new int[SLOWEST_BIND_COUNT];
+
+    /**
+     * @param frameIntervalNanos duration of one display frame, like 16.7 ms at 60 Hz
+     */
+    public FrameStats(long frameIntervalNanos) {
+        mFrameIntervalNanos = frameIntervalNanos;
+        reset();
+    }
+
+    /**
+     * Record the time between two consecutive frames.
+     */
+    public void recordFrame(long durationNanos) {
+        if (durationNanos <= 0) {
+            return;
+        }
+        mFrames++;
+        mTotalFrameNanos += durationNanos;
+        mLongestFrameNanos = Math.max(mLongestFrameNanos, durationNanos);
+        mBuckets[bucketOf(durationNanos)]++;
+
+        // A frame that took 2.4 intervals showed one frame late and dropped one
+        long dropped = (durationNanos + mFrameIntervalNanos / 2) / mFrameIntervalNanos - 1;
+        if (dropped > 0) {
+            mJankyFrames++;
+            mDroppedFrames += dropped;
+        }
+    }
+
+    /**
+     * Record the time the adapter took to bind the row at the given position.
+     */
+    public void recordBind(int position, long durationNanos) {
+        mBinds++;
+        mTotalBindNanos += durationNanos;
+        int index = SLOWEST_BIND_COUNT;
+        while (index > 0 && durationNanos > mSlowestBindNanos[index - 1]) {
+            index--;
+        }
+        if (index == SLOWEST_BIND_COUNT) {
+            return;
+        }
+        System.arraycopy(mSlowestBindNanos, index, mSlowestBindNanos, index + 1, SLOWEST_BIND_COUNT - index - 1);
+        System.arraycopy(mSlowestBindPositions, index, mSlowestBindPositions, index + 1,
+                SLOWEST_BIND_COUNT - index - 1);
+        mSlowestBindNanos[index] = durationNanos;
+        mSlowestBindPositions[index] = position;
+    }
+
+    private static int bucketOf(long durationNanos) {
+        for (int i = 0; i < BUCKET_MILLIS.length; i++) {
+            if (durationNanos <= BUCKET_MILLIS[i] * NANOS_PER_MILLI) {
+                return i;
+            }
+        }
+        return BUCKET_MILLIS.length;
+    }
+
+    /**
+     * Getters
+     */
+    public int getFrames() {
+        return mFrames;
+    }
+    public int getJankyFrames() {
+        return mJankyFrames;
+    }
+    public long getDroppedFrames() {
+        return mDroppedFrames;
+    }
+    public long getLongestFrameNanos() {
+        return mLongestFrameNanos;
+    }
+    public int getBinds() {
+        return mBinds;
+    }
+
+    /**
+     * Returns the number of frames in the histogram bucket, see {@link #BUCKET_MILLIS}.
+     */
+    public int getBucket(int bucket) {
+        return mBuckets[bucket];
+    }
+
+    /**
+     * Returns the duration of the slowest bind, or 0 if none was recorded.
+     */
+    public long getSlowestBindNanos() {
+        return mSlowestBindNanos[0];
+    }
+
+    /**
+     * Returns the part of the frames that dropped frames, 0 without frames.
+     */
+    public double getJankRatio() {
+        return mFrames == 0 ? 0 : mJankyFrames / (double) mFrames;
+    }
+
+    public void reset() {
+        Arrays.fill(mBuckets, 0);
+        mFrames = 0;
+        mJankyFrames = 0;
+        mDroppedFrames = 0;
+        mTotalFrameNanos = 0;
+        mLongestFrameNanos = 0;
+        mBinds = 0;
+        mTotalBindNanos = 0;
+        Arrays.fill(mSlowestBindNanos, 0);
+        Arrays.fill(mSlowestBindPositions, -1);
+    }
+
+    /**
+     * Returns a few lines describing the recorded frames and binds, for the log.
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format(Locale.US, "frames %d, janky %d (%.1f%%), dropped %d, mean %.1f ms, longest %.1f ms%n",
+                mFrames, mJankyFrames, getJankRatio() * 100, mDroppedFrames,
+                mFrames == 0 ? 0 : millis(mTotalFrameNanos / mFrames), millis(mLongestFrameNanos)));
+
+        summary.append("histogram");
+        int lower = 0;
+        for (int i = 0; i < mBuckets.length; i++) {
+            String upper = i < BUCKET_MILLIS.length ? String.valueOf(BUCKET_MILLIS[i]) : "";
+            summary.append(String.format(Locale.US, " %d-%sms:%d", lower, upper, mBuckets[i]));
+            lower = i < BUCKET_MILLIS.length ? BUCKET_MILLIS[i] : lower;
+        }
+        summary.append(String.format(Locale.US, "%nbinds %d, mean %.2f ms, slowest",
+                mBinds, mBinds == 0 ? 0 : millis(mTotalBindNanos / mBinds)));
+        for (int i = 0; i < SLOWEST_BIND_COUNT && mSlowestBindPositions[i] >= 0; i++) {
+            summary.append(String.format(Locale.US, " #%d:%.2fms", mSlowestBindPositions[i],
+                    millis(mSlowestBindNanos[i])));
+        }
+        return summary.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) NANOS_PER_MILLI;
+    }
+}
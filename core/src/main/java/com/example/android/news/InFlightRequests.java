@@ -0,0 +1,173 @@
+package com.example.android.news;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deduplicates identical requests that run at the same time. The first caller for a key
+ * performs the fetch on its own thread, later callers for the same key wait for and share
+ * its result. A caller that cancels stops waiting; the fetch itself is aborted once every
+ * caller waiting for it has canceled, so a superseded request doesn't keep the network busy.
+ */
+public class InFlightRequests<T> {
+
+    /**
+     * Performs the actual request
+     */
+    public interface Fetcher<T> {
+        /**
+         * @param token canceled when no caller is waiting for the result anymore
+         */
+        T fetch(String key, CancellationToken token) throws IOException;
+    }
+
+    private final Fetcher<T> mFetcher;
+    private final Map<String, Call<T>> mCalls = new HashMap<>();
+
+    public InFlightRequests(Fetcher<T> fetcher) {
+        mFetcher = fetcher;
+    }
+
+    /**
+     * Returns the result for the key, sharing a request that is already running for it.
+     *
+     * @param caller cancels this caller's interest in the result, or null
+     * @throws InterruptedIOException if the caller canceled or the request was aborted
+     */
+    public T get(String key, CancellationToken caller) throws IOException {
+        return get(key, caller, mFetcher);
+    }
+
+    /**
+     * Like {@link #get(String, CancellationToken)}, with the fetcher that makes the request
+     * if no request is running for the key yet.
+     */
+    public T get(String key, CancellationToken caller, Fetcher<T> fetcher) throws IOException {
+        Call<T> call;
+        boolean owner = false;
+        synchronized (mCalls) {
+            call = mCalls.get(key);
+            if (call == null) {
+                call = new Call<>();
+                // The request is recorded against the load of the caller making it
+                call.mToken.setLoadId(CancellationToken.loadIdOf(caller));
+                mCalls.put(key, call);
+                owner = true;
+            }
+            call.mCallers++;
+        }
+        Runnable onCancel = null;
+        if (caller != null) {
+            final Call<T> joined = call;
+            final String joinedKey = key;
+            onCancel = new Runnable() {
+                @Override
+                public void run() {
+                    release(joinedKey, joined);
+                }
+            };
+            caller.addOnCancelListener(onCancel);
+        }
+        try {
+            if (owner) {
+                run(key, call, fetcher);
+            }
+            return call.await(caller);
+        } finally {
+            if (caller != null) {
+                caller.removeOnCancelListener(onCancel);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of distinct requests currently running.
+     */
+    public int size() {
+        synchronized (mCalls) {
+            return mCalls.size();
+        }
+    }
+
+    private void run(String key, Call<T> call, Fetcher<T> fetcher) {
+        T result = null;
+        IOException error = null;
+        try {
+            result = fetcher.fetch(key, call.mToken);
+        } catch (IOException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new IOException(e);
+        } finally {
+            synchronized (mCalls) {
+                if (mCalls.get(key) == call) {
+                    mCalls.remove(key);
+                }
+            }
+        }
+        call.complete(result, error);
+    }
+
+    /**
+     * One caller lost interest in the call, abort it if it was the last one.
+     */
+    private void release(String key, Call<T> call) {
+        boolean abort;
+        synchronized (mCalls) {
+            abort = --call.mCallers == 0;
+            if (abort && mCalls.get(key) == call) {
+                // Nobody may join a call that is being aborted
+                mCalls.remove(key);
+            }
+        }
+        call.wakeUp();
+        if (abort) {
+            call.mToken.cancel();
+        }
+    }
+
+    private static class Call<T> {
+        final CancellationToken mToken = new CancellationToken();
+        /**
+         * Callers still waiting, guarded by the map of calls
+         */
+        int mCallers;
+        private boolean mDone;
+        private T mResult;
+        private IOException mError;
+
+        synchronized void complete(T result, IOException error) {
+            mResult = result;
+            mError = error;
+            mDone = true;
+            notifyAll();
+        }
+
+        synchronized void wakeUp() {
+            notifyAll();
+        }
+
+        synchronized T await(CancellationToken caller) throws IOException {
+            while (!mDone) {
+                if (caller != null) {
+                    caller.throwIfCanceled();
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted");
+                }
+            }
+            if (caller != null) {
+                caller.throwIfCanceled();
+            }
+            if (mError != null) {
+                throw mError;
+            }
+            return mResult;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.android.news;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Timings and payload of the most recent news loads, kept in a fixed-size ring buffer of
+ * primitive arrays. The buffer doesn't grow; the oldest load is overwritten once it is full.
+ * <p>
+ * A load is started with {@link #begin(long)}, which returns its id. The id travels down to
+ * the requests on their {@link CancellationToken}, see {@link CancellationToken#setLoadId},
+ * and they record against it, so recording doesn't allocate.
+ * A load with several feeds keeps the longest time of every stage, since its requests run
+ * in parallel, and the sum of their bytes and articles.
+ */
+public class LoadMetrics {
+
+    public static final int STAGE_CONNECT = 0;
+    public static final int STAGE_FIRST_BYTE = 1;
+    public static final int STAGE_DOWNLOAD = 2;
+    public static final int STAGE_PARSE = 3;
+    public static final int STAGE_BIND = 4;
+    public static final int STAGE_TOTAL = 5;
+    static final int STAGE_COUNT = 6;
+
+    static final String[] STAGE_NAMES = {"connect", "first_byte", "download", "parse", "bind", "total"};
+
+    /**
+     * No request was made, for instance without network
+     */
+    public static final int CACHE_NONE = 0;
+    /**
+     * Served from a fresh cache entry without a request
+     */
+    public static final int CACHE_HIT = 1;
+    /**
+     * The server confirmed the cached body with a 304
+     */
+    public static final int CACHE_REVALIDATED = 2;
+    /**
+     * The body was downloaded
+     */
+    public static final int CACHE_MISS = 3;
+
+    static final String[] CACHE_NAMES = {"none", "hit", "revalidated", "miss"};
+
+    /**
+     * Id returned for URLs that don't belong to a tracked load
+     */
+    public static final long NO_LOAD = -1;
+
+    private static final int DEFAULT_CAPACITY = 128;
+
+    private static LoadMetrics sInstance;
+
+    private final int mCapacity;
+
+    /**
+     * Id of the load in every slot, -1 for empty slots
+     */
+    private final long[] mIds;
+    private final long[] mStartTimes;
+    /**
+     * Stage durations in nanoseconds, STAGE_COUNT per slot, -1 if not recorded
+     */
+    private final long[] mStages;
+    private final long[] mBytes;
+    private final int[] mArticles;
+    private final byte[] mCache;
+
+    private long mNextId;
+
+    public static synchronized LoadMetrics getInstance() {
+        if (sInstance == null) {
+            sInstance = new LoadMetrics(DEFAULT_CAPACITY);
+        }
+        return sInstance;
+    }
+
+    LoadMetrics(int capacity) {
+        mCapacity = capacity;
+        mIds = new long[capacity];
+        mStartTimes = new long[capacity];
+        mStages = new long[capacity * STAGE_COUNT];
+        mBytes = new long[capacity];
+        mArticles = new int[capacity];
+        mCache = new byte[capacity];
+        Arrays.fill(mIds, -1);
+    }
+
+    /**
+     * Start recording a load and return its id.
+     *
+     * @param startTimeMillis wall clock time the load started
+     */
+    public synchronized long begin(long startTimeMillis) {
+        long id = mNextId++;
+        int slot = (int) (id % mCapacity);
+        mIds[slot] = id;
+        mStartTimes[slot] = startTimeMillis;
+        Arrays.fill(mStages, slot * STAGE_COUNT, (slot + 1) * STAGE_COUNT, -1);
+        mBytes[slot] = 0;
+        mArticles[slot] = 0;
+        mCache[slot] = CACHE_NONE;
+        return id;
+    }
+
+    /**
+     * Record the duration of a stage, keeping the longer one if it was already recorded.
+     * Ignored if the load was overwritten in the meantime.
+     */
+    public synchronized void recordStage(long load, int stage, long nanos) {
+        int slot = slotOf(load);
+        if (slot >= 0) {
+            int index = slot * STAGE_COUNT + stage;
+            mStages[index] = Math.max(mStages[index], nanos);
+        }
+    }
+
+    /**
+     * Add the payload of one response to the load.
+     */
+    public synchronized void recordPayload(long load, long bytes, int articles) {
+        int slot = slotOf(load);
+        if (slot >= 0) {
+            mBytes[slot] += bytes;
+            mArticles[slot] += articles;
+        }
+    }
+
+    /**
+     * Record how the cache answered, keeping the result that used the network most.
+     */
+    public synchronized void recordCache(long load, int cacheResult) {
+        int slot = slotOf(load);
+        if (slot >= 0 && cacheResult > mCache[slot]) {
+            mCache[slot] = (byte) cacheResult;
+        }
+    }
+
+    /**
+     * Returns the number of loads in the buffer.
+     */
+    public synchronized int size() {
+        return (int) Math.min(mNextId, mCapacity);
+    }
+
+    /**
+     * Returns the given percentile of a stage over the loads in the buffer in nanoseconds,
+     * or -1 if no load recorded the stage.
+     *
+     * @param percentile between 0 and 100
+     */
+    public synchronized long percentile(int stage, double percentile) {
+        long[] values = new long[mCapacity];
+        int count = 0;
+        for (int slot = 0; slot < mCapacity; slot++) {
+            long value = mStages[slot * STAGE_COUNT + stage];
+            if (mIds[slot] >= 0 && value >= 0) {
+                values[count++] = value;
+            }
+        }
+        if (count == 0) {
+            return -1;
+        }
+        Arrays.sort(values, 0, count);
+        // Nearest rank
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return values[Math.max(0, Math.min(count, rank) - 1)];
+    }
+
+    /**
+     * Returns the number of loads in the buffer with the given cache result.
+     */
+    public synchronized int countCache(int cacheResult) {
+        int count = 0;
+        for (int slot = 0; slot < mCapacity; slot++) {
+            if (mIds[slot] >= 0 && mCache[slot] == cacheResult) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the total bytes transferred by the loads in the buffer.
+     */
+    public synchronized long totalBytes() {
+        long total = 0;
+        for (int slot = 0; slot < mCapacity; slot++) {
+            if (mIds[slot] >= 0) {
+                total += mBytes[slot];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Write every load in the buffer as a line of comma separated values, oldest first.
+     * Stage durations are in microseconds, empty if not recorded.
+     */
+    public synchronized void writeCsv(Writer writer) throws IOException {
+        writer.write("id,start_time");
+        for (String stage : STAGE_NAMES) {
+            writer.write(',');
+            writer.write(stage + "_us");
+        }
+        writer.write(",bytes,articles,cache\n");
+
+        long first = Math.max(0, mNextId - mCapacity);
+        for (long id = first; id < mNextId; id++) {
+            int slot = (int) (id % mCapacity);
+            writer.write(id + "," + mStartTimes[slot]);
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                long value = mStages[slot * STAGE_COUNT + stage];
+                writer.write(',');
+                if (value >= 0) {
+                    writer.write(String.valueOf(value / 1000));
+                }
+            }
+            writer.write("," + mBytes[slot] + "," + mArticles[slot] + "," + CACHE_NAMES[mCache[slot]] + "\n");
+        }
+    }
+
+    private int slotOf(long load) {
+        if (load < 0) {
+            return -1;
+        }
+        int slot = (int) (load % mCapacity);
+        return mIds[slot] == load ? slot : -1;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.android.news;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a number of feed loads through a {@link ParallelNewsFetcher.Fetcher} with a fixed
+ * number of loads at the same time, and measures the throughput, the latency of every load
+ * and, where the platform can tell, the bytes allocated per load. Meant to be pointed at a
+ * {@link SyntheticGuardianServer}.
+ */
+public class LoadTest {
+
+    /**
+     * Tells the bytes allocated by the calling thread so far
+     */
+    public interface AllocationMeter {
+        /**
+         * Returns the bytes allocated by the calling thread, or -1 if unknown.
+         */
+        long threadAllocatedBytes();
+    }
+
+    /**
+     * Outcome of a run
+     */
+    public static class Result {
+        public final int loads;
+        public final int failedLoads;
+        public final long news;
+        public final long elapsedNanos;
+        /**
+         * Latency of every load in nanoseconds, sorted
+         */
+        private final long[] mLatencies;
+        /**
+         * Mean bytes allocated per load, -1 if unknown
+         */
+        public final long bytesPerLoad;
+
+        Result(int loads, int failedLoads, long news, long elapsedNanos, long[] latencies, long bytesPerLoad) {
+            this.loads = loads;
+            this.failedLoads = failedLoads;
+            this.news = news;
+            this.elapsedNanos = elapsedNanos;
+            mLatencies = latencies;
+            this.bytesPerLoad = bytesPerLoad;
+            Arrays.sort(mLatencies);
+        }
+
+        public double loadsPerSecond() {
+            return loads / (Math.max(elapsedNanos, 1) / 1e9);
+        }
+
+        /**
+         * Returns the given percentile of the load latencies in nanoseconds, nearest rank.
+         *
+         * @param percentile between 0 and 100
+         */
+        public long latencyPercentile(double percentile) {
+            if (mLatencies.length == 0) {
+                return -1;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * mLatencies.length);
+            return mLatencies[Math.max(0, Math.min(mLatencies.length, rank) - 1)];
+        }
+
+        public void print(PrintStream out) {
+            out.println(toString());
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d loads (%d failed), %d news in %.1f s: %.1f loads/s, p50 %.1f ms, p99 %.1f ms, %s per load",
+                    loads, failedLoads, news, elapsedNanos / 1e9, loadsPerSecond(),
+                    latencyPercentile(50) / 1e6, latencyPercentile(99) / 1e6,
+                    bytesPerLoad >= 0 ? String.format(Locale.US, "%.1f KB", bytesPerLoad / 1024.0) : "unknown bytes");
+        }
+    }
+
+    private final ParallelNewsFetcher.Fetcher mFetcher;
+    private final AllocationMeter mAllocationMeter;
+
+    /**
+     * @param allocationMeter measures the allocations of every load, or null
+     */
+    public LoadTest(ParallelNewsFetcher.Fetcher fetcher, AllocationMeter allocationMeter) {
+        mFetcher = fetcher;
+        mAllocationMeter = allocationMeter;
+    }
+
+    /**
+     * Load the URLs in turn until the given number of loads ran, concurrency at a time.
+     * A load fails if the fetcher returns null.
+     */
+    public Result run(final List<String> urls, final int loads, int concurrency) throws InterruptedException {
+        final long[] latencies = new long[loads];
+        final AtomicInteger nextLoad = new AtomicInteger();
+        final AtomicInteger failedLoads = new AtomicInteger();
+        final long[] news = new long[concurrency];
+        final long[] allocated = new long[concurrency];
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        for (int worker = 0; worker < concurrency; worker++) {
+            final int slot = worker;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long allocatedBefore = mAllocationMeter != null ? mAllocationMeter.threadAllocatedBytes() : -1;
+                    int load;
+                    while ((load = nextLoad.getAndIncrement()) < loads) {
+                        long loadStart = System.nanoTime();
+                        List<TechNews> result = mFetcher.fetch(urls.get(load % urls.size()), null);
+                        latencies[load] = System.nanoTime() - loadStart;
+                        if (result == null) {
+                            failedLoads.incrementAndGet();
+                        } else {
+                            news[slot] += result.size();
+                        }
+                    }
+                    long allocatedAfter = mAllocationMeter != null ? mAllocationMeter.threadAllocatedBytes() : -1;
+                    allocated[slot] = allocatedBefore >= 0 && allocatedAfter >= 0 ? allocatedAfter - allocatedBefore : -1;
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        long totalNews = 0;
+        long totalAllocated = 0;
+        for (int slot = 0; slot < concurrency; slot++) {
+            totalNews += news[slot];
+            totalAllocated = allocated[slot] >= 0 && totalAllocated >= 0 ? totalAllocated + allocated[slot] : -1;
+        }
+        return new Result(loads, failedLoads.get(), totalNews, elapsed, latencies,
+                totalAllocated >= 0 && loads > 0 ? totalAllocated / loads : -1);
+    }
+}
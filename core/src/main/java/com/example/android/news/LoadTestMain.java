@@ -0,0 +1,154 @@
+package com.example.android.news;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Command line load test of the request and parsing pipeline against a local
+ * {@link SyntheticGuardianServer}, fully offline. Run it with ./gradlew :core:loadTest, passing
+ * options in the loadTestArgs property, for instance:
+ * <pre>
+ * ./gradlew :core:loadTest -PloadTestArgs="--loads 2000 --concurrency 16 --latency 80 --error-rate 0.02"
+ * </pre>
+ * Every load requests and parses a page through a {@link NewsHttpClient} with the retry policy
+ * of the app. The result is printed to stdout; the exit code is 1 if any load failed.
+ */
+public class LoadTestMain {
+
+    private static final String USAGE = "Usage: loadTest [options]\n"
+            + "  --loads N            loads to run (default: 500)\n"
+            + "  --concurrency N      loads at the same time (default: 4)\n"
+            + "  --page-size N        results per page (default: 20)\n"
+            + "  --pages N            different pages requested in turn (default: 5)\n"
+            + "  --sections A,B       sections requested in turn (default: technology)\n"
+            + "  --padding N          extra bytes per result (default: 0)\n"
+            + "  --latency MS         server latency (default: 0)\n"
+            + "  --jitter MS          random extra server latency (default: 0)\n"
+            + "  --error-rate X       part of the requests failing with a 503 (default: 0)\n"
+            + "  --rps N              requests per second before the server throttles (default: unlimited)\n"
+            + "  --attempts N         attempts per request (default: 3)";
+
+    private static final int CONNECT_TIMEOUT = 8000;
+    private static final int READ_TIMEOUT = 10000;
+    private static final long RETRY_BASE_DELAY_MILLIS = 500;
+    private static final long RETRY_MAX_DELAY_MILLIS = 8000;
+
+    private LoadTestMain() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                exitWithUsage("Unexpected argument " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        SyntheticGuardianServer server = new SyntheticGuardianServer();
+        server.setPaddingBytes(intOption(options, "padding", 0));
+        server.setLatency(intOption(options, "latency", 0), intOption(options, "jitter", 0));
+        server.setRequestsPerSecond(intOption(options, "rps", 0));
+        String errorRate = options.get("error-rate");
+        try {
+            server.setErrorRate(errorRate != null ? Double.parseDouble(errorRate) : 0);
+        } catch (NumberFormatException e) {
+            exitWithUsage("--error-rate must be a number between 0 and 1");
+        }
+
+        List<String> urls = new ArrayList<>();
+        String sections = options.containsKey("sections") ? options.get("sections") : "technology";
+        int pages = Math.max(1, intOption(options, "pages", 5));
+        for (int page = 1; page <= pages; page++) {
+            for (String section : sections.split(",")) {
+                urls.add(server.getSearchUrl() + "?section=" + section
+                        + "&page-size=" + intOption(options, "page-size", 20) + "&page=" + page + "&api-key=test");
+            }
+        }
+
+        final NewsHttpClient client = new NewsHttpClient(null, CONNECT_TIMEOUT, READ_TIMEOUT);
+        client.setRetryPolicy(new RetryPolicy(Math.max(1, intOption(options, "attempts", 3)),
+                RETRY_BASE_DELAY_MILLIS, RETRY_MAX_DELAY_MILLIS, new Random()));
+        LoadTest loadTest = new LoadTest(new ParallelNewsFetcher.Fetcher() {
+            @Override
+            public List<TechNews> fetch(String url, CancellationToken token) {
+                try {
+                    InputStream in = client.openStream(new URL(url), token);
+                    try {
+                        return NewsParser.parse(in).getNews();
+                    } finally {
+                        in.close();
+                    }
+                } catch (IOException e) {
+                    return null;
+                }
+            }
+        }, jvmAllocationMeter());
+
+        LoadTest.Result result;
+        try {
+            result = loadTest.run(urls, Math.max(1, intOption(options, "loads", 500)),
+                    Math.max(1, intOption(options, "concurrency", 4)));
+        } finally {
+            server.shutdown();
+        }
+        result.print(System.out);
+        System.out.println("Server: " + server.getConnectionCount() + " connections, "
+                + server.getRequestCount() + " requests, " + server.getErrorCount()
+                + " errors, " + server.getThrottledCount() + " throttled");
+        System.exit(result.failedLoads == 0 ? 0 : 1);
+    }
+
+    /**
+     * Returns a meter reading the allocation counter of HotSpot threads, or null on JVMs
+     * without one.
+     */
+    private static LoadTest.AllocationMeter jvmAllocationMeter() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return new LoadTest.AllocationMeter() {
+            @Override
+            public long threadAllocatedBytes() {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        };
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value);
+            if (number >= 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        exitWithUsage("--" + name + " must be a number");
+        return defaultValue;
+    }
+
+    private static void exitWithUsage(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.android.news;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pages through a guardianapis search over a range of dates and writes every article as a
+ * line of JSON. The range is split into slices of a few days that are searched on their own,
+ * so their pages can be requested in parallel: the first page of a slice tells how many
+ * pages follow, and those are queued right away.
+ * <p>
+ * Articles are written in the order their pages arrive, not in date order. A page that fails
+ * is reported and skipped, the rest of the crawl goes on.
+ */
+public class NewsCrawler {
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Receives the failed pages, on the crawling threads
+     */
+    public interface Listener {
+        void onPageFailed(String url, IOException e);
+    }
+
+    /**
+     * Counters of a finished crawl
+     */
+    public static class Result {
+        public final int pages;
+        public final int failedPages;
+        public final long articles;
+        public final long bytes;
+        public final long elapsedMillis;
+
+        Result(int pages, int failedPages, long articles, long bytes, long elapsedMillis) {
+            this.pages = pages;
+            this.failedPages = failedPages;
+            this.articles = articles;
+            this.bytes = bytes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public void print(PrintStream out) {
+            double seconds = Math.max(elapsedMillis, 1) / 1000.0;
+            out.println(String.format(Locale.US,
+                    "%d articles from %d pages (%d failed) in %.1f s: %.0f articles/s, %.1f pages/s, %.2f MB/s",
+                    articles, pages, failedPages, seconds, articles / seconds, pages / seconds,
+                    bytes / seconds / (1024 * 1024)));
+        }
+    }
+
+    private final NewsTransport mTransport;
+    private final String mEndpoint;
+    private final String mApiKey;
+    private final String mQuery;
+    private final String mSection;
+    private final int mPageSize;
+    private final int mConcurrency;
+    private final Listener mListener;
+
+    /**
+     * @param endpoint    search URL, like https://content.guardianapis.com/search
+     * @param query       search terms, or null for all articles
+     * @param section     section id to search in, or null for all sections
+     * @param pageSize    results per page, at most 200
+     * @param concurrency requests running at the same time
+     * @param listener    receives the failed pages, or null
+     */
+    public NewsCrawler(NewsTransport transport, String endpoint, String apiKey, String query, String section,
+                       int pageSize, int concurrency, Listener listener) {
+        mTransport = transport;
+        mEndpoint = endpoint;
+        mApiKey = apiKey;
+        mQuery = query;
+        mSection = section;
+        mPageSize = pageSize;
+        mConcurrency = concurrency;
+        mListener = listener;
+    }
+
+    /**
+     * Crawl the articles published between the two days and write them to out, one JSON
+     * object per line. Returns once every page was written or failed.
+     *
+     * @param fromDay   first day, like 2018-07-01
+     * @param toDay     last day, included
+     * @param sliceDays days searched by a single search
+     * @throws IllegalArgumentException if a day is malformed or the range is empty
+     */
+    public Result crawl(String fromDay, String toDay, int sliceDays, Writer out)
+            throws IOException, InterruptedException {
+        long from = parseDay(fromDay);
+        long to = parseDay(toDay);
+        if (to < from) {
+            throw new IllegalArgumentException("The range ends before it starts: " + fromDay + " to " + toDay);
+        }
+
+        Crawl crawl = new Crawl(out);
+        long start = System.nanoTime();
+        for (long sliceStart = from; sliceStart <= to; sliceStart += sliceDays * MILLIS_PER_DAY) {
+            long sliceEnd = Math.min(to, sliceStart + (sliceDays - 1) * MILLIS_PER_DAY);
+            crawl.submit(NewsDates.formatDay(sliceStart), NewsDates.formatDay(sliceEnd), 1);
+        }
+        crawl.await();
+        out.flush();
+        if (crawl.mError != null) {
+            throw crawl.mError;
+        }
+        return new Result(crawl.mPages.get(), crawl.mFailedPages.get(), crawl.mArticles.get(),
+                crawl.mBytes.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Returns the URL of a page of the search over the given days.
+     */
+    String pageUrl(String fromDay, String toDay, int page) {
+        StringBuilder url = new StringBuilder(mEndpoint);
+        url.append(mEndpoint.indexOf('?') < 0 ? '?' : '&');
+        url.append("from-date=").append(fromDay);
+        url.append("&to-date=").append(toDay);
+        url.append("&order-by=oldest");
+        url.append("&show-tags=contributor");
+        url.append("&show-fields=thumbnail");
+        url.append("&page-size=").append(mPageSize);
+        url.append("&page=").append(page);
+        if (mQuery != null) {
+            url.append("&q=").append(encode(mQuery));
+        }
+        if (mSection != null) {
+            url.append("&section=").append(encode(mSection));
+        }
+        url.append("&api-key=").append(encode(mApiKey));
+        return url.toString();
+    }
+
+    /**
+     * Returns the article as a single line of JSON with the field names of the guardianapis,
+     * without the line break.
+     */
+    static String toJson(TechNews news, SimpleDateFormat isoFormat) throws IOException {
+        StringWriter line = new StringWriter();
+        JsonWriter writer = new JsonWriter(line);
+        // Missing fields are left out, like in the guardianapis responses
+        writer.setSerializeNulls(false);
+        writer.beginObject();
+        writer.name("id").value(news.getId());
+        writer.name("sectionName").value(news.getSection());
+        writer.name("webTitle").value(news.getTitle());
+        writer.name("webPublicationDate").value(news.getPublishedAt() != NewsDates.INVALID
+                ? isoFormat.format(new Date(news.getPublishedAt())) : null);
+        writer.name("author").value(NewsParser.UNKNOWN_AUTHOR.equals(news.getAuthor()) ? null : news.getAuthor());
+        writer.name("webUrl").value(news.getUrl());
+        writer.name("thumbnail").value(news.getThumbnailUrl());
+        writer.endObject();
+        writer.close();
+        return line.toString();
+    }
+
+    static long parseDay(String day) {
+        long time = NewsDates.parseIso8601(day + "T00:00:00Z");
+        if (day.length() != 10 || time == NewsDates.INVALID) {
+            throw new IllegalArgumentException("Not a day like 2018-07-18: " + day);
+        }
+        return time;
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * State of one running crawl
+     */
+    private class Crawl {
+        private final Writer mOut;
+        private final ExecutorService mExecutor = Executors.newFixedThreadPool(mConcurrency);
+
+        private final AtomicInteger mPages = new AtomicInteger();
+        private final AtomicInteger mFailedPages = new AtomicInteger();
+        private final AtomicLong mArticles = new AtomicLong();
+        private final AtomicLong mBytes = new AtomicLong();
+
+        /**
+         * Pages queued or running, guarded by this
+         */
+        private int mPending;
+        /**
+         * First error writing the output, which ends the crawl, guarded by this
+         */
+        private IOException mError;
+
+        Crawl(Writer out) {
+            mOut = out;
+        }
+
+        void submit(final String fromDay, final String toDay, final int page) {
+            synchronized (this) {
+                if (mError != null) {
+                    return;
+                }
+                mPending++;
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        crawlPage(fromDay, toDay, page);
+                    } finally {
+                        synchronized (Crawl.this) {
+                            mPending--;
+                            Crawl.this.notifyAll();
+                        }
+                    }
+                }
+            });
+        }
+
+        synchronized void await() throws InterruptedException {
+            try {
+                while (mPending > 0) {
+                    wait();
+                }
+            } finally {
+                mExecutor.shutdownNow();
+            }
+        }
+
+        private void crawlPage(String fromDay, String toDay, int page) {
+            String url = pageUrl(fromDay, toDay, page);
+            NewsPage newsPage;
+            CountingInputStream in = null;
+            try {
+                in = new CountingInputStream(mTransport.openStream(new URL(url), null));
+                newsPage = NewsParser.parse(in);
+                if (!newsPage.isComplete()) {
+                    throw new IOException("Malformed response");
+                }
+            } catch (IOException e) {
+                mFailedPages.incrementAndGet();
+                if (mListener != null) {
+                    mListener.onPageFailed(url, e);
+                }
+                return;
+            } finally {
+                if (in != null) {
+                    mBytes.addAndGet(in.mCount);
+                    NewsResponseCache.closeQuietly(in);
+                }
+            }
+
+            // The first page of a slice queues the others
+            if (page == 1) {
+                for (int next = 2; next <= newsPage.getPages(); next++) {
+                    submit(fromDay, toDay, next);
+                }
+            }
+            write(newsPage.getNews());
+            mPages.incrementAndGet();
+        }
+
+        private void write(List<TechNews> news) {
+            // Lines are built on the crawling thread, only the writing is serialized
+            SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+            isoFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            StringBuilder lines = new StringBuilder();
+            try {
+                for (TechNews item : news) {
+                    lines.append(toJson(item, isoFormat)).append('\n');
+                }
+                synchronized (mOut) {
+                    mOut.write(lines.toString());
+                }
+                mArticles.addAndGet(news.size());
+            } catch (IOException e) {
+                synchronized (this) {
+                    if (mError == null) {
+                        mError = e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read through it
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.android.news;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Command line entry point of {@link NewsCrawler}. Build it with ./gradlew :core:installDist
+ * and run core/build/install/core/bin/core, for instance:
+ * <pre>
+ * core --from 2018-01-01 --to 2018-06-30 --section technology --concurrency 8 --out tech.ndjson
+ * </pre>
+ * The summary is printed to stderr, so the articles can also be piped from stdout.
+ */
+public class NewsCrawlerMain {
+
+    private static final String USAGE = "Usage: core --from yyyy-MM-dd --to yyyy-MM-dd [options]\n"
+            + "  --api-key KEY        guardianapis key (default: test)\n"
+            + "  --endpoint URL       search URL (default: https://content.guardianapis.com/search)\n"
+            + "  --query TEXT         search terms\n"
+            + "  --section ID         section to search in, like technology\n"
+            + "  --page-size N        results per page, at most 200 (default: 200)\n"
+            + "  --concurrency N      requests at the same time (default: 4)\n"
+            + "  --slice-days N       days per search, searched in parallel (default: 7)\n"
+            + "  --attempts N         attempts per page (default: 3)\n"
+            + "  --out FILE           output file (default: stdout)";
+
+    private static final int CONNECT_TIMEOUT = 15000;
+    private static final int READ_TIMEOUT = 30000;
+
+    private NewsCrawlerMain() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                exitWithUsage("Unexpected argument " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        if (!options.containsKey("from") || !options.containsKey("to")) {
+            exitWithUsage("--from and --to are required");
+        }
+
+        NewsHttpClient client = new NewsHttpClient(null, CONNECT_TIMEOUT, READ_TIMEOUT);
+        client.setRetryPolicy(new RetryPolicy(intOption(options, "attempts", 3), 1000, 30000, new Random()));
+        // Stop hammering an upstream that is down, the remaining pages fail fast
+        client.setCircuitBreaker(new CircuitBreaker(SyncPolicy.SYSTEM_CLOCK, 10, 60000));
+
+        NewsCrawler crawler = new NewsCrawler(client,
+                stringOption(options, "endpoint", "https://content.guardianapis.com/search"),
+                stringOption(options, "api-key", "test"),
+                options.get("query"),
+                options.get("section"),
+                Math.min(200, intOption(options, "page-size", 200)),
+                intOption(options, "concurrency", 4),
+                new NewsCrawler.Listener() {
+                    @Override
+                    public void onPageFailed(String url, IOException e) {
+                        System.err.println("Failed " + url + ": " + e);
+                    }
+                });
+
+        String outPath = options.get("out");
+        OutputStream out = outPath != null ? new FileOutputStream(outPath) : System.out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")), 64 * 1024);
+        NewsCrawler.Result result;
+        try {
+            result = crawler.crawl(options.get("from"), options.get("to"),
+                    intOption(options, "slice-days", 7), writer);
+        } catch (IllegalArgumentException e) {
+            exitWithUsage(e.getMessage());
+            return;
+        } finally {
+            if (outPath != null) {
+                writer.close();
+            } else {
+                writer.flush();
+            }
+        }
+        result.print(System.err);
+        System.exit(result.failedPages == 0 ? 0 : 1);
+    }
+
+    private static String stringOption(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        exitWithUsage("--" + name + " must be a positive number");
+        return defaultValue;
+    }
+
+    private static void exitWithUsage(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
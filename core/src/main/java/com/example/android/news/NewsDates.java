@@ -0,0 +1,205 @@
+package com.example.android.news;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Parsing and formatting of publication dates. Dates are parsed once when news are read
+ * and formatted once for display, so binding a row does no date work at all.
+ */
+public final class NewsDates {
+
+    /**
+     * Returned by {@link #parseIso8601(CharSequence)} for text that is not a valid date
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    /**
+     * Formatter for displayed dates, one per thread because SimpleDateFormat is not thread safe
+     */
+    private static final ThreadLocal<DisplayFormatter> sDisplayFormatter = new ThreadLocal<DisplayFormatter>() {
+        @Override
+        protected DisplayFormatter initialValue() {
+            return new DisplayFormatter();
+        }
+    };
+
+    /**
+     * Create a private constructor because no one should ever create a {@link NewsDates} object.
+     */
+    private NewsDates() {
+    }
+
+    /**
+     * Parse an ISO-8601 date time like "2018-07-18T15:26:43Z" into milliseconds since the epoch,
+     * without allocating. Fractional seconds and "+hh:mm"/"-hh:mm" offsets are accepted, a
+     * missing offset is treated as UTC.
+     *
+     * @return the time in milliseconds, or {@link #INVALID} if the text is not a valid date
+     */
+    public static long parseIso8601(CharSequence text) {
+        if (text == null || text.length() < 19
+                || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return INVALID;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+
+        int position = 19;
+        int millis = 0;
+        if (position < text.length() && text.charAt(position) == '.') {
+            position++;
+            int start = position;
+            while (position < text.length() && isDigit(text.charAt(position))) {
+                // Only the first three digits are significant
+                if (position - start < 3) {
+                    millis = millis * 10 + (text.charAt(position) - '0');
+                }
+                position++;
+            }
+            if (position == start) {
+                return INVALID;
+            }
+            for (int i = position - start; i < 3; i++) {
+                millis *= 10;
+            }
+        }
+
+        int offsetMinutes = 0;
+        if (position < text.length()) {
+            char zone = text.charAt(position);
+            if (zone == 'Z' && position + 1 == text.length()) {
+                offsetMinutes = 0;
+            } else if ((zone == '+' || zone == '-') && position + 6 == text.length()
+                    && text.charAt(position + 3) == ':') {
+                int offsetHours = digits(text, position + 1, 2);
+                int offsetMins = digits(text, position + 4, 2);
+                if (offsetHours < 0 || offsetHours > 23 || offsetMins < 0 || offsetMins > 59) {
+                    return INVALID;
+                }
+                offsetMinutes = (offsetHours * 60 + offsetMins) * (zone == '-' ? -1 : 1);
+            } else {
+                return INVALID;
+            }
+        }
+
+        return daysFromCivil(year, month, day) * MILLIS_PER_DAY
+                + ((hour * 60L + minute) * 60 + second) * 1000 + millis
+                - offsetMinutes * MILLIS_PER_MINUTE;
+    }
+
+    /**
+     * Format a publication time for display, like "Wed, Jul 18, '18".
+     * Uses a formatter cached for the calling thread.
+     */
+    public static String formatForDisplay(long epochMillis) {
+        if (epochMillis == INVALID) {
+            return "";
+        }
+        return sDisplayFormatter.get().format(epochMillis);
+    }
+
+    /**
+     * Format a time as its day in UTC, like "2018-07-18", the date format of the
+     * guardianapis from-date and to-date parameters.
+     */
+    public static String formatDay(long epochMillis) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(epochMillis));
+    }
+
+    /**
+     * Returns the value of count decimal digits starting at start, or -1 if any is not a digit.
+     */
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Number of days from 1970-01-01 to the given date in the proleptic Gregorian calendar.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Display formatter that reuses its Date and the text of the last formatted day,
+     * since most news of a page were published on the same few days.
+     */
+    private static class DisplayFormatter {
+        private final DateFormat mFormat = new SimpleDateFormat("EEE, MMM d, ''yy");
+        private final Date mDate = new Date();
+        private long mLastDayStart = INVALID;
+        private long mLastDayEnd = INVALID;
+        private String mLastText;
+
+        String format(long epochMillis) {
+            if (epochMillis >= mLastDayStart && epochMillis < mLastDayEnd) {
+                return mLastText;
+            }
+            mDate.setTime(epochMillis);
+            mLastText = mFormat.format(mDate);
+
+            // Remember the local day the text is valid for, unless the offset changes during it
+            TimeZone timeZone = mFormat.getTimeZone();
+            long offset = timeZone.getOffset(epochMillis);
+            long local = epochMillis + offset;
+            long localDay = local / MILLIS_PER_DAY - (local % MILLIS_PER_DAY < 0 ? 1 : 0);
+            mLastDayStart = localDay * MILLIS_PER_DAY - offset;
+            mLastDayEnd = mLastDayStart + MILLIS_PER_DAY;
+            if (timeZone.getOffset(mLastDayStart) != offset || timeZone.getOffset(mLastDayEnd - 1) != offset) {
+                mLastDayStart = INVALID;
+                mLastDayEnd = INVALID;
+            }
+            return mLastText;
+        }
+    }
+}
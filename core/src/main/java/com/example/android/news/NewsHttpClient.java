@@ -0,0 +1,698 @@
+package com.example.android.news;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Performs GET requests for the news feed. Responses are requested gzip encoded and, when
+ * a {@link NewsResponseCache} is set, stored on disk and revalidated with conditional
+ * requests, so an unchanged feed is answered by a 304 and read from the cache.
+ * <p>
+ * With a {@link RetryPolicy}, requests failing on the network or with a temporary error
+ * code are made again after a backoff. With a {@link CircuitBreaker}, an upstream that keeps
+ * failing isn't asked at all for a while. In both cases a cached response is served, even
+ * if stale, once no more attempts are made.
+ * <p>
+ * Connections are kept alive: a response is read to its end and closed rather than
+ * disconnected, so HttpURLConnection puts the socket back into its pool and later requests
+ * to the same host skip DNS, TCP and TLS setup. A {@link ConnectionPool} counts how often
+ * that happens over TLS, by the sockets the requests create.
+ */
+public class NewsHttpClient implements NewsTransport {
+
+    /**
+     * Receives the timings and sizes of every request on the requesting thread, with the
+     * token the request was made with, or null.
+     */
+    public interface EventListener {
+        void onConnected(URL url, CancellationToken token, long connectNanos);
+
+        /**
+         * @param cacheResult one of the LoadMetrics CACHE_ constants
+         */
+        void onResponse(URL url, CancellationToken token, long firstByteNanos, int cacheResult);
+
+        /**
+         * @param bytes number of bytes received over the network for the body
+         */
+        void onBodyClosed(URL url, CancellationToken token, long bytes);
+    }
+
+    /**
+     * Decides when the network attempts of a request may be made.
+     */
+    public interface AttemptGate {
+        /**
+         * Block until the attempt may go out over the network. Not called for responses
+         * served from the cache without a request.
+         *
+         * @param attempt 1 for the first attempt of the request, higher for its retries
+         * @throws InterruptedIOException if the token was canceled while waiting
+         */
+        void awaitAttempt(URL url, int attempt, CancellationToken token) throws IOException;
+    }
+
+    /**
+     * Cache of response bodies, or null if responses are not cached
+     */
+    private final NewsResponseCache mCache;
+
+    /**
+     * Largest rest of a response read to keep its connection, larger rests disconnect
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private final int mConnectTimeout;
+    private final int mReadTimeout;
+
+    private volatile EventListener mEventListener;
+    private volatile RetryPolicy mRetryPolicy;
+    private volatile CircuitBreaker mCircuitBreaker;
+    private volatile ConnectionPool mConnectionPool;
+    private volatile BandwidthLimiter mBandwidthLimiter;
+    private volatile SSLSocketFactory mSslSocketFactory;
+
+    public NewsHttpClient(NewsResponseCache cache, int connectTimeout, int readTimeout) {
+        mCache = cache;
+        mConnectTimeout = connectTimeout;
+        mReadTimeout = readTimeout;
+    }
+
+    public void setEventListener(EventListener listener) {
+        mEventListener = listener;
+    }
+
+    /**
+     * Retry failed requests as the policy allows. Without a policy every request is
+     * made once.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy;
+    }
+
+    /**
+     * Stop making requests while the breaker is open. The breaker may be shared with other
+     * clients of the same upstream.
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        mCircuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Count the connections reused from the keep-alive pool and those opened by the requests
+     * over TLS. The pool may be shared with other clients of the same hosts.
+     */
+    public void setConnectionPool(ConnectionPool connectionPool) {
+        mConnectionPool = connectionPool;
+    }
+
+    /**
+     * Make the TLS connections through the given factory instead of the platform's default,
+     * like one trusting the certificate of a test server.
+     */
+    public void setSslSocketFactory(SSLSocketFactory sslSocketFactory) {
+        mSslSocketFactory = sslSocketFactory;
+    }
+
+    /**
+     * Read the response bodies through the limiter, which caps the bytes received over the
+     * network, before they are decompressed. The limiter may be shared with other clients.
+     */
+    public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        mBandwidthLimiter = bandwidthLimiter;
+    }
+
+    /**
+     * Connect to the URL's host ahead of the first request and leave the connection in the
+     * keep-alive pool, so that request skips DNS, TCP and TLS setup. Makes a HEAD request
+     * whose answer doesn't matter. Does nothing if a connection to the host is idle already;
+     * the pre-warming connection isn't counted as a hit or a miss.
+     */
+    public void prewarm(URL url) throws IOException {
+        ConnectionPool pool = mConnectionPool;
+        if (pool != null && pool.hasIdle(url)) {
+            return;
+        }
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        // The requests only reuse the connection if it was made through the same factory
+        setSocketFactory(urlConnection, pool);
+        try {
+            urlConnection.setReadTimeout(mReadTimeout);
+            urlConnection.setConnectTimeout(mConnectTimeout);
+            urlConnection.setRequestMethod("HEAD");
+            urlConnection.setUseCaches(false);
+            urlConnection.getResponseCode();
+        } catch (IOException e) {
+            urlConnection.disconnect();
+            throw e;
+        }
+        release(urlConnection, url, pool);
+    }
+
+    /**
+     * Make a TLS connection with the socket factory of the client, through the pool's
+     * counting factory if there is a pool.
+     *
+     * @return true if the pool can tell whether the connection's request reuses one
+     */
+    private boolean setSocketFactory(HttpURLConnection urlConnection, ConnectionPool pool) {
+        if (!(urlConnection instanceof HttpsURLConnection)) {
+            return false;
+        }
+        HttpsURLConnection secureConnection = (HttpsURLConnection) urlConnection;
+        SSLSocketFactory factory = mSslSocketFactory;
+        if (pool != null) {
+            secureConnection.setSSLSocketFactory(pool.socketFactory(
+                    factory != null ? factory : secureConnection.getSSLSocketFactory()));
+            return true;
+        }
+        if (factory != null) {
+            secureConnection.setSSLSocketFactory(factory);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the response body for the given URL, either from the cache or from the network.
+     * The caller must close the returned stream.
+     *
+     * @throws IOException if the request fails or the server answers with an error code,
+     *                     and there is no cached response to fall back on
+     */
+    public InputStream openStream(URL url) throws IOException {
+        return openStream(url, null);
+    }
+
+    /**
+     * Returns the body of a fresh cached response for the URL, which is served without a
+     * request, or null if a request would have to be made. The caller must close the
+     * returned stream.
+     */
+    public InputStream openFresh(URL url) throws IOException {
+        return openFresh(url, null);
+    }
+
+    /**
+     * Like {@link #openFresh(URL)}, reported to the event listener with the token of the
+     * request it answers.
+     */
+    public InputStream openFresh(URL url, CancellationToken token) throws IOException {
+        NewsResponseCache.Entry entry = mCache != null ? mCache.get(url.toString()) : null;
+        if (entry == null || !entry.isFresh(System.currentTimeMillis())) {
+            return null;
+        }
+        EventListener listener = mEventListener;
+        if (listener != null) {
+            listener.onResponse(url, token, 0, LoadMetrics.CACHE_HIT);
+        }
+        return entry.openBody();
+    }
+
+    /**
+     * Like {@link #openStream(URL)}, but canceling the token disconnects the request, so a
+     * superseded request stops using the network right away, also while reading the body.
+     *
+     * @param token cancels the request, or null if it can't be canceled
+     * @throws InterruptedIOException if the token was canceled
+     */
+    @Override
+    public InputStream openStream(URL url, CancellationToken token) throws IOException {
+        return openStream(url, token, null);
+    }
+
+    /**
+     * Like {@link #openStream(URL, CancellationToken)}, with every attempt that goes out over
+     * the network waiting for the gate first.
+     *
+     * @param gate lets the attempts go, or null to make them right away
+     */
+    public InputStream openStream(URL url, CancellationToken token, AttemptGate gate) throws IOException {
+        if (token != null) {
+            token.throwIfCanceled();
+        }
+        String key = url.toString();
+        NewsResponseCache.Entry entry = mCache != null ? mCache.get(key) : null;
+
+        // A fresh entry is served without asking the server at all
+        EventListener listener = mEventListener;
+        if (entry != null && entry.isFresh(System.currentTimeMillis())) {
+            if (listener != null) {
+                listener.onResponse(url, token, 0, LoadMetrics.CACHE_HIT);
+            }
+            return entry.openBody();
+        }
+
+        RetryPolicy retryPolicy = mRetryPolicy;
+        CircuitBreaker circuitBreaker = mCircuitBreaker;
+        for (int attempt = 1; ; attempt++) {
+            if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+                return openStale(entry, new IOException("Circuit open, not requesting " + url));
+            }
+            if (gate != null) {
+                gate.awaitAttempt(url, attempt, token);
+            }
+            try {
+                InputStream body = request(url, entry, token, listener);
+                if (circuitBreaker != null) {
+                    circuitBreaker.recordSuccess();
+                }
+                return body;
+            } catch (IOException e) {
+                if (token != null && token.isCanceled()) {
+                    throw e;
+                }
+                boolean upstreamFailure = isUpstreamFailure(e);
+                if (circuitBreaker != null) {
+                    // A client error still means the upstream is answering
+                    if (upstreamFailure) {
+                        circuitBreaker.recordFailure();
+                    } else {
+                        circuitBreaker.recordSuccess();
+                    }
+                }
+                long delay = RetryPolicy.NO_RETRY;
+                if (retryPolicy != null && upstreamFailure) {
+                    long retryAfter = e instanceof HttpStatusException
+                            ? ((HttpStatusException) e).getRetryAfterMillis() : -1;
+                    delay = retryPolicy.delayMillis(attempt, retryAfter);
+                }
+                if (!upstreamFailure) {
+                    throw e;
+                }
+                if (delay == RetryPolicy.NO_RETRY) {
+                    return openStale(entry, e);
+                }
+                sleep(delay, token);
+            }
+        }
+    }
+
+    /**
+     * Make a single request and return its body. Canceling the token disconnects it until
+     * it failed or its body was closed.
+     */
+    private InputStream request(URL url, NewsResponseCache.Entry entry, CancellationToken token,
+                                EventListener listener) throws IOException {
+        String key = url.toString();
+        ConnectionPool pool = mConnectionPool;
+        final HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        boolean counted = setSocketFactory(urlConnection, pool);
+        Runnable onCancel = null;
+        if (token != null) {
+            onCancel = new Runnable() {
+                @Override
+                public void run() {
+                    urlConnection.disconnect();
+                }
+            };
+            token.addOnCancelListener(onCancel);
+        }
+        // The body removes the listener when it is closed
+        boolean bodyOpened = false;
+        try {
+            urlConnection.setReadTimeout(mReadTimeout /* milliseconds */);
+            urlConnection.setConnectTimeout(mConnectTimeout /* milliseconds */);
+            urlConnection.setRequestMethod("GET");
+            urlConnection.setUseCaches(false);
+            urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+            if (entry != null) {
+                if (entry.getEtag() != null) {
+                    urlConnection.setRequestProperty("If-None-Match", entry.getEtag());
+                }
+                if (entry.getLastModified() != null) {
+                    urlConnection.setRequestProperty("If-Modified-Since", entry.getLastModified());
+                }
+            }
+            if (counted) {
+                pool.requestStarted();
+            }
+            long connectStart = System.nanoTime();
+            urlConnection.connect();
+            long firstByteStart = System.nanoTime();
+            // A stale kept-alive connection is only noticed, and replaced, once the request is sent
+            int responseCode = urlConnection.getResponseCode();
+            if (counted) {
+                pool.requestConnected(url);
+            }
+            if (listener != null) {
+                listener.onConnected(url, token, firstByteStart - connectStart);
+                listener.onResponse(url, token, System.nanoTime() - firstByteStart,
+                        responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null
+                                ? LoadMetrics.CACHE_REVALIDATED : LoadMetrics.CACHE_MISS);
+            }
+
+            String cacheControl = urlConnection.getHeaderField("Cache-Control");
+            long expiresAt = System.currentTimeMillis() + maxAgeMillis(cacheControl);
+
+            // The cached body is still valid, only its validators and expiry time change
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+                entry = mCache.update(entry, urlConnection.getHeaderField("ETag"),
+                        urlConnection.getHeaderField("Last-Modified"), expiresAt);
+                release(urlConnection, url, pool);
+                return entry.openBody();
+            }
+
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                HttpStatusException error = new HttpStatusException(responseCode, RetryPolicy.parseRetryAfter(
+                        urlConnection.getHeaderField("Retry-After"), System.currentTimeMillis()));
+                // The connection can still be used for the next attempt
+                release(urlConnection, url, pool);
+                throw error;
+            }
+
+            // Bytes are limited and counted as received, before they are decompressed
+            InputStream received = urlConnection.getInputStream();
+            BandwidthLimiter limiter = mBandwidthLimiter;
+            if (limiter != null) {
+                received = limiter.limit(received, token);
+            }
+            CountingInputStream wire = new CountingInputStream(received);
+            InputStream body = wire;
+            if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+                body = new GZIPInputStream(body);
+            }
+            NewsResponseCache.Editor editor = null;
+            if (mCache != null && mCache.accepts(key) && !isNoStore(cacheControl)) {
+                editor = mCache.edit(key, urlConnection.getHeaderField("ETag"),
+                        urlConnection.getHeaderField("Last-Modified"), expiresAt);
+            }
+            InputStream stream = new ConnectionInputStream(body, urlConnection, editor, url, token, onCancel, wire,
+                    listener, pool);
+            bodyOpened = true;
+            return stream;
+        } catch (HttpStatusException e) {
+            // Its connection was released already
+            throw e;
+        } catch (IOException e) {
+            urlConnection.disconnect();
+            if (token != null) {
+                // Report an aborted request as such, not as the socket error it caused
+                token.throwIfCanceled();
+            }
+            throw e;
+        } finally {
+            if (token != null && !bodyOpened) {
+                token.removeOnCancelListener(onCancel);
+            }
+        }
+    }
+
+    /**
+     * Read what is left of the response and close it without disconnecting, so its connection
+     * goes back to the keep-alive pool. Disconnects if that fails or too much is left.
+     */
+    private static void release(HttpURLConnection urlConnection, URL url, ConnectionPool pool) {
+        InputStream rest;
+        try {
+            rest = urlConnection.getInputStream();
+        } catch (IOException e) {
+            // Error codes have their body here, if any
+            rest = urlConnection.getErrorStream();
+        }
+        if (rest == null || drain(rest)) {
+            if (pool != null) {
+                pool.release(url);
+            }
+        } else {
+            urlConnection.disconnect();
+        }
+    }
+
+    /**
+     * Read the stream to its end and close it.
+     *
+     * @return false if it failed or more than MAX_DRAIN_BYTES were left
+     */
+    private static boolean drain(InputStream in) {
+        try {
+            byte[] buffer = new byte[8192];
+            long drained = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                drained += read;
+                if (drained > MAX_DRAIN_BYTES) {
+                    return false;
+                }
+            }
+            in.close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the max-age directive of the Cache-Control header in milliseconds, or 0 if
+     * the response must be revalidated every time.
+     */
+    static long maxAgeMillis(String cacheControl) {
+        if (cacheControl == null) {
+            return 0;
+        }
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim();
+            if (directive.equalsIgnoreCase("no-cache") || directive.equalsIgnoreCase("no-store")) {
+                return 0;
+            }
+        }
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim();
+            if (directive.regionMatches(true, 0, "max-age=", 0, 8)) {
+                try {
+                    return Math.max(0, Long.parseLong(directive.substring(8).trim())) * 1000;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isNoStore(String cacheControl) {
+        return cacheControl != null && cacheControl.toLowerCase().contains("no-store");
+    }
+
+    /**
+     * Returns true if the failure says the upstream is unavailable, rather than the request
+     * being wrong: network errors, timeouts and the temporary error codes.
+     */
+    private static boolean isUpstreamFailure(IOException e) {
+        if (e instanceof HttpStatusException) {
+            return RetryPolicy.isRetryable(((HttpStatusException) e).getResponseCode());
+        }
+        return true;
+    }
+
+    /**
+     * Returns the body of the cached entry, even if it is stale, as the last good response
+     * when the upstream is failing. Throws the failure if nothing is cached.
+     */
+    private static InputStream openStale(NewsResponseCache.Entry entry, IOException failure) throws IOException {
+        if (entry == null) {
+            throw failure;
+        }
+        return entry.openBody();
+    }
+
+    private static void sleep(long millis, CancellationToken token) throws InterruptedIOException {
+        if (token != null) {
+            token.sleep(millis);
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted");
+        }
+    }
+
+    /**
+     * The server answered with an error code
+     */
+    public static class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int mResponseCode;
+        private final long mRetryAfterMillis;
+
+        public HttpStatusException(int responseCode, long retryAfterMillis) {
+            super("Error response code: " + responseCode);
+            mResponseCode = responseCode;
+            mRetryAfterMillis = retryAfterMillis;
+        }
+
+        public int getResponseCode() {
+            return mResponseCode;
+        }
+
+        /**
+         * Returns the wait asked for by the Retry-After header, or -1 if there was none
+         */
+        public long getRetryAfterMillis() {
+            return mRetryAfterMillis;
+        }
+    }
+
+    /**
+     * Counts the bytes read through it
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Response body that copies everything it reads into the cache. When closed, the rest
+     * of the response is read so the connection can be reused, or it is disconnected. The
+     * copy is only committed if the whole body was received.
+     */
+    private static class ConnectionInputStream extends FilterInputStream {
+        private final HttpURLConnection mConnection;
+        private final NewsResponseCache.Editor mEditor;
+        private final OutputStream mCacheOut;
+        private final URL mUrl;
+        private final CancellationToken mToken;
+        private final Runnable mOnCancel;
+        private final CountingInputStream mWire;
+        private final EventListener mListener;
+        private final ConnectionPool mPool;
+        private boolean mCacheFailed;
+        private boolean mClosed;
+
+        ConnectionInputStream(InputStream in, HttpURLConnection connection, NewsResponseCache.Editor editor,
+                              URL url, CancellationToken token, Runnable onCancel, CountingInputStream wire,
+                              EventListener listener, ConnectionPool pool) {
+            super(in);
+            mConnection = connection;
+            mEditor = editor;
+            mCacheOut = editor != null ? editor.getOutputStream() : null;
+            mUrl = url;
+            mToken = token;
+            mOnCancel = onCancel;
+            mWire = wire;
+            mListener = listener;
+            mPool = pool;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                copyToCache(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                copyToCache(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes still have to reach the cache
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void copyToCache(byte[] buffer, int offset, int count) {
+            if (mCacheOut == null || mCacheFailed) {
+                return;
+            }
+            try {
+                mCacheOut.write(buffer, offset, count);
+            } catch (IOException e) {
+                mCacheFailed = true;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            try {
+                if (mEditor != null) {
+                    commitToCache();
+                }
+            } finally {
+                // What the parser left of the body is read from the wire, without decompressing
+                boolean reusable = drain(mWire);
+                super.close();
+                // A later cancel must not disconnect the connection once another request uses it
+                if (mToken != null) {
+                    mToken.removeOnCancelListener(mOnCancel);
+                }
+                if (reusable) {
+                    if (mPool != null) {
+                        mPool.release(mUrl);
+                    }
+                } else {
+                    mConnection.disconnect();
+                }
+                if (mListener != null) {
+                    mListener.onBodyClosed(mUrl, mToken, mWire.mCount);
+                }
+            }
+        }
+
+        private void commitToCache() {
+            try {
+                // Read whatever the parser left behind so the cached body is complete
+                byte[] buffer = new byte[8192];
+                while (read(buffer, 0, buffer.length) != -1) {
+                    // copied by read()
+                }
+                if (mCacheFailed) {
+                    mEditor.abort();
+                } else {
+                    mEditor.commit();
+                }
+            } catch (IOException e) {
+                mEditor.abort();
+            }
+        }
+    }
+}
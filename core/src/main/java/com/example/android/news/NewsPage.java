@@ -0,0 +1,52 @@
+package com.example.android.news;
+
+import java.util.List;
+
+/**
+ * One page of a guardianapis search: its results and where it stands in the whole search.
+ */
+public class NewsPage {
+
+    private final List<TechNews> mNews;
+    private final int mCurrentPage;
+    private final int mPages;
+    private final int mTotal;
+    private final boolean mComplete;
+
+    public NewsPage(List<TechNews> news, int currentPage, int pages, int total, boolean complete) {
+        mNews = news;
+        mCurrentPage = currentPage;
+        mPages = pages;
+        mTotal = total;
+        mComplete = complete;
+    }
+
+    /**
+     * Getters
+     */
+    public List<TechNews> getNews() {
+        return mNews;
+    }
+    public int getCurrentPage() {
+        return mCurrentPage;
+    }
+    /**
+     * Returns the number of pages of the search, 0 if the response didn't say
+     */
+    public int getPages() {
+        return mPages;
+    }
+    /**
+     * Returns the number of results of the search, 0 if the response didn't say
+     */
+    public int getTotal() {
+        return mTotal;
+    }
+
+    /**
+     * Returns false if the response was malformed and only the news before the error were read
+     */
+    public boolean isComplete() {
+        return mComplete;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.android.news;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses guardianapis search responses into {@link TechNews}. Uses Gson's streaming reader,
+ * which has the same API as android.util.JsonReader, so it runs on the JVM as well as on
+ * the device.
+ */
+public class NewsParser {
+
+    /**
+     * Author of the news without a contributor tag
+     */
+    static final String UNKNOWN_AUTHOR = "Author: unknown";
+
+    private NewsParser() {
+    }
+
+    /**
+     * Return the page built up in a single pass over the JSON response. Objects are created
+     * while the stream is read, fields we don't use are skipped without being materialized,
+     * and the body is never held as one String.
+     */
+    public static NewsPage parse(InputStream inputStream) throws IOException {
+        // Create an empty ArrayList that we can start adding news to
+        List<TechNews> newsList = new ArrayList<>();
+        int[] paging = new int[3];
+        boolean complete = true;
+
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        // Malformed JSON throws an IllegalStateException or a MalformedJsonException.
+        // Catch it and keep the news parsed so far.
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("response")) {
+                    readResponse(reader, newsList, paging);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | MalformedJsonException e) {
+            complete = false;
+        }
+        return new NewsPage(newsList, paging[0], paging[1], paging[2], complete);
+    }
+
+    /**
+     * Returns the HTML body of a guardianapis single item response, requested with
+     * show-fields=body, or null if the response has none.
+     */
+    public static String parseBody(InputStream inputStream) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        try {
+            return readObjectPath(reader, "response", "content", "fields", "body");
+        } catch (IllegalStateException e) {
+            throw new MalformedJsonException(e.getMessage());
+        }
+    }
+
+    /**
+     * Follow the names through nested objects and return the string at their end,
+     * skipping everything else.
+     */
+    private static String readObjectPath(JsonReader reader, String... names) throws IOException {
+        String value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals(names[0]) || value != null) {
+                reader.skipValue();
+            } else if (names.length == 1) {
+                value = reader.nextString();
+            } else {
+                value = readObjectPath(reader, Arrays.copyOfRange(names, 1, names.length));
+            }
+        }
+        reader.endObject();
+        return value;
+    }
+
+    /**
+     * Read the "response" object, add every entry of its "results" array to the list and
+     * store its current page, page count and total in paging.
+     */
+    private static void readResponse(JsonReader reader, List<TechNews> newsList, int[] paging)
+            throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "results":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        newsList.add(readTechNews(reader));
+                    }
+                    reader.endArray();
+                    break;
+                case "currentPage":
+                    paging[0] = reader.nextInt();
+                    break;
+                case "pages":
+                    paging[1] = reader.nextInt();
+                    break;
+                case "total":
+                    paging[2] = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read a single result object and create a {@link TechNews} from it.
+     */
+    private static TechNews readTechNews(JsonReader reader) throws IOException {
+        String id = null;
+        String section = null;
+        String sectionId = null;
+        String title = null;
+        long publishedAt = NewsDates.INVALID;
+        String author = null;
+        String url = null;
+        String thumbnailUrl = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = reader.nextString();
+                    break;
+                case "sectionId":
+                    sectionId = reader.nextString();
+                    break;
+                case "sectionName":
+                    section = reader.nextString();
+                    break;
+                case "webTitle":
+                    title = reader.nextString();
+                    break;
+                case "webPublicationDate":
+                    publishedAt = NewsDates.parseIso8601(reader.nextString());
+                    break;
+                case "webUrl":
+                    url = reader.nextString();
+                    break;
+                case "tags":
+                    author = readAuthor(reader);
+                    break;
+                case "fields":
+                    thumbnailUrl = readThumbnail(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (author == null) {
+            author = UNKNOWN_AUTHOR;
+        }
+        // Dates are parsed and formatted once here, on the loading thread
+        return new TechNews(id, section, title, publishedAt, NewsDates.formatForDisplay(publishedAt),
+                author, url, thumbnailUrl, sectionId);
+    }
+
+    /**
+     * Read the "fields" object, requested with show-fields=thumbnail, and return the
+     * thumbnail URL, or null if the news has no thumbnail.
+     */
+    private static String readThumbnail(JsonReader reader) throws IOException {
+        String thumbnailUrl = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("thumbnail")) {
+                thumbnailUrl = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return thumbnailUrl;
+    }
+
+    /**
+     * Read the "tags" array and return the webTitle of the first contributor,
+     * or null if there are no tags.
+     */
+    private static String readAuthor(JsonReader reader) throws IOException {
+        String author = null;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (author != null) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("webTitle")) {
+                    author = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return author;
+    }
+}
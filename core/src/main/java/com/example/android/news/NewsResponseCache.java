@@ -0,0 +1,363 @@
+package com.example.android.news;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Disk backed cache of HTTP response bodies, keyed by the request URL.
+ * Every entry keeps the validators (ETag and Last-Modified) needed for a conditional
+ * request and the time until which it may be served without asking the server.
+ * <p>
+ * Like the DiskLruCache of the app, reading an entry touches its files, and once the cache grows
+ * past its size the least recently used files are deleted. An entry whose metadata or body
+ * was deleted is gone. Every body gets a file name of its own, which the metadata names, so
+ * a new body is only published by replacing the metadata and a crash can't pair a body with
+ * the validators of another.
+ */
+public class NewsResponseCache {
+
+    private static final int VERSION = 2;
+    private static final String META_SUFFIX = ".meta";
+    private static final String BODY_SUFFIX = ".body";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * Parameter of the requests for the news since a day, see {@link DeltaFetcher}
+     */
+    private static final String FROM_DATE_PARAMETER = "from-date";
+
+    /**
+     * Directory holding the cached entries
+     */
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    /**
+     * Total size of the cached files, or -1 until the directory was scanned; guarded by this
+     */
+    private long mSize = -1;
+
+    /**
+     * @param maxBytes size of the cached files the least recently used ones are deleted at
+     */
+    public NewsResponseCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns false for URLs whose responses aren't worth keeping because they won't be
+     * requested again: the delta syncs ask for the news since the day of the newest one known,
+     * which moves on with every sync.
+     */
+    public boolean accepts(String url) {
+        return !FeedUrls.parameters(url).containsKey(FROM_DATE_PARAMETER);
+    }
+
+    /**
+     * Returns the cached entry for the given URL, or null if there is none.
+     */
+    public synchronized Entry get(String url) {
+        File metaFile = new File(mDirectory, keyFor(url) + META_SUFFIX);
+        Entry entry = readMeta(metaFile, url);
+        if (entry == null || !entry.bodyFile.exists()) {
+            return null;
+        }
+        // Last modified time is the LRU order
+        long now = System.currentTimeMillis();
+        metaFile.setLastModified(now);
+        entry.bodyFile.setLastModified(now);
+        return entry;
+    }
+
+    /**
+     * Returns the entry described by the metadata file, or null if it can't be read or
+     * belongs to another URL.
+     */
+    private Entry readMeta(File metaFile, String url) {
+        if (!metaFile.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(metaFile));
+            if (in.readInt() != VERSION || !in.readUTF().equals(url)) {
+                return null;
+            }
+            String etag = emptyToNull(in.readUTF());
+            String lastModified = emptyToNull(in.readUTF());
+            long expiresAt = in.readLong();
+            File bodyFile = new File(mDirectory, in.readUTF());
+            return new Entry(url, etag, lastModified, expiresAt, bodyFile);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Starts writing a new body for the URL. The entry only replaces the previous one
+     * once {@link Editor#commit()} is called.
+     */
+    public Editor edit(String url, String etag, String lastModified, long expiresAt) throws IOException {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            throw new IOException("Cannot create cache directory " + mDirectory);
+        }
+        return new Editor(url, etag, lastModified, expiresAt);
+    }
+
+    /**
+     * Stores new validators and expiry time for an entry whose body is still valid,
+     * as after a 304 Not Modified response.
+     */
+    public synchronized Entry update(Entry entry, String etag, String lastModified, long expiresAt) {
+        Entry updated = new Entry(entry.url,
+                etag != null ? etag : entry.etag,
+                lastModified != null ? lastModified : entry.lastModified,
+                expiresAt, entry.bodyFile);
+        try {
+            writeMeta(updated);
+        } catch (IOException e) {
+            // The old metadata still describes the body, so it is safe to keep it
+        }
+        return updated;
+    }
+
+    /**
+     * Replace the metadata of the entry's URL in one rename.
+     */
+    private void writeMeta(Entry entry) throws IOException {
+        String key = keyFor(entry.url);
+        File tmpFile = new File(mDirectory, key + META_SUFFIX + TMP_SUFFIX);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(tmpFile));
+        try {
+            out.writeInt(VERSION);
+            out.writeUTF(entry.url);
+            out.writeUTF(nullToEmpty(entry.etag));
+            out.writeUTF(nullToEmpty(entry.lastModified));
+            out.writeLong(entry.expiresAt);
+            out.writeUTF(entry.bodyFile.getName());
+        } finally {
+            out.close();
+        }
+        File metaFile = new File(mDirectory, key + META_SUFFIX);
+        long replaced = metaFile.length();
+        renameOrThrow(tmpFile, metaFile);
+        if (mSize >= 0) {
+            mSize += metaFile.length() - replaced;
+        }
+    }
+
+    /**
+     * Returns the total size of the cached files in bytes.
+     */
+    public synchronized long size() {
+        if (mSize < 0) {
+            mSize = 0;
+            for (File file : listEntryFiles()) {
+                mSize += file.length();
+            }
+        }
+        return mSize;
+    }
+
+    /**
+     * Delete the least recently used files once the cache is too big. Bodies left without
+     * metadata by a crash are never touched, so they go first.
+     */
+    private void trim() {
+        if (size() <= mMaxBytes) {
+            return;
+        }
+        File[] files = listEntryFiles();
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            // Read once, the times must not change while sorting
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long difference = lastModified[a] - lastModified[b];
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        // Trim below the limit, so not every commit has to list the directory again
+        long target = mMaxBytes - mMaxBytes / 4;
+        for (int i = 0; i < order.length && mSize > target; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) {
+                mSize -= length;
+            }
+        }
+    }
+
+    private File[] listEntryFiles() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(META_SUFFIX) || file.getName().endsWith(BODY_SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    private static void renameOrThrow(File from, File to) throws IOException {
+        if (!from.renameTo(to)) {
+            to.delete();
+            if (!from.renameTo(to)) {
+                throw new IOException("Cannot rename " + from + " to " + to);
+            }
+        }
+    }
+
+    /**
+     * Hex encoded MD5 of the URL, so any URL maps to a valid file name.
+     */
+    public static String keyFor(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(url.getBytes(Charset.forName("UTF-8")));
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16));
+                key.append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * A cached response body together with its validators.
+     */
+    public static class Entry {
+        final String url;
+        final String etag;
+        final String lastModified;
+        final long expiresAt;
+        final File bodyFile;
+
+        Entry(String url, String etag, String lastModified, long expiresAt, File bodyFile) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+            this.bodyFile = bodyFile;
+        }
+
+        /**
+         * Returns true if the entry may be served without revalidating it with the server.
+         */
+        public boolean isFresh(long now) {
+            return now < expiresAt;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public InputStream openBody() throws IOException {
+            return new FileInputStream(bodyFile);
+        }
+    }
+
+    /**
+     * Writes a new body for an entry into a temporary file.
+     */
+    public class Editor {
+        private final Entry mEntry;
+        private final File mTmpFile;
+        private final OutputStream mOut;
+
+        private Editor(String url, String etag, String lastModified, long expiresAt) throws IOException {
+            String key = keyFor(url);
+            mTmpFile = File.createTempFile(key, TMP_SUFFIX, mDirectory);
+            // The unique name of the temporary file, so the previous body stays until replaced
+            String tmpName = mTmpFile.getName();
+            File bodyFile = new File(mDirectory,
+                    tmpName.substring(0, tmpName.length() - TMP_SUFFIX.length()) + BODY_SUFFIX);
+            mEntry = new Entry(url, etag, lastModified, expiresAt, bodyFile);
+            mOut = new BufferedOutputStream(new FileOutputStream(mTmpFile));
+        }
+
+        public OutputStream getOutputStream() {
+            return mOut;
+        }
+
+        /**
+         * Publishes the written body and its metadata. The body is in place before the
+         * metadata naming it replaces the previous one, whose body is deleted afterwards.
+         */
+        public Entry commit() throws IOException {
+            mOut.close();
+            synchronized (NewsResponseCache.this) {
+                File metaFile = new File(mDirectory, keyFor(mEntry.url) + META_SUFFIX);
+                Entry previous = readMeta(metaFile, mEntry.url);
+                renameOrThrow(mTmpFile, mEntry.bodyFile);
+                if (mSize >= 0) {
+                    mSize += mEntry.bodyFile.length();
+                }
+                writeMeta(mEntry);
+                if (previous != null) {
+                    long length = previous.bodyFile.length();
+                    if (previous.bodyFile.delete() && mSize >= 0) {
+                        mSize -= length;
+                    }
+                }
+                trim();
+            }
+            return mEntry;
+        }
+
+        /**
+         * Drops the written body, leaving any previous entry untouched.
+         */
+        public void abort() {
+            closeQuietly(mOut);
+            mTmpFile.delete();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.android.news;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Gets the response body of a guardianapis request. {@link NewsHttpClient} does it over
+ * HTTP; tests and the crawler's benchmarks can answer from memory instead.
+ */
+public interface NewsTransport {
+
+    /**
+     * Returns the response body for the given URL. The caller must close the returned stream.
+     *
+     * @param token cancels the request, or null if it can't be canceled
+     * @throws IOException if there is no body for the URL
+     */
+    InputStream openStream(URL url, CancellationToken token) throws IOException;
+}
@@ -0,0 +1,167 @@
+package com.example.android.news;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs several feed requests at once on a bounded pool and merges their results by
+ * publication date as they arrive. An article that appears in more than one feed is only
+ * kept once. The wall-clock time of all requests together approaches that of the slowest
+ * one, and every result is handed out merged as soon as it arrived.
+ */
+public class ParallelNewsFetcher {
+
+    /**
+     * Performs one request
+     */
+    public interface Fetcher {
+        /**
+         * @return the news of the feed, or null if the request failed
+         */
+        List<TechNews> fetch(String url, CancellationToken token);
+    }
+
+    /**
+     * Receives the merged news after every feed that arrived, on the calling thread.
+     */
+    public interface Listener {
+        void onPartialResult(List<TechNews> merged, int done, int total);
+    }
+
+    /**
+     * Sorts the same way as the store, by date and then by article id
+     */
+    private static final Comparator<TechNews> OLDEST_FIRST = new Comparator<TechNews>() {
+        @Override
+        public int compare(TechNews a, TechNews b) {
+            if (a.getPublishedAt() != b.getPublishedAt()) {
+                return a.getPublishedAt() < b.getPublishedAt() ? -1 : 1;
+            }
+            return a.getId().compareTo(b.getId());
+        }
+    };
+
+    private static final Comparator<TechNews> NEWEST_FIRST = Collections.reverseOrder(OLDEST_FIRST);
+
+    private final Executor mExecutor;
+
+    /**
+     * @param maxParallel maximum number of requests running at the same time
+     */
+    public ParallelNewsFetcher(int maxParallel) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxParallel, maxParallel,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        // Don't keep idle threads around between refreshes
+        executor.allowCoreThreadTimeOut(true);
+        mExecutor = executor;
+    }
+
+    /**
+     * Fetch all URLs and return their merged news, or null if every request failed.
+     * Blocks until all requests are done or the token is canceled.
+     *
+     * @param token    cancels the requests still running, or null
+     * @param listener receives the partial results, or null
+     */
+    public List<TechNews> fetchAll(List<String> urls, boolean newestFirst, final Fetcher fetcher,
+                                   final CancellationToken token, Listener listener) {
+        Comparator<TechNews> order = order(newestFirst);
+        Set<String> seenIds = new HashSet<>();
+        List<TechNews> merged = null;
+
+        // A single feed doesn't need another thread
+        if (urls.size() == 1) {
+            List<TechNews> techNews = fetcher.fetch(urls.get(0), token);
+            return techNews != null ? merge(null, techNews, order, seenIds) : null;
+        }
+
+        CompletionService<List<TechNews>> completion = new ExecutorCompletionService<>(mExecutor);
+        List<Future<List<TechNews>>> futures = new ArrayList<>(urls.size());
+        for (final String url : urls) {
+            futures.add(completion.submit(new Callable<List<TechNews>>() {
+                @Override
+                public List<TechNews> call() {
+                    if (token != null && token.isCanceled()) {
+                        return null;
+                    }
+                    return fetcher.fetch(url, token);
+                }
+            }));
+        }
+        try {
+            for (int done = 1; done <= urls.size(); done++) {
+                List<TechNews> techNews = completion.take().get();
+                if (techNews == null) {
+                    continue;
+                }
+                merged = merge(merged, techNews, order, seenIds);
+                if (listener != null && done < urls.size()) {
+                    listener.onPartialResult(Collections.unmodifiableList(merged), done, urls.size());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            // Requests still running are only needed by this call
+            for (Future<List<TechNews>> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Returns a new list with the news of both lists in the given order. News whose id is
+     * already in seenIds are dropped, the ids of added news are added to it.
+     *
+     * @param merged   news merged so far, already in order, or null
+     * @param techNews news to add, in any order
+     */
+    static List<TechNews> merge(List<TechNews> merged, List<TechNews> techNews,
+                                Comparator<TechNews> order, Set<String> seenIds) {
+        List<TechNews> added = new ArrayList<>(techNews.size());
+        for (TechNews news : techNews) {
+            if (seenIds.add(news.getId())) {
+                added.add(news);
+            }
+        }
+        Collections.sort(added, order);
+        if (merged == null || merged.isEmpty()) {
+            return added;
+        }
+
+        // Both lists are sorted, so a single pass merges them
+        List<TechNews> result = new ArrayList<>(merged.size() + added.size());
+        int i = 0;
+        int j = 0;
+        while (i < merged.size() && j < added.size()) {
+            if (order.compare(merged.get(i), added.get(j)) <= 0) {
+                result.add(merged.get(i++));
+            } else {
+                result.add(added.get(j++));
+            }
+        }
+        result.addAll(merged.subList(i, merged.size()));
+        result.addAll(added.subList(j, added.size()));
+        return result;
+    }
+
+    static Comparator<TechNews> order(boolean newestFirst) {
+        return newestFirst ? NEWEST_FIRST : OLDEST_FIRST;
+    }
+}
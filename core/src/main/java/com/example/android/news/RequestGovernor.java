@@ -0,0 +1,381 @@
+package com.example.android.news;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the requests made with one API key within its quotas. Every attempt that goes out
+ * over the network takes a token from a per-second and a per-day bucket and waits in line
+ * while they are empty, so bursts from paging, refreshes and settings changes queue up on
+ * the device instead of being answered with 429s. Requests the user waits for go first;
+ * background work may not use the last part of the daily quota, so it can't lock the user
+ * out for the rest of the day. The daily bucket is kept across processes through a
+ * {@link QuotaStore}.
+ * <p>
+ * A feed request takes the token of its first attempt with its turn in {@link #fetch}, and
+ * the token of every retry through the {@link #retryGate(int)} of its client. Callers answer
+ * what they can from a cache or a running request before they wait for a turn.
+ * <p>
+ * Feed requests waiting in line that a {@link Batcher} can answer with a single request are
+ * combined when the first of them gets its turn, and take a single token.
+ */
+public class RequestGovernor {
+
+    /**
+     * Requests for what is on screen or about to be
+     */
+    public static final int PRIORITY_USER = 0;
+    /**
+     * Periodic syncs
+     */
+    public static final int PRIORITY_BACKGROUND = 1;
+    /**
+     * Speculative downloads, like article bodies read later
+     */
+    public static final int PRIORITY_PREFETCH = 2;
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Longest wait before checking the cancellation of a waiting request again
+     */
+    private static final long MAX_WAIT_MILLIS = 100;
+
+    /**
+     * Combines feed requests into one
+     */
+    public interface Batcher {
+        /**
+         * Returns the URL of a single request answering both URLs, or null if they can't be
+         * combined. The first URL may already be a combination.
+         */
+        String combine(String combinedUrl, String url);
+
+        /**
+         * Returns the news of the combined request that answer the URL, or null if they may
+         * not be all of them, in which case the URL is requested on its own.
+         */
+        List<TechNews> split(String combinedUrl, List<TechNews> combined, String url);
+    }
+
+    /**
+     * Keeps the daily quota across processes, so restarts don't refill it
+     */
+    public interface QuotaStore {
+        /**
+         * Save the tokens left in the daily bucket at the given time.
+         */
+        void save(double tokens, long time);
+    }
+
+    private final SyncPolicy.Clock mClock;
+    private final Bucket mSecondBucket;
+    private final Bucket mDayBucket;
+    private final double mBackgroundReserve;
+    private final Batcher mBatcher;
+
+    /**
+     * Waiting requests, in the order they get their turn, guarded by this
+     */
+    private final PriorityQueue<Ticket> mQueue = new PriorityQueue<>();
+    private long mSequence;
+    private QuotaStore mQuotaStore;
+
+    /**
+     * @param perSecond requests allowed per second, also the largest burst
+     * @param perDay    requests allowed per day
+     * @param reserve   part of the daily quota kept for {@link #PRIORITY_USER}, like 0.1
+     * @param batcher   combines waiting feed requests, or null to never combine them
+     */
+    public RequestGovernor(SyncPolicy.Clock clock, int perSecond, int perDay, double reserve, Batcher batcher) {
+        mClock = clock;
+        long now = clock.currentTimeMillis();
+        mSecondBucket = new Bucket(perSecond, perSecond / 1000.0, now);
+        mDayBucket = new Bucket(perDay, perDay / (double) MILLIS_PER_DAY, now);
+        mBackgroundReserve = perDay * reserve;
+        mBatcher = batcher;
+    }
+
+    /**
+     * Continue the daily bucket from the tokens an earlier process left in it at the given
+     * time, refilled since, and save it to the store after every request from now on. Requests
+     * this process made already still count.
+     */
+    public synchronized void restoreDayQuota(double tokens, long time, QuotaStore store) {
+        long now = mClock.currentTimeMillis();
+        // A time in the future, after the clock was set back, counts from now
+        mDayBucket.restore(tokens, Math.min(time, now), now);
+        mQuotaStore = store;
+        store.save(mDayBucket.mTokens, now);
+    }
+
+    /**
+     * Wait for the turn of a request that can't be combined, like an article body.
+     *
+     * @param token aborts the wait, or null
+     * @return false if the token was canceled while waiting
+     */
+    public boolean acquire(int priority, CancellationToken token) {
+        Ticket ticket = enqueue(null, priority, true);
+        return awaitTurn(ticket, token);
+    }
+
+    /**
+     * Returns the gate for the network attempts of a request that got its turn here. The
+     * turn paid for the first attempt; every retry waits for a turn and token of its own at
+     * the request's priority, like any other request.
+     */
+    public NewsHttpClient.AttemptGate retryGate(final int priority) {
+        return new NewsHttpClient.AttemptGate() {
+            @Override
+            public void awaitAttempt(URL url, int attempt, CancellationToken token) throws IOException {
+                if (attempt > 1 && !acquire(priority, token)) {
+                    throw new InterruptedIOException("Canceled while waiting to retry " + url);
+                }
+            }
+        };
+    }
+
+    /**
+     * Fetch the feed at its turn, combined with other waiting feeds if possible.
+     *
+     * @param token cancels the wait and the request, or null
+     * @return the news of the feed, or null if the request failed or was canceled
+     */
+    public List<TechNews> fetch(String url, int priority, CancellationToken token,
+                                ParallelNewsFetcher.Fetcher fetcher) {
+        Ticket ticket = enqueue(url, priority, false);
+        while (true) {
+            if (!awaitTurn(ticket, token)) {
+                return null;
+            }
+            if (ticket.mDone) {
+                // Answered by a request combined with this one
+                return ticket.mResult;
+            }
+            if (ticket.mBatch == null) {
+                return fetcher.fetch(url, token);
+            }
+            List<TechNews> result = fetcher.fetch(ticket.mBatchUrl, token);
+            deliver(ticket.mBatch, ticket.mBatchUrl, result, token != null && token.isCanceled());
+            if (result == null) {
+                return null;
+            }
+            List<TechNews> share = mBatcher.split(ticket.mBatchUrl, result, url);
+            if (share != null) {
+                return share;
+            }
+            // The combined request may have left out news of this feed
+            ticket = enqueue(url, priority, true);
+        }
+    }
+
+    private synchronized Ticket enqueue(String url, int priority, boolean alone) {
+        Ticket ticket = new Ticket(url, priority, mSequence++);
+        ticket.mAlone = alone;
+        mQueue.add(ticket);
+        notifyAll();
+        return ticket;
+    }
+
+    /**
+     * Block until the ticket's request may run. A feed request answered by another one
+     * returns with mDone set.
+     *
+     * @return false if the token was canceled while waiting
+     */
+    private synchronized boolean awaitTurn(Ticket ticket, CancellationToken token) {
+        try {
+            while (!ticket.mDone) {
+                if (token != null && token.isCanceled()) {
+                    ticket.mAbandoned = true;
+                    return false;
+                }
+                long waitMillis = MAX_WAIT_MILLIS;
+                if (ticket.mBatched == null && mQueue.peek() == ticket) {
+                    long now = mClock.currentTimeMillis();
+                    double minimum = ticket.mPriority == PRIORITY_USER ? 1 : 1 + mBackgroundReserve;
+                    long untilAvailable = Math.max(mSecondBucket.millisUntil(1, now),
+                            mDayBucket.millisUntil(minimum, now));
+                    if (untilAvailable == 0) {
+                        mSecondBucket.take(now);
+                        mDayBucket.take(now);
+                        if (mQuotaStore != null) {
+                            mQuotaStore.save(mDayBucket.mTokens, now);
+                        }
+                        mQueue.poll();
+                        collectBatch(ticket);
+                        notifyAll();
+                        return true;
+                    }
+                    waitMillis = Math.min(waitMillis, untilAvailable);
+                }
+                wait(waitMillis);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ticket.mAbandoned = true;
+            return false;
+        } finally {
+            if (mQueue.remove(ticket)) {
+                // Canceled while waiting, the next one may go
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Move the waiting feed requests that can be combined with the ticket's from the queue
+     * into its batch.
+     */
+    private void collectBatch(Ticket ticket) {
+        if (mBatcher == null || ticket.mAlone) {
+            return;
+        }
+        List<Ticket> batch = null;
+        String combinedUrl = ticket.mUrl;
+        List<Ticket> waiting = new ArrayList<>(mQueue);
+        Collections.sort(waiting);
+        for (Ticket other : waiting) {
+            if (other.mUrl == null || other.mAlone || other.mBatched != null) {
+                continue;
+            }
+            String combined = mBatcher.combine(combinedUrl, other.mUrl);
+            if (combined == null) {
+                continue;
+            }
+            combinedUrl = combined;
+            mQueue.remove(other);
+            other.mBatched = ticket;
+            if (batch == null) {
+                batch = new ArrayList<>();
+            }
+            batch.add(other);
+        }
+        ticket.mBatch = batch;
+        ticket.mBatchUrl = combinedUrl;
+    }
+
+    /**
+     * Hand the result of a combined request to the requests combined into it. Those whose
+     * news can't be told apart are queued again on their own, as are all of them if the
+     * request was canceled by the one that made it.
+     */
+    private synchronized void deliver(List<Ticket> batch, String combinedUrl, List<TechNews> result,
+                                      boolean canceled) {
+        for (Ticket other : batch) {
+            other.mBatched = null;
+            if (other.mAbandoned) {
+                continue;
+            }
+            List<TechNews> share = result != null ? mBatcher.split(combinedUrl, result, other.mUrl) : null;
+            if (canceled || (result != null && share == null)) {
+                other.mAlone = true;
+                mQueue.add(other);
+            } else {
+                other.mResult = share;
+                other.mDone = true;
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * A request waiting for its turn
+     */
+    private static class Ticket implements Comparable<Ticket> {
+        final String mUrl;
+        final int mPriority;
+        final long mSequence;
+
+        /**
+         * Requests combined into this one once it got its turn, and the URL answering all
+         */
+        List<Ticket> mBatch;
+        String mBatchUrl;
+        /**
+         * Request this one was combined into while it runs
+         */
+        Ticket mBatched;
+        /**
+         * True if this request must not be combined
+         */
+        boolean mAlone;
+        /**
+         * True once the caller stopped waiting
+         */
+        boolean mAbandoned;
+        boolean mDone;
+        List<TechNews> mResult;
+
+        Ticket(String url, int priority, long sequence) {
+            mUrl = url;
+            mPriority = priority;
+            mSequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            if (mPriority != other.mPriority) {
+                return mPriority < other.mPriority ? -1 : 1;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence > other.mSequence ? 1 : 0);
+        }
+    }
+
+    /**
+     * Token bucket refilled continuously up to its capacity
+     */
+    private static class Bucket {
+        private final double mCapacity;
+        private final double mTokensPerMilli;
+        private double mTokens;
+        private long mUpdated;
+
+        Bucket(double capacity, double tokensPerMilli, long now) {
+            mCapacity = capacity;
+            mTokensPerMilli = tokensPerMilli;
+            mTokens = capacity;
+            mUpdated = now;
+        }
+
+        /**
+         * Returns the time until the bucket holds the given number of tokens, 0 if it does.
+         */
+        long millisUntil(double tokens, long now) {
+            refill(now);
+            if (mTokens >= tokens) {
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((tokens - mTokens) / mTokensPerMilli));
+        }
+
+        void take(long now) {
+            refill(now);
+            mTokens -= 1;
+        }
+
+        /**
+         * Keep the fewer tokens of this bucket and one that held the given tokens at the
+         * given time.
+         */
+        void restore(double tokens, long time, long now) {
+            refill(now);
+            double restored = Math.min(mCapacity, tokens + (now - time) * mTokensPerMilli);
+            mTokens = Math.min(mTokens, restored);
+        }
+
+        private void refill(long now) {
+            if (now > mUpdated) {
+                mTokens = Math.min(mCapacity, mTokens + (now - mUpdated) * mTokensPerMilli);
+            }
+            mUpdated = now;
+        }
+    }
+}
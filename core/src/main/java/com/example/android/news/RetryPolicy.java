@@ -0,0 +1,101 @@
+package com.example.android.news;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Decides whether a failed GET is tried again and how long to wait before. The wait grows
+ * exponentially with every attempt and is drawn at random below that bound ("full jitter"),
+ * so clients that failed together don't all come back at the same moment. A Retry-After
+ * sent by the server is waited for, unless it is longer than the longest wait we accept.
+ */
+public class RetryPolicy {
+
+    /**
+     * Returned by {@link #delayMillis(int, long)} when the request must not be tried again
+     */
+    public static final long NO_RETRY = -1;
+
+    private final int mMaxAttempts;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+    private final Random mRandom;
+
+    /**
+     * @param maxAttempts     attempts per request, including the first one
+     * @param baseDelayMillis upper bound of the wait after the first failed attempt
+     * @param maxDelayMillis  upper bound of any wait, also of a Retry-After
+     * @param random          source of the jitter
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, Random random) {
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+        mRandom = random;
+    }
+
+    /**
+     * Returns how long to wait before the next attempt, or {@link #NO_RETRY}.
+     *
+     * @param failedAttempts   number of attempts made so far, all failed
+     * @param retryAfterMillis wait asked for by the server, or -1
+     */
+    public long delayMillis(int failedAttempts, long retryAfterMillis) {
+        if (failedAttempts >= mMaxAttempts) {
+            return NO_RETRY;
+        }
+        if (retryAfterMillis > mMaxDelayMillis) {
+            // The server won't be back soon enough, better show what we have
+            return NO_RETRY;
+        }
+        // Shift by at most 30 so the bound can't overflow
+        long bound = Math.min(mMaxDelayMillis, mBaseDelayMillis << Math.min(failedAttempts - 1, 30));
+        long delay = (long) (mRandom.nextDouble() * bound);
+        return Math.max(delay, retryAfterMillis);
+    }
+
+    /**
+     * Returns true for the response codes of a temporary failure: request timeout,
+     * too many requests and the server errors that may go away on their own.
+     */
+    public static boolean isRetryable(int responseCode) {
+        switch (responseCode) {
+            case 408:
+            case 429:
+            case 500:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the wait asked for by a Retry-After header, given either in seconds or
+     * as an HTTP date, or -1 if the header is missing or malformed.
+     *
+     * @param now current time, to turn a date into a wait
+     */
+    public static long parseRetryAfter(String retryAfter, long now) {
+        if (retryAfter == null) {
+            return -1;
+        }
+        retryAfter = retryAfter.trim();
+        try {
+            long seconds = Long.parseLong(retryAfter);
+            return seconds >= 0 ? seconds * 1000 : -1;
+        } catch (NumberFormatException e) {
+            // Not in seconds, try a date
+        }
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        try {
+            return Math.max(0, format.parse(retryAfter).getTime() - now);
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.android.news;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Combines first pages of the same search in different sections into one search of all
+ * those sections, with their page sizes added up. The guardianapis takes several sections
+ * separated by "|". The results are told apart by the sectionId the guardianapis returns
+ * with every news.
+ * <p>
+ * A section only gets its share of the combined page if the share is provably what its own
+ * page would have had; otherwise {@link #split} returns null and the section is requested
+ * again on its own. That is the case if a news can't be told apart, or if the combined page
+ * came back full and the share may be missing news the page left out: unless the search is
+ * ordered by date and the share fills the section's page with news published before the
+ * last news of the combined page. A section with more news than its page size only gets as
+ * many as its own page would have had.
+ */
+public class SectionBatcher implements RequestGovernor.Batcher {
+
+    private static final String SECTION = "section";
+    private static final String PAGE_SIZE = "page-size";
+    private static final String PAGE = "page";
+
+    /**
+     * Names of the order parameter, the app's feeds use the second one
+     */
+    private static final String[] ORDER_BY = {"order-by", "orderby"};
+
+    /**
+     * "|" as encoded in URLs
+     */
+    private static final String SEPARATOR = "%7C";
+
+    /**
+     * Separators of the sections parameter, "|" encoded in either case or not at all
+     */
+    private static final String SEPARATOR_PATTERN = "%7[Cc]|\\|";
+
+    /**
+     * Largest page size of the guardianapis
+     */
+    static final int MAX_PAGE_SIZE = 200;
+
+    @Override
+    public String combine(String combinedUrl, String url) {
+        if (combinedUrl.equals(url)) {
+            // The same request twice
+            return url;
+        }
+        if (!FeedUrls.withoutQuery(combinedUrl).equals(FeedUrls.withoutQuery(url))) {
+            return null;
+        }
+        Map<String, String> combinedParameters = FeedUrls.parameters(combinedUrl);
+        Map<String, String> parameters = FeedUrls.parameters(url);
+        if (!isFirstPage(combinedParameters) || !isFirstPage(parameters)
+                || !combinedParameters.containsKey(SECTION) || !parameters.containsKey(SECTION)) {
+            return null;
+        }
+        int pageSize = pageSize(combinedParameters) + pageSize(parameters);
+        if (pageSize > MAX_PAGE_SIZE) {
+            return null;
+        }
+        TreeSet<String> sections = new TreeSet<>(sections(combinedParameters));
+        sections.addAll(sections(parameters));
+
+        // Everything else has to be the same
+        for (String name : new String[]{SECTION, PAGE_SIZE, PAGE}) {
+            combinedParameters.remove(name);
+            parameters.remove(name);
+        }
+        if (!combinedParameters.equals(parameters)) {
+            return null;
+        }
+
+        StringBuilder section = new StringBuilder();
+        for (String id : sections) {
+            if (section.length() > 0) {
+                section.append(SEPARATOR);
+            }
+            section.append(id);
+        }
+        String combined = FeedUrls.withParameter(combinedUrl, SECTION, section.toString());
+        return FeedUrls.withParameter(combined, PAGE_SIZE, String.valueOf(pageSize));
+    }
+
+    @Override
+    public List<TechNews> split(String combinedUrl, List<TechNews> combined, String url) {
+        if (combinedUrl.equals(url)) {
+            return combined;
+        }
+        Map<String, String> combinedParameters = FeedUrls.parameters(combinedUrl);
+        List<String> combinedSections = sections(combinedParameters);
+        Map<String, String> parameters = FeedUrls.parameters(url);
+        List<String> sections = sections(parameters);
+        List<TechNews> share = new ArrayList<>();
+        for (TechNews news : combined) {
+            String sectionId = news.getSectionId();
+            if (sectionId == null || !combinedSections.contains(sectionId)) {
+                // Can't tell whose news it is
+                return null;
+            }
+            if (sections.contains(sectionId)) {
+                share.add(news);
+            }
+        }
+        int pageSize = pageSize(parameters);
+        if (combined.size() >= pageSize(combinedParameters)
+                && !fillsPageBeforeTheEnd(share, pageSize, combined, combinedParameters)) {
+            return null;
+        }
+        // A section filling most of the combined page has more news than its own first page,
+        // the rest belongs to its second page
+        return share.size() > pageSize ? new ArrayList<>(share.subList(0, pageSize)) : share;
+    }
+
+    /**
+     * Returns true if the news a full combined page left out can't be part of the section's
+     * own page: the page is ordered by date and the share has a full page of news published
+     * before or after the last news of the combined page, as the order goes.
+     */
+    private static boolean fillsPageBeforeTheEnd(List<TechNews> share, int pageSize, List<TechNews> combined,
+                                                 Map<String, String> combinedParameters) {
+        if (!isOrderedByDate(combinedParameters) || share.size() < pageSize || pageSize == 0) {
+            return false;
+        }
+        // News left out are published at the time of the last one or past it, also news of the
+        // same time, which the guardianapis orders in no defined way
+        return share.get(pageSize - 1).getPublishedAt() != combined.get(combined.size() - 1).getPublishedAt();
+    }
+
+    private static boolean isOrderedByDate(Map<String, String> parameters) {
+        for (String name : ORDER_BY) {
+            String orderBy = parameters.get(name);
+            if (orderBy != null) {
+                return orderBy.equals("newest") || orderBy.equals("oldest");
+            }
+        }
+        // Searches with terms are ordered by relevance by default
+        return false;
+    }
+
+    private static boolean isFirstPage(Map<String, String> parameters) {
+        String page = parameters.get(PAGE);
+        return page == null || page.equals("1");
+    }
+
+    private static List<String> sections(Map<String, String> parameters) {
+        String section = parameters.get(SECTION);
+        return Arrays.asList(section.split(SEPARATOR_PATTERN));
+    }
+
+    /**
+     * Returns the page size of the request, the guardianapis default of 10 if it has none.
+     */
+    private static int pageSize(Map<String, String> parameters) {
+        String pageSize = parameters.get(PAGE_SIZE);
+        try {
+            return pageSize != null ? Integer.parseInt(pageSize) : 10;
+        } catch (NumberFormatException e) {
+            return 10;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.android.news;
+
+/**
+ * Decides when the background sync may run. Kept free of Android classes, the clock
+ * and the device conditions are passed in so the rules can be tested with fakes.
+ */
+public class SyncPolicy {
+
+    /**
+     * Source of the current time
+     */
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    /**
+     * Current state of the device
+     */
+    public interface Conditions {
+        boolean isUnmetered();
+
+        boolean isCharging();
+    }
+
+    /**
+     * Clock of the system
+     */
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * Part of the interval a wake-up may come early and still sync, the system starts
+     * periodic jobs anywhere in a flex window at the end of their period
+     */
+    private static final int FLEX_DIVISOR = 4;
+
+    private final Clock mClock;
+    private final long mIntervalMillis;
+    private final boolean mUnmeteredOnly;
+    private final boolean mChargingOnly;
+
+    /**
+     * @param clock          source of the current time
+     * @param intervalMillis minimum time between two syncs
+     * @param unmeteredOnly  only sync on unmetered networks
+     * @param chargingOnly   only sync while charging
+     */
+    public SyncPolicy(Clock clock, long intervalMillis, boolean unmeteredOnly, boolean chargingOnly) {
+        mClock = clock;
+        mIntervalMillis = intervalMillis;
+        mUnmeteredOnly = unmeteredOnly;
+        mChargingOnly = chargingOnly;
+    }
+
+    public long getIntervalMillis() {
+        return mIntervalMillis;
+    }
+
+    /**
+     * Returns the window at the end of every interval a periodic wake-up may come in.
+     */
+    public long getFlexMillis() {
+        return mIntervalMillis / FLEX_DIVISOR;
+    }
+
+    public boolean isUnmeteredOnly() {
+        return mUnmeteredOnly;
+    }
+
+    public boolean isChargingOnly() {
+        return mChargingOnly;
+    }
+
+    /**
+     * Returns true if the last sync is at least one interval ago. A last sync time in
+     * the future, after the clock was set back, also counts as due.
+     */
+    public boolean isDue(long lastSyncTime) {
+        long now = mClock.currentTimeMillis();
+        return lastSyncTime > now || now - lastSyncTime >= mIntervalMillis;
+    }
+
+    /**
+     * Returns true if the device satisfies the configured constraints.
+     */
+    public boolean areConstraintsMet(Conditions conditions) {
+        return (!mUnmeteredOnly || conditions.isUnmetered())
+                && (!mChargingOnly || conditions.isCharging());
+    }
+
+    /**
+     * Returns true if a wake-up should sync now. Wake-ups inside the flex window of the
+     * interval sync, earlier ones, for instance because the app itself refreshed recently,
+     * are skipped.
+     */
+    public boolean shouldSync(long lastSyncTime, Conditions conditions) {
+        return isDue(lastSyncTime - getFlexMillis()) && areConstraintsMet(conditions);
+    }
+
+    /**
+     * Returns the time in milliseconds until the next sync is due, 0 if it already is.
+     */
+    public long delayUntilDue(long lastSyncTime) {
+        if (isDue(lastSyncTime)) {
+            return 0;
+        }
+        return lastSyncTime + mIntervalMillis - mClock.currentTimeMillis();
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.android.news;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * Local stand-in for the guardianapis search, answering with synthetic results on the
+ * loopback interface, so loads can be driven offline and at any rate. The results follow
+ * the page, page-size and section parameters of the request and look like real ones to
+ * {@link NewsParser}. How large and slow the responses are, how often they fail and how
+ * many requests per second are answered before it throttles with 429s can be set at any
+ * time, also while requests are running. It answers over TLS if given the context of a
+ * certificate for 127.0.0.1.
+ */
+public class SyntheticGuardianServer {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+
+    /**
+     * Publication date of the newest result
+     */
+    private static final long NEWEST = NewsDates.parseIso8601("2018-07-18T12:00:00Z");
+
+    private static final String[] AUTHORS = {"Alex Hern", "Rob Davies", "Samuel Gibbs", "Julia Powles"};
+
+    private final ServerSocket mServerSocket;
+    private final boolean mSecure;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final Random mRandom = new Random();
+
+    private volatile int mTotal = 1000;
+    private volatile int mPaddingBytes;
+    private volatile long mLatencyMillis;
+    private volatile long mLatencyJitterMillis;
+    private volatile double mErrorRate;
+    private volatile int mRequestsPerSecond;
+    private volatile boolean mGzip = true;
+
+    private final AtomicInteger mConnections = new AtomicInteger();
+    private final AtomicInteger mRequests = new AtomicInteger();
+    private final AtomicInteger mErrors = new AtomicInteger();
+    private final AtomicInteger mThrottled = new AtomicInteger();
+
+    /**
+     * Second the throttled requests are counted for, and their number, guarded by this
+     */
+    private long mThrottleSecond;
+    private int mThrottleCount;
+
+    /**
+     * Starts the server on a free port of the loopback interface.
+     */
+    public SyntheticGuardianServer() throws IOException {
+        this(null);
+    }
+
+    /**
+     * Starts the server on a free port of the loopback interface, answering over TLS.
+     *
+     * @param sslContext holds the key and certificate of the server, or null for plain HTTP
+     */
+    public SyntheticGuardianServer(SSLContext sslContext) throws IOException {
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        mSecure = sslContext != null;
+        mServerSocket = mSecure
+                ? sslContext.getServerSocketFactory().createServerSocket(0, 50, loopback)
+                : new ServerSocket(0, 50, loopback);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        });
+    }
+
+    /**
+     * Returns the search URL of the server, taking the same parameters as the guardianapis.
+     */
+    public String getSearchUrl() {
+        return (mSecure ? "https" : "http") + "://127.0.0.1:" + mServerSocket.getLocalPort() + "/search";
+    }
+
+    /**
+     * Number of results of every search, split into pages (default: 1000)
+     */
+    public void setTotal(int total) {
+        mTotal = total;
+    }
+
+    /**
+     * Bytes of text added to every result, to make the responses larger (default: 0)
+     */
+    public void setPaddingBytes(int paddingBytes) {
+        mPaddingBytes = paddingBytes;
+    }
+
+    /**
+     * Time before every response is answered, a random jitter up to jitterMillis is added
+     * (default: none)
+     */
+    public void setLatency(long latencyMillis, long jitterMillis) {
+        mLatencyMillis = latencyMillis;
+        mLatencyJitterMillis = jitterMillis;
+    }
+
+    /**
+     * Part of the requests answered with a 503, between 0 and 1 (default: 0)
+     */
+    public void setErrorRate(double errorRate) {
+        mErrorRate = errorRate;
+    }
+
+    /**
+     * Requests answered per second, later ones get a 429 with a Retry-After of a second,
+     * 0 to never throttle (default: 0)
+     */
+    public void setRequestsPerSecond(int requestsPerSecond) {
+        mRequestsPerSecond = requestsPerSecond;
+    }
+
+    /**
+     * Compress the responses if the request accepts gzip (default: true)
+     */
+    public void setGzip(boolean gzip) {
+        mGzip = gzip;
+    }
+
+    /**
+     * Counters of the connections accepted, the requests received, and those failed with
+     * an error and throttled
+     */
+    public int getConnectionCount() {
+        return mConnections.get();
+    }
+    public int getRequestCount() {
+        return mRequests.get();
+    }
+    public int getErrorCount() {
+        return mErrors.get();
+    }
+    public int getThrottledCount() {
+        return mThrottled.get();
+    }
+
+    public void shutdown() throws IOException {
+        mServerSocket.close();
+        mExecutor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                final Socket socket = mServerSocket.accept();
+                mConnections.incrementAndGet();
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), ISO_8859_1));
+            OutputStream out = socket.getOutputStream();
+            String requestLine;
+            // Keep-alive: serve requests on this socket until the client closes it
+            while ((requestLine = reader.readLine()) != null && !requestLine.isEmpty()) {
+                boolean acceptsGzip = false;
+                String line;
+                while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                    if (line.regionMatches(true, 0, "Accept-Encoding:", 0, 16) && line.contains("gzip")) {
+                        acceptsGzip = true;
+                    }
+                }
+                String[] parts = requestLine.split(" ");
+                respond(out, parts[0], parts.length > 1 ? parts[1] : "/", acceptsGzip);
+            }
+        } catch (SocketException e) {
+            // Client went away
+        } catch (IOException e) {
+            // Nothing to answer anymore
+        } catch (InterruptedException e) {
+            // Shut down
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void respond(OutputStream out, String method, String path, boolean acceptsGzip)
+            throws IOException, InterruptedException {
+        mRequests.incrementAndGet();
+        // Answers to HEAD requests, like those pre-warming a connection, have no body
+        boolean head = method.equals("HEAD");
+        long latency = mLatencyMillis;
+        long jitter = mLatencyJitterMillis;
+        if (jitter > 0) {
+            latency += (long) (nextDouble() * jitter);
+        }
+        if (latency > 0) {
+            Thread.sleep(latency);
+        }
+
+        if (isThrottled()) {
+            mThrottled.incrementAndGet();
+            write(out, "429 Too Many Requests", "Retry-After: 1\r\n", new byte[0], head);
+            return;
+        }
+        if (nextDouble() < mErrorRate) {
+            mErrors.incrementAndGet();
+            write(out, "503 Service Unavailable", "", new byte[0], head);
+            return;
+        }
+        if (!path.startsWith("/search")) {
+            write(out, "404 Not Found", "", new byte[0], head);
+            return;
+        }
+
+        byte[] body = searchResponse(FeedUrls.parameters(path));
+        String headers = "Content-Type: application/json; charset=utf-8\r\n";
+        if (mGzip && acceptsGzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(body);
+            gzip.close();
+            body = compressed.toByteArray();
+            headers += "Content-Encoding: gzip\r\n";
+        }
+        write(out, "200 OK", headers, body, head);
+    }
+
+    private static void write(OutputStream out, String status, String headers, byte[] body, boolean headOnly)
+            throws IOException {
+        byte[] head = ("HTTP/1.1 " + status + "\r\n" + headers + "Content-Length: " + body.length + "\r\n\r\n")
+                .getBytes(ISO_8859_1);
+        int bodyLength = headOnly ? 0 : body.length;
+        // One write, so the head doesn't wait for the client's delayed ACK
+        byte[] response = Arrays.copyOf(head, head.length + bodyLength);
+        System.arraycopy(body, 0, response, head.length, bodyLength);
+        out.write(response);
+        out.flush();
+    }
+
+    private synchronized double nextDouble() {
+        return mRandom.nextDouble();
+    }
+
+    /**
+     * Returns true if the request is over the requests allowed in the current second.
+     */
+    private synchronized boolean isThrottled() {
+        int perSecond = mRequestsPerSecond;
+        if (perSecond <= 0) {
+            return false;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        if (second != mThrottleSecond) {
+            mThrottleSecond = second;
+            mThrottleCount = 0;
+        }
+        return ++mThrottleCount > perSecond;
+    }
+
+    /**
+     * Returns the JSON of the requested page, in the format of the guardianapis.
+     */
+    private byte[] searchResponse(Map<String, String> parameters) throws IOException {
+        int pageSize = Math.min(SectionBatcher.MAX_PAGE_SIZE, Math.max(1, intParameter(parameters, "page-size", 10)));
+        int page = Math.max(1, intParameter(parameters, "page", 1));
+        String sectionParameter = parameters.get("section");
+        String[] sections = sectionParameter != null
+                ? sectionParameter.replace("%7C", "|").split("\\|") : new String[]{"technology"};
+        int total = mTotal;
+        int pages = (total + pageSize - 1) / pageSize;
+        int first = (page - 1) * pageSize;
+        int count = Math.max(0, Math.min(pageSize, total - first));
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        // Content ids start with the section and the day, like technology/2018/jul/18/...
+        SimpleDateFormat idFormat = new SimpleDateFormat("yyyy/MMM/dd", Locale.US);
+        idFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        char[] padding = new char[mPaddingBytes];
+        Arrays.fill(padding, 'x');
+        String trailText = new String(padding);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024 + count * (600 + padding.length));
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(bytes, UTF_8));
+        writer.beginObject().name("response").beginObject();
+        writer.name("status").value("ok");
+        writer.name("total").value(total);
+        writer.name("startIndex").value(first + 1);
+        writer.name("pageSize").value(pageSize);
+        writer.name("currentPage").value(page);
+        writer.name("pages").value(pages);
+        writer.name("orderBy").value("newest");
+        writer.name("results").beginArray();
+        for (int i = first; i < first + count; i++) {
+            String section = sections[i % sections.length];
+            long publishedAt = NEWEST - i * HOUR_MILLIS;
+            String id = section + "/" + idFormat.format(new Date(publishedAt)).toLowerCase(Locale.US) + "/synthetic-" + i;
+            writer.beginObject();
+            writer.name("id").value(id);
+            writer.name("type").value("article");
+            writer.name("sectionId").value(section);
+            writer.name("sectionName").value(Character.toUpperCase(section.charAt(0)) + section.substring(1));
+            writer.name("webPublicationDate").value(dateFormat.format(new Date(publishedAt)));
+            writer.name("webTitle").value("Synthetic " + section + " story " + i + " on phones, chips and networks");
+            writer.name("webUrl").value("https://www.theguardian.com/" + id);
+            writer.name("apiUrl").value("https://content.guardianapis.com/" + id);
+            writer.name("fields").beginObject();
+            writer.name("thumbnail").value("https://media.guim.co.uk/synthetic/" + i + "/500.jpg");
+            writer.name("trailText").value(trailText);
+            writer.endObject();
+            writer.name("tags").beginArray().beginObject();
+            writer.name("type").value("contributor");
+            writer.name("webTitle").value(AUTHORS[i % AUTHORS.length]);
+            writer.endObject().endArray();
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject().endObject();
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    private static int intParameter(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.android.news;
+
+public class TechNews {
+
+    /**
+     * Guardian content id, unique for every article
+     */
+    private String id;
+
+    /**
+     * Technology News Section
+     */
+    private String section;
+
+    /**
+     * Guardian id of the section, like technology, or null if not known
+     */
+    private String sectionId;
+
+    /**
+     * Technology News Title
+     */
+    private String title;
+
+    /**
+     * Time of published news in milliseconds since the epoch
+     */
+    private long publishedAt;
+
+    /**
+     * Time of published news formatted for display
+     */
+    private String displayDate;
+
+    /**
+     * Author of published news
+     */
+    private String author;
+
+    /**
+     * Website URL of the technology news
+     */
+    private String url;
+
+    /**
+     * URL of the thumbnail image, or null if the news has none
+     */
+    private String thumbnailUrl;
+
+    /**
+     * Constructs a new {@link TechNews} object.
+     *
+     * @param id                 is the guardianapis id of the technology news
+     * @param section            is the section in which the technology news belongs
+     * @param title              is the title of the technology news
+     * @param publishedAt        is the time when the technology news was published, in milliseconds
+     * @param displayDate        is the publication time formatted for display
+     * @param author             is the author of technology news
+     * @param url                is the website URL to find more details about the technology news
+     */
+    public TechNews(String id, String section, String title, long publishedAt, String displayDate,
+                    String author, String url) {
+        this(id, section, title, publishedAt, displayDate, author, url, null);
+    }
+
+    /**
+     * Constructs a new {@link TechNews} object with a thumbnail.
+     *
+     * @param thumbnailUrl       is the URL of the thumbnail image, or null
+     */
+    public TechNews(String id, String section, String title, long publishedAt, String displayDate,
+                    String author, String url, String thumbnailUrl) {
+        this(id, section, title, publishedAt, displayDate, author, url, thumbnailUrl, null);
+    }
+
+    /**
+     * Constructs a new {@link TechNews} object with a thumbnail and the id of its section.
+     *
+     * @param sectionId          is the guardianapis id of the section, like technology, or null
+     */
+    public TechNews(String id, String section, String title, long publishedAt, String displayDate,
+                    String author, String url, String thumbnailUrl, String sectionId) {
+        this.id = id;
+        this.section = section;
+        this.title = title;
+        this.publishedAt = publishedAt;
+        this.displayDate = displayDate;
+        this.author = author;
+        this.url = url;
+        this.thumbnailUrl = thumbnailUrl;
+        this.sectionId = sectionId;
+    }
+
+    /**
+     * Getters
+     */
+    public String getId() {
+        return id;
+    }
+    public String getSection() {
+        return section;
+    }
+    public String getSectionId() {
+        return sectionId;
+    }
+    public String getTitle() {
+        return title;
+    }
+    public long getPublishedAt() {
+        return publishedAt;
+    }
+    public String getDisplayDate() {
+        return displayDate;
+    }
+    public String getAuthor() {
+        return author;
+    }
+    public String getUrl() {
+        return url;
+    }
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a {@link CancellationToken} runs every action registered with it once, and
+ * none that was removed.
+ */
+public class CancellationTokenTest {
+
+    private static Runnable record(final List<String> ran, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                ran.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void cancel_runsEveryListenerStillAdded() {
+        List<String> ran = new ArrayList<>();
+        CancellationToken token = new CancellationToken();
+        // Like a shared request and the HTTP request below it
+        token.addOnCancelListener(record(ran, "in-flight"));
+        Runnable finished = record(ran, "finished request");
+        token.addOnCancelListener(finished);
+        token.removeOnCancelListener(finished);
+        token.addOnCancelListener(record(ran, "request"));
+
+        token.cancel();
+        token.cancel();
+
+        assertEquals(Arrays.asList("request", "in-flight"), ran);
+    }
+
+    @Test
+    public void listenerAddedAfterCancel_runsRightAway() {
+        List<String> ran = new ArrayList<>();
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+
+        token.addOnCancelListener(record(ran, "late"));
+
+        assertEquals(Arrays.asList("late"), ran);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link NewsHttpClient} keeps connections alive across requests, also after
+ * error responses, that pre-warming leaves a connection for the first request, and that the
+ * {@link ConnectionPool} counts the reuse the server sees. The server answers over TLS with
+ * the certificate in localhost.jks, which the client trusts.
+ */
+public class ConnectionPoolTest {
+
+    private SyntheticGuardianServer mServer;
+    private NewsHttpClient mClient;
+    private ConnectionPool mPool;
+
+    /**
+     * Returns a context with the test certificate as the key and the only trusted certificate.
+     */
+    private static SSLContext testSslContext() throws IOException, GeneralSecurityException {
+        char[] password = "changeit".toCharArray();
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream in = ConnectionPoolTest.class.getClassLoader().getResourceAsStream("localhost.jks");
+        try {
+            keyStore.load(in, password);
+        } finally {
+            in.close();
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, password);
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+        return context;
+    }
+
+    @Before
+    public void setUp() throws IOException, GeneralSecurityException {
+        SSLContext sslContext = testSslContext();
+        mServer = new SyntheticGuardianServer(sslContext);
+        mPool = new ConnectionPool(SyncPolicy.SYSTEM_CLOCK, 5, 60000);
+        mClient = new NewsHttpClient(null, 5000, 5000);
+        mClient.setSslSocketFactory(sslContext.getSocketFactory());
+        mClient.setConnectionPool(mPool);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    private int fetch(String query) throws IOException {
+        InputStream in = mClient.openStream(new URL(mServer.getSearchUrl() + query));
+        try {
+            return NewsParser.parse(in).getNews().size();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void sequentialRequests_reuseOneConnection() throws IOException {
+        for (int page = 1; page <= 5; page++) {
+            assertEquals(10, fetch("?page=" + page));
+        }
+
+        assertEquals(1, mServer.getConnectionCount());
+        assertEquals(1, mPool.getMisses());
+        assertEquals(4, mPool.getHits());
+        assertEquals(1, mPool.getIdleCount());
+    }
+
+    @Test
+    public void errorResponse_keepsTheConnection() throws IOException {
+        mServer.setErrorRate(1);
+        try {
+            fetch("?page=1");
+            fail("Expected the 503");
+        } catch (NewsHttpClient.HttpStatusException e) {
+            assertEquals(503, e.getResponseCode());
+        }
+        mServer.setErrorRate(0);
+        assertEquals(10, fetch("?page=1"));
+
+        assertEquals(1, mServer.getConnectionCount());
+        assertEquals(1, mPool.getMisses());
+        assertEquals(1, mPool.getHits());
+    }
+
+    @Test
+    public void prewarm_leavesAConnectionForTheFirstRequest() throws IOException {
+        mClient.prewarm(new URL(mServer.getSearchUrl()));
+        // Nothing to do while a connection is idle
+        mClient.prewarm(new URL(mServer.getSearchUrl()));
+        assertEquals(10, fetch("?page=1"));
+
+        assertEquals(1, mServer.getConnectionCount());
+        assertEquals(2, mServer.getRequestCount());
+        assertEquals(1, mPool.getHits());
+        assertEquals(0, mPool.getMisses());
+    }
+
+    @Test
+    public void connectionOfAnotherFactory_isNotReused() throws IOException {
+        mClient.setConnectionPool(null);
+        assertEquals(10, fetch("?page=1"));
+        mClient.setConnectionPool(mPool);
+        // Not made through the pool's factory, so it can't be reused
+        assertEquals(10, fetch("?page=2"));
+        assertEquals(10, fetch("?page=3"));
+
+        assertEquals(2, mServer.getConnectionCount());
+        assertEquals(1, mPool.getMisses());
+        assertEquals(1, mPool.getHits());
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link DeltaFetcher} pages through the news newer than the known ones and
+ * stops at the first known news.
+ */
+public class DeltaFetcherTest {
+
+    private static final String FEED = "https://content.guardianapis.com/search?q=technology&page-size=2&api-key=test";
+    private static final long KNOWN = NewsDates.parseIso8601("2018-07-18T12:00:00Z");
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    /**
+     * Answers the pages it was given and records the requested URLs
+     */
+    private static class Pages implements DeltaFetcher.PageFetcher {
+        final Map<String, List<TechNews>> pages = new HashMap<>();
+        final List<String> requested = new ArrayList<>();
+
+        Pages page(String url, TechNews... news) {
+            pages.put(url, Arrays.asList(news));
+            return this;
+        }
+
+        @Override
+        public List<TechNews> fetch(String feedUrl, String pageUrl, CancellationToken token) {
+            assertEquals(FEED, feedUrl);
+            requested.add(pageUrl);
+            return pages.get(pageUrl);
+        }
+    }
+
+    private static TechNews news(String id, long publishedAt) {
+        return new TechNews(id, "Technology", "Title " + id, publishedAt, null, "Author", "url/" + id);
+    }
+
+    private static List<String> ids(List<TechNews> news) {
+        List<String> ids = new ArrayList<>();
+        for (TechNews item : news) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void unknownFeed_isFetchedWhole() {
+        Pages pages = new Pages().page(FEED, news("a", KNOWN), news("b", KNOWN - HOUR));
+        DeltaFetcher fetcher = new DeltaFetcher(pages, Collections.<String, Long>emptyMap(), 2, 5);
+
+        assertEquals(Arrays.asList("a", "b"), ids(fetcher.fetch(FEED, null)));
+        assertEquals(Collections.singletonList(FEED), pages.requested);
+        assertEquals(Long.valueOf(KNOWN), fetcher.getFetchedNewest().get(FEED));
+    }
+
+    @Test
+    public void knownFeed_pagesUntilKnownNews() {
+        Pages pages = new Pages()
+                .page(DeltaFetcher.deltaUrl(FEED, KNOWN, 1), news("d", KNOWN + 3 * HOUR), news("c", KNOWN + 2 * HOUR))
+                .page(DeltaFetcher.deltaUrl(FEED, KNOWN, 2), news("b", KNOWN + HOUR), news("a", KNOWN));
+        DeltaFetcher fetcher = new DeltaFetcher(pages, Collections.singletonMap(FEED, KNOWN), 2, 5);
+
+        assertEquals(Arrays.asList("d", "c", "b"), ids(fetcher.fetch(FEED, null)));
+        assertEquals(2, pages.requested.size());
+        assertEquals(Long.valueOf(KNOWN + 3 * HOUR), fetcher.getFetchedNewest().get(FEED));
+        assertTrue(pages.requested.get(0).contains("&from-date=2018-07-18&order-by=newest&page=1"));
+    }
+
+    @Test
+    public void knownFeed_withoutNewNews_keepsNewest() {
+        Pages pages = new Pages().page(DeltaFetcher.deltaUrl(FEED, KNOWN, 1), news("a", KNOWN));
+        DeltaFetcher fetcher = new DeltaFetcher(pages, Collections.singletonMap(FEED, KNOWN), 2, 5);
+
+        assertTrue(fetcher.fetch(FEED, null).isEmpty());
+        assertEquals(Long.valueOf(KNOWN), fetcher.getFetchedNewest().get(FEED));
+    }
+
+    @Test
+    public void failedPage_failsTheFeed() {
+        Pages pages = new Pages()
+                .page(DeltaFetcher.deltaUrl(FEED, KNOWN, 1), news("d", KNOWN + 3 * HOUR), news("c", KNOWN + 2 * HOUR));
+        DeltaFetcher fetcher = new DeltaFetcher(pages, Collections.singletonMap(FEED, KNOWN), 2, 5);
+
+        assertNull(fetcher.fetch(FEED, null));
+        assertTrue(fetcher.getFetchedNewest().isEmpty());
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how {@link FeedUrls} reads and changes the query of guardianapis URLs.
+ */
+public class FeedUrlsTest {
+
+    @Test
+    public void withParameter_replacesEarlierValue() {
+        assertEquals("http://host/search?q=a&page=2",
+                FeedUrls.withParameter("http://host/search?page=1&q=a", "page", "2"));
+        assertEquals("http://host/search?page=1", FeedUrls.withParameter("http://host/search", "page", "1"));
+        // Only the parameter of that name, not those starting like it
+        assertEquals("http://host/search?page-size=10&page=3",
+                FeedUrls.withParameter("http://host/search?page-size=10&page", "page", "3"));
+    }
+
+    @Test
+    public void withoutQuery_keepsThePath() {
+        assertEquals("http://host/search", FeedUrls.withoutQuery("http://host/search?q=a&page=2"));
+        assertEquals("http://host/search", FeedUrls.withoutQuery("http://host/search"));
+    }
+
+    @Test
+    public void parameters_inOrderAndStillEncoded() {
+        Map<String, String> parameters = FeedUrls.parameters(
+                "http://host/search?section=technology%7Cscience&q=a&&flag&q=b");
+
+        assertEquals(Arrays.asList("section", "q", "flag"), Arrays.asList(parameters.keySet().toArray()));
+        assertEquals("technology%7Cscience", parameters.get("section"));
+        // The last value of a repeated parameter
+        assertEquals("b", parameters.get("q"));
+        assertEquals("", parameters.get("flag"));
+        assertTrue(FeedUrls.parameters("http://host/search").isEmpty());
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the frame histogram, the dropped frame count and the slowest binds of
+ * {@link FrameStats}.
+ */
+public class FrameStatsTest {
+
+    private static final long MILLI = 1000000L;
+    private static final long FRAME = 16666667L;
+
+    @Test
+    public void frames_areCountedIntoBucketsAndDroppedFrames() {
+        FrameStats stats = new FrameStats(FRAME);
+        stats.recordFrame(FRAME);
+        stats.recordFrame(FRAME + 2 * MILLI);
+        stats.recordFrame(2 * FRAME);
+        stats.recordFrame(5 * FRAME);
+
+        assertEquals(4, stats.getFrames());
+        assertEquals(2, stats.getJankyFrames());
+        assertEquals(1 + 4, stats.getDroppedFrames());
+        assertEquals(0.5, stats.getJankRatio(), 1e-9);
+        assertEquals(5 * FRAME, stats.getLongestFrameNanos());
+        // 16.7 and 18.7 ms, 33.3 ms and 83.3 ms
+        assertEquals(2, stats.getBucket(2));
+        assertEquals(1, stats.getBucket(4));
+        assertEquals(1, stats.getBucket(5));
+    }
+
+    @Test
+    public void slowestBinds_areKeptInOrder() {
+        FrameStats stats = new FrameStats(FRAME);
+        for (int position = 0; position < 20; position++) {
+            stats.recordBind(position, (position % 7) * MILLI);
+        }
+
+        assertEquals(20, stats.getBinds());
+        assertEquals(6 * MILLI, stats.getSlowestBindNanos());
+        assertTrue(stats.summary(), stats.summary().contains("slowest #6:6.00ms #13:6.00ms #5:5.00ms #12:5.00ms #19:5.00ms"));
+
+        stats.reset();
+        assertEquals(0, stats.getBinds());
+        assertEquals(0, stats.getSlowestBindNanos());
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link InFlightRequests} shares identical requests between callers and only
+ * aborts a request once nobody waits for it anymore.
+ */
+public class InFlightRequestsTest {
+
+    /**
+     * Fetcher that blocks until released or canceled and counts its fetches
+     */
+    private static class BlockingFetcher implements InFlightRequests.Fetcher<String> {
+        final AtomicInteger fetches = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean aborted;
+
+        @Override
+        public String fetch(String key, final CancellationToken token) throws IOException {
+            fetches.incrementAndGet();
+            token.addOnCancelListener(new Runnable() {
+                @Override
+                public void run() {
+                    aborted = true;
+                    release.countDown();
+                }
+            });
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            token.throwIfCanceled();
+            return "result of " + key;
+        }
+    }
+
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    private Future<String> get(final InFlightRequests<String> requests, final String key,
+                               final CancellationToken caller) {
+        return mExecutor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return requests.get(key, caller);
+            }
+        });
+    }
+
+    @Test
+    public void fetch_isRecordedAgainstTheLoadOfItsCaller() throws IOException {
+        final long[] fetchedLoad = new long[1];
+        InFlightRequests<String> requests = new InFlightRequests<>(new InFlightRequests.Fetcher<String>() {
+            @Override
+            public String fetch(String key, CancellationToken token) {
+                fetchedLoad[0] = CancellationToken.loadIdOf(token);
+                return key;
+            }
+        });
+        CancellationToken caller = new CancellationToken();
+        caller.setLoadId(7);
+
+        requests.get("a", caller);
+        assertEquals(7, fetchedLoad[0]);
+        requests.get("b", null);
+        assertEquals(LoadMetrics.NO_LOAD, fetchedLoad[0]);
+    }
+
+    @Test
+    public void identicalRequests_shareOneFetch() throws Exception {
+        BlockingFetcher fetcher = new BlockingFetcher();
+        InFlightRequests<String> requests = new InFlightRequests<>(fetcher);
+
+        Future<String> first = get(requests, "a", null);
+        fetcher.started.await(5, TimeUnit.SECONDS);
+        Future<String> second = get(requests, "a", null);
+        Thread.sleep(50);
+        fetcher.release.countDown();
+
+        assertEquals("result of a", first.get(5, TimeUnit.SECONDS));
+        assertEquals("result of a", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, fetcher.fetches.get());
+        assertEquals(0, requests.size());
+    }
+
+    @Test
+    public void completedRequest_isFetchedAgain() throws Exception {
+        BlockingFetcher fetcher = new BlockingFetcher();
+        fetcher.release.countDown();
+        InFlightRequests<String> requests = new InFlightRequests<>(fetcher);
+
+        requests.get("a", null);
+        requests.get("a", null);
+
+        assertEquals(2, fetcher.fetches.get());
+    }
+
+    @Test
+    public void oneCallerCanceling_keepsSharedFetch() throws Exception {
+        BlockingFetcher fetcher = new BlockingFetcher();
+        InFlightRequests<String> requests = new InFlightRequests<>(fetcher);
+        CancellationToken firstCaller = new CancellationToken();
+
+        Future<String> first = get(requests, "a", firstCaller);
+        fetcher.started.await(5, TimeUnit.SECONDS);
+        Future<String> second = get(requests, "a", new CancellationToken());
+        Thread.sleep(50);
+
+        firstCaller.cancel();
+        assertFalse(fetcher.aborted);
+        fetcher.release.countDown();
+
+        assertEquals("result of a", second.get(5, TimeUnit.SECONDS));
+        try {
+            first.get(5, TimeUnit.SECONDS);
+            fail("Canceled caller got a result");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof InterruptedIOException);
+        }
+    }
+
+    @Test
+    public void allCallersCanceling_abortsFetch() throws Exception {
+        BlockingFetcher fetcher = new BlockingFetcher();
+        InFlightRequests<String> requests = new InFlightRequests<>(fetcher);
+        CancellationToken firstCaller = new CancellationToken();
+        CancellationToken secondCaller = new CancellationToken();
+
+        Future<String> first = get(requests, "a", firstCaller);
+        fetcher.started.await(5, TimeUnit.SECONDS);
+        Future<String> second = get(requests, "a", secondCaller);
+        Thread.sleep(50);
+
+        firstCaller.cancel();
+        secondCaller.cancel();
+
+        assertTrue(fetcher.aborted);
+        assertEquals(0, requests.size());
+        for (Future<String> future : Arrays.asList(first, second)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("Aborted request returned a result");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof InterruptedIOException);
+            }
+        }
+    }
+}
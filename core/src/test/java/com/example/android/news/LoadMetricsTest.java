@@ -0,0 +1,77 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how {@link LoadMetrics} combines the requests of a load and overwrites old loads.
+ */
+public class LoadMetricsTest {
+
+    @Test
+    public void parallelRequests_keepLongestStageAndSumPayload() {
+        LoadMetrics metrics = new LoadMetrics(4);
+        long load = metrics.begin(1000);
+        CancellationToken a = new CancellationToken();
+        a.setLoadId(load);
+        CancellationToken b = new CancellationToken();
+        b.setLoadId(load);
+
+        metrics.recordStage(CancellationToken.loadIdOf(a), LoadMetrics.STAGE_CONNECT, 30);
+        metrics.recordStage(CancellationToken.loadIdOf(b), LoadMetrics.STAGE_CONNECT, 50);
+        metrics.recordPayload(load, 100, 2);
+        metrics.recordPayload(load, 200, 3);
+        metrics.recordCache(load, LoadMetrics.CACHE_MISS);
+        metrics.recordCache(load, LoadMetrics.CACHE_HIT);
+
+        assertEquals(50, metrics.percentile(LoadMetrics.STAGE_CONNECT, 50));
+        assertEquals(-1, metrics.percentile(LoadMetrics.STAGE_PARSE, 50));
+        assertEquals(300, metrics.totalBytes());
+        assertEquals(1, metrics.countCache(LoadMetrics.CACHE_MISS));
+
+        // Without a load the values are dropped
+        metrics.recordStage(CancellationToken.loadIdOf(null), LoadMetrics.STAGE_PARSE, 10);
+        assertEquals(-1, metrics.percentile(LoadMetrics.STAGE_PARSE, 50));
+    }
+
+    @Test
+    public void fullBuffer_overwritesOldestLoad() {
+        LoadMetrics metrics = new LoadMetrics(4);
+        long first = metrics.begin(0);
+        for (int i = 1; i <= 5; i++) {
+            metrics.recordStage(metrics.begin(i), LoadMetrics.STAGE_TOTAL, i * 10);
+        }
+        // Recording for an overwritten load is ignored
+        metrics.recordStage(first, LoadMetrics.STAGE_TOTAL, 1000);
+
+        assertEquals(4, metrics.size());
+        assertEquals(20, metrics.percentile(LoadMetrics.STAGE_TOTAL, 0));
+        assertEquals(30, metrics.percentile(LoadMetrics.STAGE_TOTAL, 50));
+        assertEquals(50, metrics.percentile(LoadMetrics.STAGE_TOTAL, 99));
+    }
+
+    @Test
+    public void writeCsv_listsLoadsOldestFirst() throws IOException {
+        LoadMetrics metrics = new LoadMetrics(2);
+        metrics.begin(10);
+        long second = metrics.begin(20);
+        long third = metrics.begin(30);
+        metrics.recordStage(second, LoadMetrics.STAGE_CONNECT, 2000);
+        metrics.recordPayload(third, 512, 10);
+        metrics.recordCache(third, LoadMetrics.CACHE_REVALIDATED);
+
+        StringWriter writer = new StringWriter();
+        metrics.writeCsv(writer);
+
+        String[] lines = writer.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("id,start_time,connect_us,first_byte_us,download_us,parse_us,bind_us,total_us,"
+                + "bytes,articles,cache", lines[0]);
+        assertEquals("1,20,2,,,,,,0,0,none", lines[1]);
+        assertEquals("2,30,,,,,,,512,10,revalidated", lines[2]);
+    }
+}
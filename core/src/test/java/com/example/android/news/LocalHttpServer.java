@@ -0,0 +1,159 @@
+package com.example.android.news;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal HTTP/1.1 server on the loopback interface, standing in for the guardianapis
+ * endpoint in unit tests. Every request is answered by the {@link Handler} and recorded.
+ */
+class LocalHttpServer {
+
+    interface Handler {
+        Response handle(Request request) throws IOException;
+    }
+
+    static class Request {
+        final String path;
+        /**
+         * Header names are lower case
+         */
+        final Map<String, String> headers;
+
+        Request(String path, Map<String, String> headers) {
+            this.path = path;
+            this.headers = headers;
+        }
+
+        String header(String name) {
+            return headers.get(name.toLowerCase());
+        }
+    }
+
+    static class Response {
+        final int code;
+        final Map<String, String> headers = new LinkedHashMap<>();
+        final byte[] body;
+
+        Response(int code, byte[] body) {
+            this.code = code;
+            this.body = body;
+        }
+
+        Response header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+    }
+
+    private final ServerSocket mServerSocket;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final List<Request> mRequests = Collections.synchronizedList(new ArrayList<Request>());
+    private volatile Handler mHandler;
+
+    LocalHttpServer(Handler handler) throws IOException {
+        mHandler = handler;
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        });
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + path;
+    }
+
+    void setHandler(Handler handler) {
+        mHandler = handler;
+    }
+
+    List<Request> requests() {
+        synchronized (mRequests) {
+            return new ArrayList<>(mRequests);
+        }
+    }
+
+    void shutdown() throws IOException {
+        mServerSocket.close();
+        mExecutor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                final Socket socket = mServerSocket.accept();
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), Charset.forName("ISO-8859-1")));
+            OutputStream out = socket.getOutputStream();
+            String requestLine;
+            // Keep-alive: serve requests on this socket until the client closes it
+            while ((requestLine = reader.readLine()) != null && !requestLine.isEmpty()) {
+                Map<String, String> headers = new HashMap<>();
+                String line;
+                while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                    int colon = line.indexOf(':');
+                    headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+                }
+                Request request = new Request(requestLine.split(" ")[1], headers);
+                mRequests.add(request);
+
+                Response response = mHandler.handle(request);
+                if (response == null) {
+                    // Drop the connection without answering
+                    return;
+                }
+                StringBuilder head = new StringBuilder();
+                head.append("HTTP/1.1 ").append(response.code).append(" X\r\n");
+                for (Map.Entry<String, String> header : response.headers.entrySet()) {
+                    head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+                }
+                byte[] body = response.body != null ? response.body : new byte[0];
+                head.append("Content-Length: ").append(body.length).append("\r\n\r\n");
+                out.write(head.toString().getBytes(Charset.forName("ISO-8859-1")));
+                out.write(body);
+                out.flush();
+            }
+        } catch (SocketException e) {
+            // Client went away
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
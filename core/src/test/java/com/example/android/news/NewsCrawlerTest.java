@@ -0,0 +1,134 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Crawls a fake search answered from memory, with five articles published every day.
+ */
+public class NewsCrawlerTest {
+
+    private static final int ARTICLES_PER_DAY = 5;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Answers searches like the guardianapis would, counting the requests running at once
+     */
+    private static class FakeSearch implements NewsTransport {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Set<String> failingUrls = new HashSet<>();
+
+        @Override
+        public InputStream openStream(URL url, CancellationToken token) throws IOException {
+            int now = running.incrementAndGet();
+            try {
+                maxRunning.set(Math.max(maxRunning.get(), now));
+                Thread.sleep(5);
+                if (failingUrls.contains(url.toString())) {
+                    throw new IOException("Injected failure");
+                }
+                return new ByteArrayInputStream(respond(query(url)).getBytes(Charset.forName("UTF-8")));
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        private static Map<String, String> query(URL url) {
+            Map<String, String> parameters = new HashMap<>();
+            for (String parameter : url.getQuery().split("&")) {
+                String[] pair = parameter.split("=", 2);
+                parameters.put(pair[0], pair[1]);
+            }
+            return parameters;
+        }
+
+        private static String respond(Map<String, String> query) {
+            long from = NewsCrawler.parseDay(query.get("from-date"));
+            long to = NewsCrawler.parseDay(query.get("to-date"));
+            int pageSize = Integer.parseInt(query.get("page-size"));
+            int page = Integer.parseInt(query.get("page"));
+            int total = (int) ((to - from) / DAY + 1) * ARTICLES_PER_DAY;
+            int pages = (total + pageSize - 1) / pageSize;
+
+            StringBuilder results = new StringBuilder();
+            for (int i = (page - 1) * pageSize; i < Math.min(total, page * pageSize); i++) {
+                long day = from / DAY + i / ARTICLES_PER_DAY;
+                if (results.length() > 0) {
+                    results.append(',');
+                }
+                results.append("{\"id\":\"day").append(day).append("-").append(i % ARTICLES_PER_DAY)
+                        .append("\",\"webTitle\":\"Article\",\"webPublicationDate\":\"")
+                        .append(query.get("from-date")).append("T12:00:00Z\"}");
+            }
+            return "{\"response\":{\"total\":" + total + ",\"currentPage\":" + page + ",\"pages\":" + pages
+                    + ",\"results\":[" + results + "]}}";
+        }
+    }
+
+    @Test
+    public void crawl_writesEveryArticleOnceWithinConcurrency() throws Exception {
+        FakeSearch search = new FakeSearch();
+        NewsCrawler crawler = new NewsCrawler(search, "http://localhost/search", "test", null, null, 2, 3, null);
+        StringWriter out = new StringWriter();
+
+        NewsCrawler.Result result = crawler.crawl("2018-07-01", "2018-07-07", 3, out);
+
+        String[] lines = out.toString().split("\n");
+        Set<String> ids = new HashSet<>();
+        for (String line : lines) {
+            NewsPage page = NewsParser.parse(new ByteArrayInputStream(
+                    ("{\"response\":{\"results\":[" + line + "]}}").getBytes(Charset.forName("UTF-8"))));
+            assertTrue(line, page.isComplete());
+            ids.add(page.getNews().get(0).getId());
+        }
+        assertEquals(7 * ARTICLES_PER_DAY, lines.length);
+        assertEquals(7 * ARTICLES_PER_DAY, ids.size());
+        assertEquals(7 * ARTICLES_PER_DAY, result.articles);
+        // 15, 15 and 5 articles in slices of 3, 3 and 1 days
+        assertEquals(8 + 8 + 3, result.pages);
+        assertEquals(0, result.failedPages);
+        assertTrue(search.maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void failedPage_isSkipped() throws Exception {
+        FakeSearch search = new FakeSearch();
+        NewsCrawler crawler = new NewsCrawler(search, "http://localhost/search", "test", null, null, 2, 2,
+                null);
+        search.failingUrls.add(crawler.pageUrl("2018-07-01", "2018-07-01", 2));
+        StringWriter out = new StringWriter();
+
+        NewsCrawler.Result result = crawler.crawl("2018-07-01", "2018-07-01", 1, out);
+
+        assertEquals(1, result.failedPages);
+        assertEquals(2, result.pages);
+        assertEquals(ARTICLES_PER_DAY - 2, result.articles);
+    }
+
+    @Test
+    public void pageUrl_searchesOldestFirstWithContributors() {
+        NewsCrawler crawler = new NewsCrawler(new FakeSearch(), "https://content.guardianapis.com/search", "key",
+                "tech news", "technology", 200, 1, null);
+
+        assertEquals("https://content.guardianapis.com/search?from-date=2018-07-01&to-date=2018-07-07"
+                        + "&order-by=oldest&show-tags=contributor&show-fields=thumbnail&page-size=200&page=3&q=tech%20news"
+                        + "&section=technology&api-key=key",
+                crawler.pageUrl("2018-07-01", "2018-07-07", 3));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the allocation free ISO-8601 parser of {@link NewsDates} against SimpleDateFormat.
+ */
+public class NewsDatesTest {
+
+    private static long parseWithSimpleDateFormat(String text) throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssXXX", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.parse(text).getTime();
+    }
+
+    @Test
+    public void parse_matchesSimpleDateFormat() throws ParseException {
+        String[] dates = {
+                "2018-07-18T15:26:43Z",
+                "1970-01-01T00:00:00Z",
+                "2000-02-29T23:59:59Z",
+                "1969-12-31T23:59:59Z",
+                "2100-03-01T12:00:00Z",
+                "2018-12-31T00:00:01+02:00",
+                "2018-01-01T00:00:01-05:30"};
+        for (String date : dates) {
+            assertEquals(date, parseWithSimpleDateFormat(date), NewsDates.parseIso8601(date));
+        }
+    }
+
+    @Test
+    public void parse_fractionalSecondsAndMissingOffset() {
+        long base = NewsDates.parseIso8601("2018-07-18T15:26:43Z");
+        assertEquals(base + 500, NewsDates.parseIso8601("2018-07-18T15:26:43.5Z"));
+        assertEquals(base + 123, NewsDates.parseIso8601("2018-07-18T15:26:43.123456Z"));
+        assertEquals(base, NewsDates.parseIso8601("2018-07-18T15:26:43"));
+    }
+
+    @Test
+    public void parse_invalidInput() {
+        String[] invalid = {
+                null,
+                "",
+                "Wed, Jul 18, '18",
+                "2018-07-18",
+                "2018-13-18T15:26:43Z",
+                "2018-02-29T15:26:43Z",
+                "2018-07-18T24:00:00Z",
+                "2018-07-18T15:26:43.Z",
+                "2018-07-18T15:26:43Zjunk",
+                "2018-07-18T15:26:43+0200"};
+        for (String date : invalid) {
+            assertEquals(String.valueOf(date), NewsDates.INVALID, NewsDates.parseIso8601(date));
+        }
+    }
+
+    @Test
+    public void formatForDisplay_sameDaySharesText() {
+        long morning = NewsDates.parseIso8601("2018-07-18T12:00:00Z");
+        String text = NewsDates.formatForDisplay(morning);
+
+        assertSame(text, NewsDates.formatForDisplay(morning + 1000));
+        assertEquals("", NewsDates.formatForDisplay(NewsDates.INVALID));
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks retries, Retry-After and the circuit breaker of {@link NewsHttpClient} against a
+ * {@link LocalHttpServer} that injects faults into its first answers.
+ */
+public class NewsHttpClientRetryTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String FEED = "{\"response\":{\"results\":[]}}";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private LocalHttpServer mServer;
+    private NewsHttpClient mClient;
+    private long mNow;
+
+    private final SyncPolicy.Clock mClock = new SyncPolicy.Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return mNow;
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        mClient = new NewsHttpClient(new NewsResponseCache(mTemporaryFolder.newFolder("http"), 1024 * 1024), 1000, 1000);
+        mClient.setRetryPolicy(new RetryPolicy(3, 10, 2000, new Random(42)));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (mServer != null) {
+            mServer.shutdown();
+        }
+    }
+
+    /**
+     * Answers the first requests with the given fault, then with the feed
+     */
+    private static LocalHttpServer.Handler failFirst(final int failures, final LocalHttpServer.Response fault) {
+        final AtomicInteger count = new AtomicInteger();
+        return new LocalHttpServer.Handler() {
+            @Override
+            public LocalHttpServer.Response handle(LocalHttpServer.Request request) {
+                if (count.getAndIncrement() < failures) {
+                    return fault;
+                }
+                return new LocalHttpServer.Response(200, FEED.getBytes(UTF_8))
+                        .header("Cache-Control", "no-cache");
+            }
+        };
+    }
+
+    /**
+     * Answers every request with the given fault
+     */
+    private static LocalHttpServer.Handler failAlways(LocalHttpServer.Response fault) {
+        return failFirst(Integer.MAX_VALUE, fault);
+    }
+
+    @Test
+    public void serverErrors_areRetried() throws IOException {
+        mServer = new LocalHttpServer(failFirst(2, new LocalHttpServer.Response(503, null)));
+
+        assertEquals(FEED, read(mClient.openStream(new URL(mServer.url("/search")))));
+        assertEquals(3, mServer.requests().size());
+    }
+
+    @Test
+    public void everyNetworkAttempt_passesTheGate() throws IOException {
+        mServer = new LocalHttpServer(new LocalHttpServer.Handler() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public LocalHttpServer.Response handle(LocalHttpServer.Request request) {
+                if (mCount.getAndIncrement() < 2) {
+                    return new LocalHttpServer.Response(503, null);
+                }
+                return new LocalHttpServer.Response(200, FEED.getBytes(UTF_8))
+                        .header("Cache-Control", "max-age=60");
+            }
+        });
+        final StringBuilder attempts = new StringBuilder();
+        NewsHttpClient.AttemptGate gate = new NewsHttpClient.AttemptGate() {
+            @Override
+            public void awaitAttempt(URL url, int attempt, CancellationToken token) {
+                attempts.append(attempt);
+            }
+        };
+        URL url = new URL(mServer.url("/search"));
+
+        assertEquals(FEED, read(mClient.openStream(url, null, gate)));
+        assertEquals("123", attempts.toString());
+
+        // A fresh cached response makes no attempt
+        assertEquals(FEED, read(mClient.openStream(url, null, gate)));
+        assertEquals(FEED, read(mClient.openFresh(url)));
+        assertEquals("123", attempts.toString());
+        assertEquals(3, mServer.requests().size());
+    }
+
+    @Test
+    public void droppedConnection_isRetried() throws IOException {
+        // A null response closes the socket without answering
+        mServer = new LocalHttpServer(failFirst(1, null));
+
+        assertEquals(FEED, read(mClient.openStream(new URL(mServer.url("/search")))));
+        assertEquals(2, mServer.requests().size());
+    }
+
+    @Test
+    public void retryAfter_isWaitedFor() throws IOException {
+        mServer = new LocalHttpServer(failFirst(1,
+                new LocalHttpServer.Response(429, null).header("Retry-After", "1")));
+
+        long start = System.nanoTime();
+        assertEquals(FEED, read(mClient.openStream(new URL(mServer.url("/search")))));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 1000);
+        assertEquals(2, mServer.requests().size());
+    }
+
+    @Test
+    public void longRetryAfter_failsWithoutRetry() throws IOException {
+        mServer = new LocalHttpServer(failAlways(
+                new LocalHttpServer.Response(503, null).header("Retry-After", "3600")));
+
+        try {
+            mClient.openStream(new URL(mServer.url("/search")));
+            fail("Failed request returned a body");
+        } catch (NewsHttpClient.HttpStatusException expected) {
+            assertEquals(503, expected.getResponseCode());
+            assertEquals(3600 * 1000, expected.getRetryAfterMillis());
+        }
+        assertEquals(1, mServer.requests().size());
+    }
+
+    @Test
+    public void clientError_isNotRetried() throws IOException {
+        mServer = new LocalHttpServer(failAlways(new LocalHttpServer.Response(404, null)));
+
+        try {
+            mClient.openStream(new URL(mServer.url("/search")));
+            fail("Failed request returned a body");
+        } catch (NewsHttpClient.HttpStatusException expected) {
+            assertEquals(404, expected.getResponseCode());
+        }
+        assertEquals(1, mServer.requests().size());
+    }
+
+    @Test
+    public void persistentFailures_giveUpAfterMaxAttempts() throws IOException {
+        mServer = new LocalHttpServer(failAlways(new LocalHttpServer.Response(500, null)));
+
+        try {
+            mClient.openStream(new URL(mServer.url("/search")));
+            fail("Failed request returned a body");
+        } catch (NewsHttpClient.HttpStatusException expected) {
+            assertEquals(500, expected.getResponseCode());
+        }
+        assertEquals(3, mServer.requests().size());
+    }
+
+    @Test
+    public void openCircuit_servesLastGoodResponseWithoutRequests() throws IOException {
+        mClient.setCircuitBreaker(new CircuitBreaker(mClock, 3, 30000));
+        mServer = new LocalHttpServer(failFirst(0, null));
+        URL url = new URL(mServer.url("/search"));
+        assertEquals(FEED, read(mClient.openStream(url)));
+
+        // The upstream goes down: three failed attempts open the circuit, the stale
+        // cached response is served instead
+        mServer.setHandler(failAlways(new LocalHttpServer.Response(502, null)));
+        assertEquals(FEED, read(mClient.openStream(url)));
+        assertEquals(4, mServer.requests().size());
+
+        // While open, requests fail fast
+        assertEquals(FEED, read(mClient.openStream(url)));
+        assertEquals(4, mServer.requests().size());
+
+        // After the open time a trial request closes the circuit again
+        mServer.setHandler(failFirst(0, null));
+        mNow += 30000;
+        assertEquals(FEED, read(mClient.openStream(url)));
+        assertEquals(5, mServer.requests().size());
+        assertEquals(FEED, read(mClient.openStream(url)));
+        assertEquals(6, mServer.requests().size());
+    }
+
+    @Test
+    public void failedTrial_reopensCircuit() throws IOException {
+        CircuitBreaker breaker = new CircuitBreaker(mClock, 2, 1000);
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+
+        mNow += 1000;
+        assertTrue(breaker.allowRequest());
+        // Only one trial at a time
+        assertFalse(breaker.allowRequest());
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+
+        mNow += 1000;
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void backoff_isJitteredBelowExponentialBound() {
+        RetryPolicy policy = new RetryPolicy(5, 100, 1000, new Random(7));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.delayMillis(1, -1) < 100);
+            assertTrue(policy.delayMillis(3, -1) < 400);
+            assertTrue(policy.delayMillis(4, -1) < 800);
+            assertTrue(policy.delayMillis(4, 900) >= 900);
+        }
+        assertEquals(RetryPolicy.NO_RETRY, policy.delayMillis(5, -1));
+        assertEquals(RetryPolicy.NO_RETRY, policy.delayMillis(1, 1001));
+    }
+
+    @Test
+    public void retryAfter_parsesSecondsAndDates() {
+        long now = 1531908000000L; // Wed, 18 Jul 2018 10:00:00 GMT
+        assertEquals(120000, RetryPolicy.parseRetryAfter("120", now));
+        assertEquals(90000, RetryPolicy.parseRetryAfter("Wed, 18 Jul 2018 10:01:30 GMT", now));
+        assertEquals(0, RetryPolicy.parseRetryAfter("Wed, 18 Jul 2018 09:00:00 GMT", now));
+        assertEquals(-1, RetryPolicy.parseRetryAfter("soon", now));
+        assertEquals(-1, RetryPolicy.parseRetryAfter(null, now));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+}
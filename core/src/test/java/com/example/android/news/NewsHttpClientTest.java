@@ -0,0 +1,240 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks caching, revalidation, gzip handling and cancellation of {@link NewsHttpClient}
+ * against a {@link LocalHttpServer}.
+ */
+public class NewsHttpClientTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String FEED = "{\"response\":{\"results\":[]}}";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private LocalHttpServer mServer;
+    private NewsHttpClient mClient;
+
+    @Before
+    public void setUp() throws IOException {
+        mClient = new NewsHttpClient(new NewsResponseCache(mTemporaryFolder.newFolder("http"), 1024 * 1024), 1000, 1000);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (mServer != null) {
+            mServer.shutdown();
+        }
+    }
+
+    @Test
+    public void notModified_servesBodyFromCache() throws IOException {
+        mServer = new LocalHttpServer(new LocalHttpServer.Handler() {
+            @Override
+            public LocalHttpServer.Response handle(LocalHttpServer.Request request) {
+                if ("\"v1\"".equals(request.header("If-None-Match"))) {
+                    return new LocalHttpServer.Response(304, null);
+                }
+                return new LocalHttpServer.Response(200, FEED.getBytes(UTF_8))
+                        .header("ETag", "\"v1\"")
+                        .header("Cache-Control", "no-cache");
+            }
+        });
+        URL url = new URL(mServer.url("/search"));
+
+        assertEquals(FEED, read(mClient.openStream(url)));
+        assertEquals(FEED, read(mClient.openStream(url)));
+
+        assertEquals(2, mServer.requests().size());
+        assertNull(mServer.requests().get(0).header("If-None-Match"));
+        assertEquals("\"v1\"", mServer.requests().get(1).header("If-None-Match"));
+    }
+
+    @Test
+    public void lastModified_isSentAsIfModifiedSince() throws IOException {
+        final String lastModified = "Wed, 18 Jul 2018 10:00:00 GMT";
+        mServer = new LocalHttpServer(new LocalHttpServer.Handler() {
+            @Override
+            public LocalHttpServer.Response handle(LocalHttpServer.Request request) {
+                if (lastModified.equals(request.header("If-Modified-Since"))) {
+                    return new LocalHttpServer.Response(304, null);
+                }
+                return new LocalHttpServer.Response(200, FEED.getBytes(UTF_8))
+                        .header("Last-Modified", lastModified);
+            }
+        });
+        URL url = new URL(mServer.url("/search"));
+
+        assertEquals(FEED, read(mClient.openStream(url)));
+        assertEquals(FEED, read(mClient.openStream(url)));
+        assertEquals(lastModified, mServer.requests().get(1).header("If-Modified-Since"));
+    }
+
+    @Test
+    public void maxAge_skipsNetworkWhileFresh() throws IOException {
+        mServer = new LocalHttpServer(new LocalHttpServer.Handler() {
+            @Override
+            public LocalHttpServer.Response handle(LocalHttpServer.Request request) {
+                return new LocalHttpServer.Response(200, FEED.getBytes(UTF_8))
+                        .header("Cache-Control", "public, max-age=60");
+            }
+        });
+        URL url = new URL(mServer.url("/search"));
+
+        assertEquals(FEED, read(mClient.openStream(url)));
+        assertEquals(FEED, read(mClient.openStream(url)));
+        assertEquals(1, mServer.requests().size());
+    }
+
+    @Test
+    public void gzipResponse_isDecoded() throws IOException {
+        mServer = new LocalHttpServer(new LocalHttpServer.Handler() {
+            @Override
+            public LocalHttpServer.Response handle(LocalHttpServer.Request request) throws IOException {
+                assertEquals("gzip", request.header("Accept-Encoding"));
+                return new LocalHttpServer.Response(200, gzip(FEED.getBytes(UTF_8)))
+                        .header("Content-Encoding", "gzip");
+            }
+        });
+
+        assertEquals(FEED, read(mClient.openStream(new URL(mServer.url("/search")))));
+    }
+
+    @Test
+    public void bandwidthLimiter_booksTheCompressedBytes() throws IOException {
+        StringBuilder feed = new StringBuilder(FEED);
+        for (int i = 0; i < 10000; i++) {
+            feed.append(' ');
+        }
+        final byte[] compressed = gzip(feed.toString().getBytes(UTF_8));
+        mServer = new LocalHttpServer(new LocalHttpServer.Handler() {
+            @Override
+            public LocalHttpServer.Response handle(LocalHttpServer.Request request) {
+                return new LocalHttpServer.Response(200, compressed).header("Content-Encoding", "gzip");
+            }
+        });
+        final long[] booked = new long[1];
+        mClient.setBandwidthLimiter(new BandwidthLimiter(Long.MAX_VALUE) {
+            @Override
+            void acquire(long bytes, CancellationToken token) {
+                booked[0] += bytes;
+            }
+        });
+
+        assertEquals(feed.toString(), read(mClient.openStream(new URL(mServer.url("/search")))));
+        assertEquals(compressed.length, booked[0]);
+    }
+
+    @Test(expected = IOException.class)
+    public void errorResponse_throws() throws IOException {
+        mServer = new LocalHttpServer(new LocalHttpServer.Handler() {
+            @Override
+            public LocalHttpServer.Response handle(LocalHttpServer.Request request) {
+                return new LocalHttpServer.Response(500, null);
+            }
+        });
+
+        mClient.openStream(new URL(mServer.url("/search")));
+    }
+
+    @Test
+    public void cancel_abortsWaitingRequest() throws Exception {
+        final CountDownLatch received = new CountDownLatch(1);
+        mServer = new LocalHttpServer(new LocalHttpServer.Handler() {
+            @Override
+            public LocalHttpServer.Response handle(LocalHttpServer.Request request) throws IOException {
+                // Answer long after the client gave up
+                received.countDown();
+                try {
+                    Thread.sleep(3000);
+                } catch (InterruptedException e) {
+                    return null;
+                }
+                return new LocalHttpServer.Response(200, FEED.getBytes(UTF_8));
+            }
+        });
+        NewsHttpClient client = new NewsHttpClient(null, 5000, 5000);
+        final CancellationToken token = new CancellationToken();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    received.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+                token.cancel();
+            }
+        }).start();
+
+        long start = System.nanoTime();
+        try {
+            client.openStream(new URL(mServer.url("/search")), token);
+            fail("Canceled request returned a body");
+        } catch (InterruptedIOException expected) {
+            // Aborted instead of waiting for the response or the read timeout
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+    }
+
+    @Test(expected = InterruptedIOException.class)
+    public void canceledToken_sendsNoRequest() throws IOException {
+        mServer = new LocalHttpServer(new LocalHttpServer.Handler() {
+            @Override
+            public LocalHttpServer.Response handle(LocalHttpServer.Request request) {
+                throw new AssertionError("Request sent");
+            }
+        });
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+
+        mClient.openStream(new URL(mServer.url("/search")), token);
+    }
+
+    @Test
+    public void maxAgeMillis_parsesCacheControl() {
+        assertEquals(0, NewsHttpClient.maxAgeMillis(null));
+        assertEquals(60000, NewsHttpClient.maxAgeMillis("public, max-age=60"));
+        assertEquals(0, NewsHttpClient.maxAgeMillis("max-age=60, no-cache"));
+        assertEquals(0, NewsHttpClient.maxAgeMillis("max-age=abc"));
+    }
+
+    static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+
+    static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(data);
+        gzip.close();
+        return out.toByteArray();
+    }
+}
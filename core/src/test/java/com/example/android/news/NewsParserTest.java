@@ -0,0 +1,81 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * Parses the recorded guardianapis responses on the JVM.
+ */
+public class NewsParserTest {
+
+    private static InputStream openFixture(String name) {
+        return NewsParserTest.class.getClassLoader().getResourceAsStream(name);
+    }
+
+    @Test
+    public void recordedResponse_isParsedWithPaging() throws IOException {
+        NewsPage page = NewsParser.parse(openFixture("guardian_search.json"));
+
+        assertTrue(page.isComplete());
+        assertEquals(1, page.getCurrentPage());
+        assertEquals(1, page.getPages());
+        assertEquals(4, page.getTotal());
+        assertEquals(4, page.getNews().size());
+
+        TechNews first = page.getNews().get(0);
+        assertEquals("technology/2018/jul/18/google-fined-eu-android-antitrust", first.getId());
+        assertEquals("Technology", first.getSection());
+        assertEquals("Alex Hern", first.getAuthor());
+        assertEquals(NewsDates.parseIso8601("2018-07-18T15:26:43Z"), first.getPublishedAt());
+        // Only the first contributor is kept, a result without tags has no known author
+        assertEquals("Rob Davies", page.getNews().get(1).getAuthor());
+        assertEquals(NewsParser.UNKNOWN_AUTHOR, page.getNews().get(2).getAuthor());
+    }
+
+    @Test
+    public void emptyResponse_hasNoNews() throws IOException {
+        NewsPage page = NewsParser.parse(openFixture("guardian_search_empty.json"));
+
+        assertTrue(page.isComplete());
+        assertEquals(0, page.getPages());
+        assertTrue(page.getNews().isEmpty());
+    }
+
+    @Test
+    public void thumbnailField_isRead() throws IOException {
+        String json = "{\"response\":{\"results\":[{\"id\":\"a\",\"fields\":{\"thumbnail\":"
+                + "\"https://media.guim.co.uk/a/500.jpg\",\"other\":1}},{\"id\":\"b\"}]}}";
+        NewsPage page = NewsParser.parse(new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8"))));
+
+        assertEquals("https://media.guim.co.uk/a/500.jpg", page.getNews().get(0).getThumbnailUrl());
+        assertNull(page.getNews().get(1).getThumbnailUrl());
+    }
+
+    @Test
+    public void itemResponse_bodyIsRead() throws IOException {
+        String json = "{\"response\":{\"status\":\"ok\",\"content\":{\"id\":\"a\",\"fields\":"
+                + "{\"headline\":\"A\",\"body\":\"<p>Text</p>\"},\"tags\":[]}}}";
+        assertEquals("<p>Text</p>", NewsParser.parseBody(
+                new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8")))));
+
+        String withoutBody = "{\"response\":{\"content\":{\"id\":\"a\"}}}";
+        assertNull(NewsParser.parseBody(new ByteArrayInputStream(withoutBody.getBytes(Charset.forName("UTF-8")))));
+    }
+
+    @Test
+    public void truncatedResponse_keepsNewsReadBeforeTheError() throws IOException {
+        String json = "{\"response\":{\"pages\":3,\"results\":[{\"id\":\"a\",\"webTitle\":\"First\"},{\"id\":\"b\",]}";
+        NewsPage page = NewsParser.parse(new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8"))));
+
+        assertFalse(page.isComplete());
+        assertEquals(3, page.getPages());
+        assertEquals(1, page.getNews().size());
+        assertEquals("a", page.getNews().get(0).getId());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.android.news;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the size cap of {@link NewsResponseCache}, that a body is only published together
+ * with its validators, and that delta sync responses aren't kept.
+ */
+public class NewsResponseCacheTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String URL = "https://content.guardianapis.com/search?section=technology&page=1";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private static NewsResponseCache.Entry put(NewsResponseCache cache, String url, String etag, String body)
+            throws IOException {
+        NewsResponseCache.Editor editor = cache.edit(url, etag, null, 0);
+        editor.getOutputStream().write(body.getBytes(UTF_8));
+        return editor.commit();
+    }
+
+    private static String read(NewsResponseCache.Entry entry) throws IOException {
+        InputStream in = entry.openBody();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void newBody_replacesTheOldOne() throws IOException {
+        File directory = mTemporaryFolder.newFolder("http");
+        NewsResponseCache cache = new NewsResponseCache(directory, 1024 * 1024);
+        put(cache, URL, "\"v1\"", "first body");
+        put(cache, URL, "\"v2\"", "second body");
+
+        NewsResponseCache.Entry entry = cache.get(URL);
+        assertEquals("\"v2\"", entry.getEtag());
+        assertEquals("second body", read(entry));
+        // The metadata and the new body
+        assertEquals(2, directory.listFiles().length);
+    }
+
+    @Test
+    public void bodyWithoutItsMetadata_isIgnored() throws IOException {
+        File directory = mTemporaryFolder.newFolder("http");
+        NewsResponseCache cache = new NewsResponseCache(directory, 1024 * 1024);
+        put(cache, URL, "\"v1\"", "first body");
+        // Left by a crash after the new body was renamed, before its metadata was written
+        FileOutputStream out = new FileOutputStream(new File(directory, NewsResponseCache.keyFor(URL) + "1.body"));
+        out.write("second body".getBytes(UTF_8));
+        out.close();
+
+        NewsResponseCache.Entry entry = cache.get(URL);
+        assertEquals("\"v1\"", entry.getEtag());
+        assertEquals("first body", read(entry));
+    }
+
+    @Test
+    public void leastRecentlyUsed_isEvictedPastTheSize() throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            body.append("0123456789");
+        }
+        File directory = mTemporaryFolder.newFolder("http");
+        NewsResponseCache cache = new NewsResponseCache(directory, 10 * 1024);
+        for (int page = 1; page <= 3; page++) {
+            put(cache, URL + "&page=" + page, null, body.toString());
+        }
+        // File times may only have a resolution of seconds
+        long hourAgo = System.currentTimeMillis() - 60 * 60 * 1000;
+        for (File file : directory.listFiles()) {
+            assertTrue(file.setLastModified(hourAgo));
+        }
+        assertNotNull(cache.get(URL + "&page=1"));
+        put(cache, URL + "&page=4", null, body.toString());
+
+        assertTrue(cache.size() <= 10 * 1024);
+        assertNotNull(cache.get(URL + "&page=1"));
+        assertNotNull(cache.get(URL + "&page=4"));
+        assertNull(cache.get(URL + "&page=2"));
+        assertNull(cache.get(URL + "&page=3"));
+    }
+
+    @Test
+    public void deltaUrls_areNotAccepted() {
+        NewsResponseCache cache = new NewsResponseCache(mTemporaryFolder.getRoot(), 1024);
+        assertTrue(cache.accepts(URL));
+        assertFalse(cache.accepts(DeltaFetcher.deltaUrl(URL, 0, 1)));
+    }
+}
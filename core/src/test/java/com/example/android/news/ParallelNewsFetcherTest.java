@@ -0,0 +1,144 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link ParallelNewsFetcher} runs feeds concurrently and merges them by date
+ * without duplicates.
+ */
+public class ParallelNewsFetcherTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    /**
+     * Fetcher answering every URL with fixed news after a fixed delay
+     */
+    private static class DelayedFetcher implements ParallelNewsFetcher.Fetcher {
+        final Map<String, List<TechNews>> feeds = new HashMap<>();
+        final Map<String, Long> delays = new HashMap<>();
+
+        DelayedFetcher feed(String url, long delayMillis, TechNews... news) {
+            feeds.put(url, news.length > 0 ? Arrays.asList(news) : null);
+            delays.put(url, delayMillis);
+            return this;
+        }
+
+        @Override
+        public List<TechNews> fetch(String url, CancellationToken token) {
+            try {
+                Thread.sleep(delays.get(url));
+            } catch (InterruptedException e) {
+                return null;
+            }
+            return feeds.get(url);
+        }
+    }
+
+    private static TechNews news(String id, long publishedAt) {
+        return new TechNews(id, "Technology", "Title " + id, publishedAt, null, "Author", "url/" + id);
+    }
+
+    private static List<String> ids(List<TechNews> news) {
+        List<String> ids = new ArrayList<>();
+        for (TechNews item : news) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void feeds_areMergedByDateWithoutDuplicates() {
+        DelayedFetcher fetcher = new DelayedFetcher()
+                .feed("technology", 10, news("a", 5 * HOUR), news("shared", 3 * HOUR), news("c", HOUR))
+                .feed("business", 20, news("d", 4 * HOUR), news("shared", 3 * HOUR), news("e", 2 * HOUR));
+
+        List<TechNews> merged = new ParallelNewsFetcher(4).fetchAll(
+                Arrays.asList("technology", "business"), true, fetcher, null, null);
+
+        assertEquals(Arrays.asList("a", "d", "shared", "e", "c"), ids(merged));
+    }
+
+    @Test
+    public void oldestFirst_isMergedAscending() {
+        DelayedFetcher fetcher = new DelayedFetcher()
+                .feed("technology", 0, news("b", 2 * HOUR), news("a", HOUR))
+                .feed("business", 0, news("c", 3 * HOUR), news("a2", HOUR));
+
+        List<TechNews> merged = new ParallelNewsFetcher(4).fetchAll(
+                Arrays.asList("technology", "business"), false, fetcher, null, null);
+
+        // Equal dates are ordered by id, like in the store
+        assertEquals(Arrays.asList("a", "a2", "b", "c"), ids(merged));
+    }
+
+    @Test
+    public void wallClock_approachesSlowestFeed() {
+        DelayedFetcher fetcher = new DelayedFetcher()
+                .feed("a", 200, news("a", HOUR))
+                .feed("b", 300, news("b", HOUR))
+                .feed("c", 400, news("c", HOUR));
+
+        long start = System.nanoTime();
+        List<TechNews> merged = new ParallelNewsFetcher(4).fetchAll(
+                Arrays.asList("a", "b", "c"), true, fetcher, null, null);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(3, merged.size());
+        assertTrue("took " + elapsed + " ms", elapsed < 700);
+    }
+
+    @Test
+    public void partialResults_arriveBeforeSlowestFeed() {
+        DelayedFetcher fetcher = new DelayedFetcher()
+                .feed("fast", 10, news("fast", HOUR))
+                .feed("slow", 500, news("slow", 2 * HOUR));
+        final long start = System.nanoTime();
+        final List<Long> partialTimes = new ArrayList<>();
+        final List<List<String>> partials = new ArrayList<>();
+
+        new ParallelNewsFetcher(4).fetchAll(Arrays.asList("slow", "fast"), true, fetcher, null,
+                new ParallelNewsFetcher.Listener() {
+                    @Override
+                    public void onPartialResult(List<TechNews> merged, int done, int total) {
+                        partialTimes.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        partials.add(ids(merged));
+                    }
+                });
+
+        assertEquals(1, partials.size());
+        assertEquals(Arrays.asList("fast"), partials.get(0));
+        assertTrue(partialTimes.get(0) < 400);
+    }
+
+    @Test
+    public void failedFeeds_areSkipped() {
+        DelayedFetcher fetcher = new DelayedFetcher()
+                .feed("ok", 0, news("a", HOUR))
+                .feed("failed", 0);
+        ParallelNewsFetcher parallelFetcher = new ParallelNewsFetcher(2);
+
+        assertEquals(Arrays.asList("a"), ids(parallelFetcher.fetchAll(
+                Arrays.asList("ok", "failed"), true, fetcher, null, null)));
+        assertNull(parallelFetcher.fetchAll(Arrays.asList("failed"), true, fetcher, null, null));
+    }
+
+    @Test
+    public void merge_dropsSeenIds() {
+        HashSet<String> seenIds = new HashSet<>();
+        List<TechNews> merged = ParallelNewsFetcher.merge(null,
+                Arrays.asList(news("a", HOUR), news("a", HOUR)), ParallelNewsFetcher.order(true), seenIds);
+
+        assertEquals(Arrays.asList("a"), ids(merged));
+        assertTrue(seenIds.contains("a"));
+    }
+}
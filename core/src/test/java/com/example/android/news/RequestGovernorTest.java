@@ -0,0 +1,245 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the quotas, the priorities and the combining of waiting requests of
+ * {@link RequestGovernor}, on the system clock.
+ */
+public class RequestGovernorTest {
+
+    private static final String SEARCH =
+            "https://content.guardianapis.com/search?q=technology&page-size=2&order-by=newest&api-key=test";
+
+    /**
+     * Answers every URL with the same news and records the requested URLs
+     */
+    private static class RecordingFetcher implements ParallelNewsFetcher.Fetcher {
+        final List<String> requested = Collections.synchronizedList(new ArrayList<String>());
+        final List<TechNews> news;
+
+        RecordingFetcher(TechNews... news) {
+            this.news = Arrays.asList(news);
+        }
+
+        @Override
+        public List<TechNews> fetch(String url, CancellationToken token) {
+            requested.add(url);
+            return news;
+        }
+    }
+
+    /**
+     * Runs a fetch on its own thread
+     */
+    private static class FetchThread extends Thread {
+        final RequestGovernor governor;
+        final String url;
+        final int priority;
+        final ParallelNewsFetcher.Fetcher fetcher;
+        final List<String> finished;
+        List<TechNews> result;
+
+        FetchThread(RequestGovernor governor, String url, int priority, ParallelNewsFetcher.Fetcher fetcher,
+                    List<String> finished) {
+            this.governor = governor;
+            this.url = url;
+            this.priority = priority;
+            this.fetcher = fetcher;
+            this.finished = finished;
+            start();
+        }
+
+        @Override
+        public void run() {
+            result = governor.fetch(url, priority, null, fetcher);
+            finished.add(url);
+        }
+    }
+
+    private static TechNews news(String id) {
+        return news(id, 0);
+    }
+
+    /**
+     * News of the section its id starts with, like the guardianapis returns them
+     */
+    private static TechNews news(String id, long publishedAt) {
+        String sectionId = id.indexOf('/') > 0 ? id.substring(0, id.indexOf('/')) : null;
+        return new TechNews(id, "Section", "Title " + id, publishedAt, null, "Author", "url/" + id, null, sectionId);
+    }
+
+    private static List<String> ids(List<TechNews> news) {
+        List<String> ids = new ArrayList<>();
+        for (TechNews item : news) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void perSecondQuota_spacesRequests() {
+        RequestGovernor governor = new RequestGovernor(SyncPolicy.SYSTEM_CLOCK, 5, 1000, 0, null);
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(governor.acquire(RequestGovernor.PRIORITY_USER, null));
+        }
+        // A burst of 5, then one every 200 ms
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis >= 900);
+    }
+
+    @Test
+    public void userRequests_goBeforeBackgroundRequests() throws InterruptedException {
+        RequestGovernor governor = new RequestGovernor(SyncPolicy.SYSTEM_CLOCK, 2, 1000, 0, null);
+        governor.acquire(RequestGovernor.PRIORITY_USER, null);
+        governor.acquire(RequestGovernor.PRIORITY_USER, null);
+        List<String> finished = Collections.synchronizedList(new ArrayList<String>());
+        RecordingFetcher fetcher = new RecordingFetcher();
+
+        FetchThread prefetch = new FetchThread(governor, SEARCH + "&page=3", RequestGovernor.PRIORITY_PREFETCH,
+                fetcher, finished);
+        Thread.sleep(50);
+        FetchThread user = new FetchThread(governor, SEARCH + "&page=2", RequestGovernor.PRIORITY_USER,
+                fetcher, finished);
+        prefetch.join();
+        user.join();
+
+        assertEquals(Arrays.asList(SEARCH + "&page=2", SEARCH + "&page=3"), finished);
+    }
+
+    @Test
+    public void backgroundRequests_leaveTheReserveToTheUser() {
+        RequestGovernor governor = new RequestGovernor(SyncPolicy.SYSTEM_CLOCK, 100, 10, 0.5, null);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(governor.acquire(RequestGovernor.PRIORITY_BACKGROUND, null));
+        }
+
+        final CancellationToken token = new CancellationToken();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    // Cancel right away
+                }
+                token.cancel();
+            }
+        }.start();
+        assertFalse(governor.acquire(RequestGovernor.PRIORITY_BACKGROUND, token));
+        assertTrue(governor.acquire(RequestGovernor.PRIORITY_USER, null));
+    }
+
+    @Test
+    public void retryGate_takesATokenForEveryRetry() throws IOException {
+        RequestGovernor governor = new RequestGovernor(SyncPolicy.SYSTEM_CLOCK, 100, 2, 0, null);
+        NewsHttpClient.AttemptGate gate = governor.retryGate(RequestGovernor.PRIORITY_USER);
+        URL url = new URL(SEARCH);
+
+        // The first attempt was paid for by the turn, the two retries take the daily quota
+        gate.awaitAttempt(url, 1, null);
+        gate.awaitAttempt(url, 2, null);
+        gate.awaitAttempt(url, 3, null);
+
+        final CancellationToken token = new CancellationToken();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    // Cancel right away
+                }
+                token.cancel();
+            }
+        }.start();
+        try {
+            gate.awaitAttempt(url, 4, token);
+            fail("Retried beyond the daily quota");
+        } catch (InterruptedIOException e) {
+            assertTrue(token.isCanceled());
+        }
+    }
+
+    @Test
+    public void restoredDayQuota_continuesAcrossProcesses() {
+        final double[] saved = new double[1];
+        RequestGovernor.QuotaStore store = new RequestGovernor.QuotaStore() {
+            @Override
+            public void save(double tokens, long time) {
+                saved[0] = tokens;
+            }
+        };
+        RequestGovernor governor = new RequestGovernor(SyncPolicy.SYSTEM_CLOCK, 100, 1000, 0, null);
+        governor.acquire(RequestGovernor.PRIORITY_USER, null);
+
+        // An earlier process left 500 tokens a moment ago
+        governor.restoreDayQuota(500, System.currentTimeMillis(), store);
+        assertEquals(500, saved[0], 0.1);
+        governor.acquire(RequestGovernor.PRIORITY_USER, null);
+        assertEquals(499, saved[0], 0.1);
+
+        // The requests of this process count when the earlier one left more
+        governor = new RequestGovernor(SyncPolicy.SYSTEM_CLOCK, 100, 1000, 0, null);
+        governor.acquire(RequestGovernor.PRIORITY_USER, null);
+        governor.acquire(RequestGovernor.PRIORITY_USER, null);
+        governor.restoreDayQuota(1000, 0, store);
+        assertEquals(998, saved[0], 0.1);
+    }
+
+    @Test
+    public void waitingSections_areCombinedIntoOneRequest() throws InterruptedException {
+        RequestGovernor governor = new RequestGovernor(SyncPolicy.SYSTEM_CLOCK, 1, 1000, 0, new SectionBatcher());
+        governor.acquire(RequestGovernor.PRIORITY_USER, null);
+        List<String> finished = Collections.synchronizedList(new ArrayList<String>());
+        RecordingFetcher fetcher = new RecordingFetcher(news("technology/a"), news("science/b"), news("technology/c"));
+
+        FetchThread technology = new FetchThread(governor, SEARCH + "&section=technology",
+                RequestGovernor.PRIORITY_USER, fetcher, finished);
+        FetchThread science = new FetchThread(governor, SEARCH + "&section=science",
+                RequestGovernor.PRIORITY_USER, fetcher, finished);
+        technology.join();
+        science.join();
+
+        assertEquals(1, fetcher.requested.size());
+        assertTrue(fetcher.requested.get(0).endsWith("&section=science%7Ctechnology&page-size=4"));
+        assertEquals(Arrays.asList("technology/a", "technology/c"), ids(technology.result));
+        assertEquals(Collections.singletonList("science/b"), ids(science.result));
+    }
+
+    @Test
+    public void incompleteShare_isRequestedAlone() throws InterruptedException {
+        RequestGovernor governor = new RequestGovernor(SyncPolicy.SYSTEM_CLOCK, 5, 1000, 0, new SectionBatcher());
+        for (int i = 0; i < 5; i++) {
+            governor.acquire(RequestGovernor.PRIORITY_USER, null);
+        }
+        List<String> finished = Collections.synchronizedList(new ArrayList<String>());
+        // A full combined page, with less than a page of science news
+        RecordingFetcher fetcher = new RecordingFetcher(news("technology/a", 4), news("technology/b", 3),
+                news("technology/c", 2), news("science/d", 1));
+
+        FetchThread technology = new FetchThread(governor, SEARCH + "&section=technology",
+                RequestGovernor.PRIORITY_USER, fetcher, finished);
+        FetchThread science = new FetchThread(governor, SEARCH + "&section=science",
+                RequestGovernor.PRIORITY_USER, fetcher, finished);
+        technology.join();
+        science.join();
+
+        assertEquals(2, fetcher.requested.size());
+        assertEquals(SEARCH + "&section=science", fetcher.requested.get(1));
+        // No more than the page size of the technology search itself
+        assertEquals(Arrays.asList("technology/a", "technology/b"), ids(technology.result));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which searches {@link SectionBatcher} combines and how it splits their results.
+ */
+public class SectionBatcherTest {
+
+    private static final String SEARCH = "https://content.guardianapis.com/search?q=technology&page-size=10&api-key=test";
+
+    private final SectionBatcher mBatcher = new SectionBatcher();
+
+    @Test
+    public void sectionsOfTheSameSearch_areCombined() {
+        String combined = mBatcher.combine(SEARCH + "&section=technology", SEARCH + "&section=business");
+        assertEquals("https://content.guardianapis.com/search?q=technology&api-key=test"
+                + "&section=business%7Ctechnology&page-size=20", combined);
+        assertTrue(mBatcher.combine(combined, SEARCH + "&section=science")
+                .endsWith("&section=business%7Cscience%7Ctechnology&page-size=30"));
+        assertEquals(SEARCH, mBatcher.combine(SEARCH, SEARCH));
+    }
+
+    @Test
+    public void otherSearches_areNotCombined() {
+        // Other terms, later pages, no sections or too many results
+        assertNull(mBatcher.combine(SEARCH + "&section=technology",
+                SEARCH.replace("q=technology", "q=science") + "&section=business"));
+        assertNull(mBatcher.combine(SEARCH + "&section=technology&page=2", SEARCH + "&section=business&page=2"));
+        assertNull(mBatcher.combine(SEARCH, SEARCH + "&section=business"));
+        assertNull(mBatcher.combine(SEARCH.replace("page-size=10", "page-size=150") + "&section=technology",
+                SEARCH.replace("page-size=10", "page-size=100") + "&section=business"));
+    }
+
+    private static TechNews news(String sectionId, String id, long publishedAt) {
+        return new TechNews(sectionId + "/2018/jul/18/" + id, "Title", "Title", publishedAt, null, null, "url",
+                null, sectionId);
+    }
+
+    /**
+     * Newest first, technology news are newer than business news
+     */
+    private static List<TechNews> combinedResults(int technology, int business) {
+        List<TechNews> news = new ArrayList<>();
+        for (int i = 0; i < technology; i++) {
+            news.add(news("technology", "t" + i, 1000 - i));
+        }
+        for (int i = 0; i < business; i++) {
+            news.add(news("business", "b" + i, 500 - i));
+        }
+        return news;
+    }
+
+    @Test
+    public void split_keepsEverySectionToItsOwnPage() {
+        String technology = SEARCH + "&order-by=newest&section=technology";
+        String business = SEARCH + "&order-by=newest&section=business";
+        String combined = mBatcher.combine(technology, business);
+
+        // A full combined page: technology had more than its page, business may have lost some
+        List<TechNews> full = combinedResults(14, 6);
+        assertEquals(10, mBatcher.split(combined, full, technology).size());
+        assertEquals("technology/2018/jul/18/t9", mBatcher.split(combined, full, technology).get(9).getId());
+        assertNull(mBatcher.split(combined, full, business));
+
+        // All results of both sections fit
+        List<TechNews> partial = combinedResults(9, 3);
+        assertEquals(9, mBatcher.split(combined, partial, technology).size());
+        assertEquals(3, mBatcher.split(combined, partial, business).size());
+    }
+
+    @Test
+    public void unprovenShare_isRequestedAlone() {
+        String technology = SEARCH + "&order-by=newest&section=technology";
+        String business = SEARCH + "&order-by=newest&section=business";
+        String combined = mBatcher.combine(technology, business);
+
+        // The last news of technology's page was published with the last one of the full
+        // page, which may have left out one of the same time
+        List<TechNews> tie = combinedResults(10, 0);
+        for (int i = 0; i < 10; i++) {
+            tie.add(news("business", "b" + i, i < 9 ? 1000 - 9 : 0));
+        }
+        tie.set(9, news("technology", "t9", 0));
+        assertNull(mBatcher.split(combined, tie, technology));
+
+        // A news of no section, or another one, can't be told apart
+        List<TechNews> unknown = combinedResults(3, 3);
+        unknown.add(new TechNews("technology/2018/jul/18/x", "Technology", "Title", 0, null, null, "url"));
+        assertNull(mBatcher.split(combined, unknown, business));
+        unknown.set(unknown.size() - 1, news("science", "s", 0));
+        assertNull(mBatcher.split(combined, unknown, business));
+
+        // Ordered by relevance, a full page says nothing about what it left out
+        String relevant = mBatcher.combine(SEARCH + "&section=technology", SEARCH + "&section=business");
+        assertNull(mBatcher.split(relevant, combinedResults(14, 6), SEARCH + "&section=technology"));
+    }
+
+    @Test
+    public void lowerCaseSeparator_isSplit() {
+        String combined = SEARCH.replace("page-size=10", "page-size=20") + "&order-by=newest&section=business%7ctechnology";
+        List<TechNews> share = mBatcher.split(combined, combinedResults(4, 2), SEARCH + "&order-by=newest&section=business");
+        assertEquals(2, share.size());
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the background sync rules of {@link SyncPolicy} with a fake clock and fake device conditions.
+ */
+public class SyncPolicyTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private static class FakeClock implements SyncPolicy.Clock {
+        long now;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static class FakeConditions implements SyncPolicy.Conditions {
+        boolean unmetered;
+        boolean charging;
+
+        FakeConditions(boolean unmetered, boolean charging) {
+            this.unmetered = unmetered;
+            this.charging = charging;
+        }
+
+        @Override
+        public boolean isUnmetered() {
+            return unmetered;
+        }
+
+        @Override
+        public boolean isCharging() {
+            return charging;
+        }
+    }
+
+    @Test
+    public void isDue_afterInterval() {
+        FakeClock clock = new FakeClock();
+        SyncPolicy policy = new SyncPolicy(clock, HOUR, false, false);
+
+        clock.now = 10 * HOUR;
+        assertTrue(policy.isDue(0));
+        assertTrue(policy.isDue(9 * HOUR));
+        assertFalse(policy.isDue(9 * HOUR + 1));
+        assertEquals(1, policy.delayUntilDue(9 * HOUR + 1));
+        assertEquals(0, policy.delayUntilDue(9 * HOUR));
+    }
+
+    @Test
+    public void isDue_whenClockWasSetBack() {
+        FakeClock clock = new FakeClock();
+        SyncPolicy policy = new SyncPolicy(clock, HOUR, false, false);
+
+        clock.now = HOUR;
+        assertTrue(policy.isDue(5 * HOUR));
+    }
+
+    @Test
+    public void constraints_onlyAppliedWhenConfigured() {
+        FakeClock clock = new FakeClock();
+        FakeConditions meteredOnBattery = new FakeConditions(false, false);
+
+        assertTrue(new SyncPolicy(clock, HOUR, false, false).areConstraintsMet(meteredOnBattery));
+        assertFalse(new SyncPolicy(clock, HOUR, true, false).areConstraintsMet(meteredOnBattery));
+        assertFalse(new SyncPolicy(clock, HOUR, false, true).areConstraintsMet(meteredOnBattery));
+    }
+
+    @Test
+    public void shouldSync_needsDueAndConstraints() {
+        FakeClock clock = new FakeClock();
+        FakeConditions conditions = new FakeConditions(true, false);
+        SyncPolicy policy = new SyncPolicy(clock, HOUR, true, true);
+
+        clock.now = 2 * HOUR;
+        assertFalse(policy.shouldSync(0, conditions));
+
+        conditions.charging = true;
+        assertTrue(policy.shouldSync(0, conditions));
+
+        // A foreground refresh half an hour ago makes the wake-up unnecessary
+        assertFalse(policy.shouldSync(clock.now - HOUR / 2, conditions));
+
+        clock.now += HOUR;
+        assertTrue(policy.shouldSync(2 * HOUR - HOUR / 2, conditions));
+    }
+
+    @Test
+    public void shouldSync_inTheFlexWindow() {
+        FakeClock clock = new FakeClock();
+        FakeConditions conditions = new FakeConditions(true, true);
+        SyncPolicy policy = new SyncPolicy(clock, HOUR, false, false);
+
+        clock.now = 10 * HOUR;
+        // A periodic wake-up a little early in the window still syncs
+        assertTrue(policy.shouldSync(clock.now - HOUR + policy.getFlexMillis(), conditions));
+        assertFalse(policy.shouldSync(clock.now - HOUR + policy.getFlexMillis() + 1, conditions));
+        assertFalse(policy.isDue(clock.now - HOUR + policy.getFlexMillis()));
+    }
+}
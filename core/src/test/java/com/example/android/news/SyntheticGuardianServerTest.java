@@ -0,0 +1,83 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives {@link LoadTest} against a {@link SyntheticGuardianServer} through the
+ * {@link NewsHttpClient} and {@link NewsParser}.
+ */
+public class SyntheticGuardianServerTest {
+
+    private SyntheticGuardianServer mServer;
+    private NewsHttpClient mClient;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new SyntheticGuardianServer();
+        mClient = new NewsHttpClient(null, 5000, 5000);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    private final ParallelNewsFetcher.Fetcher mFetcher = new ParallelNewsFetcher.Fetcher() {
+        @Override
+        public List<TechNews> fetch(String url, CancellationToken token) {
+            try {
+                InputStream in = mClient.openStream(new URL(url), token);
+                try {
+                    return NewsParser.parse(in).getNews();
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    };
+
+    @Test
+    public void pages_followTheRequestedSectionsAndSize() {
+        mServer.setTotal(25);
+        mServer.setPaddingBytes(100);
+        List<TechNews> page = mFetcher.fetch(mServer.getSearchUrl() + "?section=technology%7Cscience&page-size=10&page=3",
+                null);
+
+        assertEquals(5, page.size());
+        assertTrue(page.get(0).getId(), page.get(0).getId().startsWith("technology/2018/jul/"));
+        assertEquals("Science", page.get(1).getSection());
+        assertNotNull(page.get(0).getThumbnailUrl());
+        assertNotEquals(NewsDates.INVALID, page.get(0).getPublishedAt());
+        assertTrue(page.get(0).getPublishedAt() > page.get(1).getPublishedAt());
+    }
+
+    @Test
+    public void loadTest_countsFailuresAndThrottling() throws InterruptedException {
+        mServer.setErrorRate(1);
+        LoadTest.Result failing = new LoadTest(mFetcher, null)
+                .run(Collections.singletonList(mServer.getSearchUrl() + "?page-size=5"), 10, 2);
+        assertEquals(10, failing.failedLoads);
+        assertEquals(10, mServer.getErrorCount());
+
+        mServer.setErrorRate(0);
+        mServer.setRequestsPerSecond(5);
+        LoadTest.Result throttled = new LoadTest(mFetcher, null)
+                .run(Collections.singletonList(mServer.getSearchUrl() + "?page-size=5"), 20, 4);
+        assertTrue(mServer.getThrottledCount() > 0);
+        assertEquals(20 - throttled.failedLoads, throttled.news / 5);
+        assertTrue(throttled.latencyPercentile(50) <= throttled.latencyPercentile(99));
+        assertEquals(-1, throttled.bytesPerLoad);
+    }
+}